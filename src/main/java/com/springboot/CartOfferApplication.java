@@ -2,11 +2,17 @@ package com.springboot;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class CartOfferApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(CartOfferApplication.class, args);
+		SpringApplication application = new SpringApplication(CartOfferApplication.class);
+		// -Dpricing.startup.report=true records every startup step for StartupTimingReport
+		if (Boolean.getBoolean("pricing.startup.report")) {
+			application.setApplicationStartup(new BufferingApplicationStartup(4096));
+		}
+		application.run(args);
 	}
 }
@@ -0,0 +1,312 @@
+package com.springboot.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.ApplyOfferRequest;
+import com.springboot.repository.OfferMatch;
+import com.springboot.repository.OfferStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reprices a file of carts against an offer catalog, offline.
+ *
+ * The input (CSV or NDJSON of {@link ApplyOfferRequest}) is read in chunks of {@code chunkLines}.
+ * Each chunk is parsed, matched and priced by a fork/join task across the pool while the next chunk is
+ * being read and the previous one written, so at most two chunks are in memory whatever the file
+ * size, and the output keeps the input order.
+ *
+ * Output is in the input's format with the user's segment and the priced value added. Lines that do
+ * not parse are counted and skipped.
+ */
+public final class RepricingJob {
+
+	public enum Format {
+		CSV, NDJSON;
+
+		static Format of(Path path) {
+			String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+			return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+		}
+	}
+
+	public record Summary(long carts, long rejected, long discounted, long elapsedMillis) {
+	}
+
+	static final String CSV_HEADER = "cart_value,restaurant_id,user_id,segment,priced_value";
+
+	private static final int LEAF_LINES = 1024;
+	// extra fields (an order id, a previous priced_value) are fine in historical cart files
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private final OfferStore offers;
+	private final SegmentTable segments;
+	private final long asOfMillis;
+	private final ForkJoinPool pool;
+	private final int chunkLines;
+
+	public RepricingJob(OfferStore offers, SegmentTable segments, long asOfMillis, ForkJoinPool pool, int chunkLines) {
+		this.offers = offers;
+		this.segments = segments;
+		this.asOfMillis = asOfMillis;
+		this.pool = pool;
+		this.chunkLines = Math.max(1, chunkLines);
+	}
+
+	public Summary run(Path input, Path output) throws IOException {
+		long start = System.nanoTime();
+		Format format = Format.of(input);
+		long[] totals = new long[3];
+		try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+				Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			// ApplyOfferRequest field order unless a header says otherwise
+			int[] columns = {0, 1, 2};
+			String first = null;
+			if (format == Format.CSV) {
+				first = reader.readLine();
+				if (first != null && isHeader(first)) {
+					columns = columns(first);
+					first = null;
+				}
+				writer.write(CSV_HEADER);
+				writer.write('\n');
+			}
+
+			Chunk pending = null;
+			Chunk chunk;
+			while ((chunk = readChunk(reader, first, format, columns)) != null) {
+				first = null;
+				chunk.task = pool.submit(new PriceRange(chunk, 0, chunk.count));
+				if (pending != null) {
+					write(pending, writer, totals);
+				}
+				pending = chunk;
+			}
+			if (pending != null) {
+				write(pending, writer, totals);
+			}
+		}
+		return new Summary(totals[0], totals[1], totals[2],
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	private Chunk readChunk(BufferedReader reader, String first, Format format, int[] columns) throws IOException {
+		String[] lines = new String[chunkLines];
+		int count = 0;
+		if (first != null) {
+			lines[count++] = first;
+		}
+		String line;
+		while (count < chunkLines && (line = reader.readLine()) != null) {
+			lines[count++] = line;
+		}
+		return count == 0 ? null : new Chunk(lines, count, format, columns);
+	}
+
+	private static void write(Chunk chunk, Writer writer, long[] totals) throws IOException {
+		chunk.task.join();
+		for (int block = 0; block < chunk.blocks.length; block++) {
+			writer.write(chunk.blocks[block]);
+			totals[0] += chunk.priced[block];
+			totals[1] += chunk.rejected[block];
+			totals[2] += chunk.discounted[block];
+		}
+	}
+
+	private static boolean isHeader(String line) {
+		String trimmed = line.trim();
+		return !trimmed.isEmpty() && !Character.isDigit(trimmed.charAt(0)) && trimmed.charAt(0) != '-';
+	}
+
+	/** Positions of cart_value, restaurant_id and user_id in the header. */
+	private static int[] columns(String header) throws IOException {
+		String[] names = header.split(",");
+		int[] columns = {-1, -1, -1};
+		for (int i = 0; i < names.length; i++) {
+			switch (names[i].trim().toLowerCase(Locale.ROOT)) {
+				case "cart_value" -> columns[0] = i;
+				case "restaurant_id" -> columns[1] = i;
+				case "user_id" -> columns[2] = i;
+				default -> {
+				}
+			}
+		}
+		for (int column : columns) {
+			if (column < 0) {
+				throw new IOException("CSV header must name cart_value, restaurant_id and user_id: " + header);
+			}
+		}
+		return columns;
+	}
+
+	private static final class Chunk {
+		final String[] lines;
+		final int count;
+		final Format format;
+		final int[] columns;
+		final String[] blocks;
+		final int[] priced;
+		final int[] rejected;
+		final int[] discounted;
+		ForkJoinTask<?> task;
+
+		Chunk(String[] lines, int count, Format format, int[] columns) {
+			this.lines = lines;
+			this.count = count;
+			this.format = format;
+			this.columns = columns;
+			int blockCount = (count + LEAF_LINES - 1) / LEAF_LINES;
+			this.blocks = new String[blockCount];
+			this.priced = new int[blockCount];
+			this.rejected = new int[blockCount];
+			this.discounted = new int[blockCount];
+		}
+	}
+
+	/** Prices lines [from, to) of a chunk; leaves are aligned to LEAF_LINES blocks. */
+	private final class PriceRange extends RecursiveAction {
+
+		private final Chunk chunk;
+		private final int from;
+		private final int to;
+
+		PriceRange(Chunk chunk, int from, int to) {
+			this.chunk = chunk;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LEAF_LINES) {
+				priceBlock();
+				return;
+			}
+			int blocks = (to - from + LEAF_LINES - 1) / LEAF_LINES;
+			int mid = from + blocks / 2 * LEAF_LINES;
+			invokeAll(new PriceRange(chunk, from, mid), new PriceRange(chunk, mid, to));
+		}
+
+		private void priceBlock() {
+			int block = from / LEAF_LINES;
+			StringBuilder out = new StringBuilder((to - from) * 48);
+			OfferMatch match = new OfferMatch();
+			ApplyOfferRequest cart = new ApplyOfferRequest();
+			for (int i = from; i < to; i++) {
+				String line = chunk.lines[i];
+				if (line.isBlank()) {
+					continue;
+				}
+				if (!parse(line, cart)) {
+					chunk.rejected[block]++;
+					continue;
+				}
+				String segment = segments.segmentOf(cart.getUser_id());
+				int pricedValue = offers.match(cart.getRestaurant_id(), segment, asOfMillis, match)
+						? match.applyTo(cart.getCart_value())
+						: cart.getCart_value();
+				chunk.priced[block]++;
+				if (pricedValue != cart.getCart_value()) {
+					chunk.discounted[block]++;
+				}
+				append(out, cart, segment, pricedValue);
+			}
+			chunk.blocks[block] = out.toString();
+		}
+
+		private boolean parse(String line, ApplyOfferRequest cart) {
+			if (chunk.format == Format.NDJSON) {
+				try {
+					ApplyOfferRequest parsed = MAPPER.readValue(line, ApplyOfferRequest.class);
+					cart.setCart_value(parsed.getCart_value());
+					cart.setRestaurant_id(parsed.getRestaurant_id());
+					cart.setUser_id(parsed.getUser_id());
+					return true;
+				} catch (JsonProcessingException e) {
+					return false;
+				}
+			}
+			int[] columns = chunk.columns;
+			int field = 0;
+			int begin = 0;
+			int found = 0;
+			try {
+				for (int i = 0; i <= line.length() && found < 3; i++) {
+					if (i == line.length() || line.charAt(i) == ',') {
+						if (field == columns[0] || field == columns[1] || field == columns[2]) {
+							int value = Integer.parseInt(line, trimStart(line, begin, i), trimEnd(line, begin, i), 10);
+							if (field == columns[0]) {
+								cart.setCart_value(value);
+							} else if (field == columns[1]) {
+								cart.setRestaurant_id(value);
+							} else {
+								cart.setUser_id(value);
+							}
+							found++;
+						}
+						field++;
+						begin = i + 1;
+					}
+				}
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			return found == 3;
+		}
+
+		private void append(StringBuilder out, ApplyOfferRequest cart, String segment, int pricedValue) {
+			if (chunk.format == Format.NDJSON) {
+				out.append("{\"cart_value\":").append(cart.getCart_value())
+						.append(",\"restaurant_id\":").append(cart.getRestaurant_id())
+						.append(",\"user_id\":").append(cart.getUser_id())
+						.append(",\"segment\":");
+				if (segment == null) {
+					out.append("null");
+				} else {
+					out.append('"');
+					for (int i = 0; i < segment.length(); i++) {
+						char c = segment.charAt(i);
+						if (c == '"' || c == '\\') {
+							out.append('\\');
+						}
+						out.append(c);
+					}
+					out.append('"');
+				}
+				out.append(",\"priced_value\":").append(pricedValue).append("}\n");
+			} else {
+				out.append(cart.getCart_value()).append(',')
+						.append(cart.getRestaurant_id()).append(',')
+						.append(cart.getUser_id()).append(',')
+						.append(segment == null ? "" : segment).append(',')
+						.append(pricedValue).append('\n');
+			}
+		}
+	}
+
+	private static int trimStart(String line, int begin, int end) {
+		while (begin < end && Character.isWhitespace(line.charAt(begin))) {
+			begin++;
+		}
+		return begin;
+	}
+
+	private static int trimEnd(String line, int begin, int end) {
+		while (end > begin && Character.isWhitespace(line.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,77 @@
+package com.springboot.batch;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.RepricingProperty;
+import com.springboot.repository.OfferFiles;
+import com.springboot.repository.OfferStore;
+import com.springboot.service.OfferCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs {@link RepricingJob} once at startup under the {@code reprice} profile, e.g.
+ * {@code java -jar app.jar --spring.profiles.active=reprice --pricing.reprice.input=carts.csv
+ * --pricing.reprice.output=priced.csv --pricing.reprice.segments=segments.csv --pricing.reprice.offers=offers.ndjson}.
+ */
+@Component
+@Profile("reprice")
+public class RepricingRunner implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(RepricingRunner.class);
+
+	@Autowired
+	private RepricingProperty repricingProperty;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		Path input = required(repricingProperty.getInput(), "input");
+		Path output = required(repricingProperty.getOutput(), "output");
+		SegmentTable segments = SegmentTable.load(required(repricingProperty.getSegments(), "segments"));
+		OfferStore offers = loadOffers(required(repricingProperty.getOffers(), "offers"));
+		long asOf = repricingProperty.getAsOfMillis() > 0 ? repricingProperty.getAsOfMillis() : System.currentTimeMillis();
+		int parallelism = repricingProperty.getParallelism() > 0
+				? repricingProperty.getParallelism() : Runtime.getRuntime().availableProcessors();
+		log.info("Repricing {} -> {} with {} offers, {} users, {} threads", input, output, offers.size(),
+				segments.size(), parallelism);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			RepricingJob.Summary summary = new RepricingJob(offers, segments, asOf, pool, repricingProperty.getChunkLines())
+					.run(input, output);
+			log.info("Repriced {} carts ({} discounted, {} rejected lines) in {} ms", summary.carts(),
+					summary.discounted(), summary.rejected(), summary.elapsedMillis());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Offers as a JSON array or NDJSON of add-offer requests; ids are derived like the API does. */
+	static OfferStore loadOffers(Path path) throws IOException {
+		List<OfferRequest> offers = OfferFiles.read(path);
+		OfferStore store = new OfferStore(offers.size(), false);
+		for (OfferRequest offer : offers) {
+			if (offer.getOffer_id() == null || offer.getOffer_id().isBlank()) {
+				offer.setOffer_id(OfferCatalog.deriveOfferId(offer));
+			}
+			store.upsert(offer);
+		}
+		return store;
+	}
+
+	private static Path required(String path, String name) {
+		if (path == null || path.isBlank()) {
+			throw new IllegalStateException("pricing.reprice." + name + " is required");
+		}
+		return Path.of(path);
+	}
+}
@@ -0,0 +1,74 @@
+package com.springboot.batch;
+
+import com.springboot.util.IntIntMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only user to segment table for offline repricing, loaded from a {@code user_id,segment} CSV
+ * (header optional). Segments are interned to small codes, so a table of millions of users costs a
+ * few bytes per user and is safe to read from any number of threads once loaded.
+ */
+public final class SegmentTable {
+
+	private final IntIntMap codes;
+	private final String[] names;
+
+	private SegmentTable(IntIntMap codes, String[] names) {
+		this.codes = codes;
+		this.names = names;
+	}
+
+	public static SegmentTable load(Path csv) throws IOException {
+		IntIntMap codes = new IntIntMap();
+		Map<String, Integer> codeByName = new HashMap<>();
+		List<String> names = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				int comma = line.indexOf(',');
+				if (line.isBlank() || (lineNumber == 1 && line.startsWith("user_id"))) {
+					continue;
+				}
+				if (comma < 0) {
+					throw new IOException(csv + ":" + lineNumber + ": expected user_id,segment");
+				}
+				int userId;
+				try {
+					userId = Integer.parseInt(line.substring(0, comma).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException(csv + ":" + lineNumber + ": bad user_id", e);
+				}
+				String segment = line.substring(comma + 1).trim();
+				Integer code = codeByName.get(segment);
+				if (code == null) {
+					code = names.size();
+					names.add(segment);
+					codeByName.put(segment, code);
+				}
+				codes.put(userId, code);
+			}
+		}
+		return new SegmentTable(codes, names.toArray(new String[0]));
+	}
+
+	/** Segment of {@code userId}, or null for users not in the table. */
+	public String segmentOf(int userId) {
+		int code = codes.get(userId, -1);
+		return code < 0 ? null : names[code];
+	}
+
+	public int size() {
+		return codes.size();
+	}
+}
@@ -0,0 +1,78 @@
+package com.springboot.config;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Logs how long the service took to become ready and to serve its first request, measured from JVM
+ * start, together with whether AOT-generated bean definitions and a CDS archive were in use. When the
+ * application was launched with {@code -Dpricing.startup.report=true} the slowest startup steps are
+ * listed as well.
+ */
+@Component
+public class StartupTimingReport implements ApplicationListener<ApplicationReadyEvent>, Filter {
+
+	private static final Logger log = LoggerFactory.getLogger(StartupTimingReport.class);
+	private static final int SLOWEST_STEPS = 15;
+
+	private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+		boolean cds = runtime.getInputArguments().stream().anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+		log.info("Startup report: ready {} ms after JVM start (context {} ms, aot={}, cds={}, lazy={})",
+				runtime.getUptime(), event.getTimeTaken().toMillis(), AotDetector.useGeneratedArtifacts(), cds,
+				event.getApplicationContext().getEnvironment().getProperty("spring.main.lazy-initialization", "false"));
+
+		ApplicationStartup startup = event.getSpringApplication().getApplicationStartup();
+		if (startup instanceof BufferingApplicationStartup buffering) {
+			List<StartupTimeline.TimelineEvent> events = buffering.getBufferedTimeline().getEvents();
+			events.stream()
+					.sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+					.limit(SLOWEST_STEPS)
+					.forEach(e -> log.info("  {} ms  {} {}", e.getDuration().toMillis(), e.getStartupStep().getName(),
+							describe(e.getStartupStep().getTags())));
+		}
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		// the plain read keeps later requests off the CAS; only one of the first ones wins it
+		if (!firstRequestSeen.get() && firstRequestSeen.compareAndSet(false, true)) {
+			log.info("Startup report: first request {} {} ms after JVM start",
+					((HttpServletRequest) request).getRequestURI(), ManagementFactory.getRuntimeMXBean().getUptime());
+		}
+		chain.doFilter(request, response);
+	}
+
+	private static String describe(StartupStep.Tags tags) {
+		StringBuilder sb = new StringBuilder();
+		for (StartupStep.Tag tag : tags) {
+			sb.append(tag.getKey()).append('=').append(tag.getValue()).append(' ');
+		}
+		return sb.toString().trim();
+	}
+}
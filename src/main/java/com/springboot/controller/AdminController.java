@@ -0,0 +1,174 @@
+package com.springboot.controller;
+
+import com.springboot.service.CartSessionService;
+import com.springboot.service.FlightRecordingService;
+import com.springboot.service.InvalidationBus;
+import com.springboot.service.MemoryFootprint;
+import com.springboot.service.OfferCatalog;
+import com.springboot.service.OfferCatalogWatcher;
+import com.springboot.service.PricingConcurrencyLimiter;
+import com.springboot.service.PricingDeadlines;
+import com.springboot.service.RedemptionAnalytics;
+import com.springboot.service.RestaurantRateLimiter;
+import com.springboot.service.SegmentClient;
+import com.springboot.service.ShadowPricing;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Operational read-outs for the pricing service.
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+	@Autowired
+	private RestaurantRateLimiter rateLimiter;
+
+	@Autowired
+	private PricingConcurrencyLimiter concurrencyLimiter;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Autowired
+	private OfferCatalogWatcher catalogWatcher;
+
+	@Autowired
+	private SegmentClient segmentClient;
+
+	@Autowired
+	private FlightRecordingService flightRecordings;
+
+	@Autowired
+	private CartSessionService cartSessions;
+
+	@Autowired
+	private InvalidationBus invalidationBus;
+
+	@Autowired
+	private ShadowPricing shadowPricing;
+
+	@Autowired
+	private PricingDeadlines deadlines;
+
+	@Autowired
+	private RedemptionAnalytics redemptions;
+
+	@Autowired
+	private MemoryFootprint memoryFootprint;
+
+	@GetMapping("/rate-limit")
+	public Map<String, Object> rateLimitStats() {
+		return rateLimiter.stats();
+	}
+
+	@GetMapping("/concurrency-limit")
+	public Map<String, Object> concurrencyLimitStats() {
+		return concurrencyLimiter.stats();
+	}
+
+	@GetMapping("/deadline")
+	public Map<String, Object> deadlineStats() {
+		return deadlines.stats();
+	}
+
+	@GetMapping("/catalog")
+	public Map<String, Object> catalogStats() {
+		Map<String, Object> stats = offerCatalog.stats();
+		stats.putAll(catalogWatcher.stats());
+		return stats;
+	}
+
+	@GetMapping("/segment")
+	public Map<String, Object> segmentStats() {
+		return segmentClient.stats();
+	}
+
+	/** Drops the user's cached segment here and on every peer, e.g. after the user moved segments. */
+	@PostMapping("/segment/invalidate")
+	public Map<String, Object> invalidateSegment(@RequestParam(name = "user_id") int userId) {
+		segmentClient.invalidate(userId);
+		invalidationBus.publishSegmentInvalidation(userId);
+		return segmentClient.stats();
+	}
+
+	@GetMapping("/invalidation")
+	public Map<String, Object> invalidationStats() {
+		return invalidationBus.stats();
+	}
+
+	@GetMapping("/shadow")
+	public Map<String, Object> shadowStats() {
+		return shadowPricing.stats();
+	}
+
+	@PostMapping("/shadow/reset")
+	public Map<String, Object> resetShadow() {
+		shadowPricing.reset();
+		return shadowPricing.stats();
+	}
+
+	@GetMapping("/cart-sessions")
+	public Map<String, Object> cartSessionStats() {
+		return cartSessions.stats();
+	}
+
+	@GetMapping("/redemptions")
+	public Map<String, Object> redemptionStats() {
+		return redemptions.stats();
+	}
+
+	/** Estimated size and growth of the in-process data structures; cheap enough to scrape every minute. */
+	@GetMapping("/memory")
+	public Map<String, Object> memory() {
+		return memoryFootprint.report();
+	}
+
+	@GetMapping("/jfr")
+	public Map<String, Object> recordingStats() {
+		return flightRecordings.stats();
+	}
+
+	/** Starts a flight recording that stops by itself after {@code duration_seconds} at most. */
+	@PostMapping("/jfr/start")
+	public ResponseEntity<?> startRecording(
+			@RequestParam(name = "duration_seconds", required = false) Long durationSeconds) throws IOException {
+		if (!flightRecordings.start(durationSeconds)) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse("recording already running"));
+		}
+		return ResponseEntity.ok(flightRecordings.stats());
+	}
+
+	/** Stops the recording, if still running, and downloads it as a .jfr file. */
+	@PostMapping("/jfr/stop")
+	public void stopRecording(HttpServletResponse response) throws IOException {
+		Path file = flightRecordings.stop();
+		if (file == null) {
+			response.sendError(HttpStatus.NOT_FOUND.value(), "no recording");
+			return;
+		}
+		try {
+			response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+			response.setContentLengthLong(Files.size(file));
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"");
+			Files.copy(file, response.getOutputStream());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package com.springboot.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hand-rolled reader/writer for the apply_offer wire format.
+ *
+ * The request body is a flat JSON object with three int fields, so the common case is parsed straight
+ * out of a per-thread byte buffer into a per-thread {@link ApplyOfferRequest}, and the response is
+ * rendered into a per-thread output buffer. Nothing is allocated per request once a thread has warmed up.
+ *
+ * Anything outside the plain shape (escaped keys, non-integer values, nested objects, overflow, ...)
+ * makes {@link #parse} return false so the caller can hand the same bytes to Jackson and keep
+ * exactly the behaviour of {@code @RequestBody}.
+ */
+final class ApplyOfferCodec {
+
+	static final int MAX_POOLED_BODY = 64 * 1024;
+	// far above any real apply_offer body; larger ones are refused instead of buffered
+	static final int MAX_BODY = 1024 * 1024;
+
+	private static final byte[] CART_VALUE = "cart_value".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RESTAURANT_ID = "restaurant_id".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] USER_ID = "user_id".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RESPONSE_PREFIX = "{\"cart_value\":".getBytes(StandardCharsets.US_ASCII);
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+	// every set handed out, for reporting; sets of exited threads are dropped when next walked
+	private static final Queue<Buffers> SETS = new ConcurrentLinkedQueue<>();
+
+	private ApplyOfferCodec() {
+	}
+
+	/** Per-thread scratch space reused across requests. */
+	static final class Buffers {
+		byte[] in = new byte[512];
+		int length;
+		final byte[] out = new byte[RESPONSE_PREFIX.length + 12];
+		final ApplyOfferRequest request = new ApplyOfferRequest();
+		// bytes kept between requests; written by the owner thread only
+		volatile int pooled;
+		// weak, so the registry does not keep an exited thread's object alive
+		final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+
+		Buffers() {
+			pooled = in.length + out.length;
+			live();
+			SETS.add(this);
+		}
+
+		boolean exited() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	static Buffers buffers() {
+		return BUFFERS.get();
+	}
+
+	/**
+	 * Reads the whole body into {@code buffers.in}, growing it when needed. Returns false, having read
+	 * at most {@link #MAX_BODY} bytes, when the body is larger than that. The buffer only grows as bytes
+	 * actually arrive, so a Content-Length header alone cannot make it allocate. Buffers that grew past
+	 * {@link #MAX_POOLED_BODY} are dropped again by {@link #release} so one oversized request cannot
+	 * pin memory on the thread.
+	 */
+	static boolean readBody(InputStream body, int contentLength, Buffers buffers) throws IOException {
+		if (contentLength > MAX_BODY) {
+			return false;
+		}
+		byte[] buf = buffers.in;
+		if (contentLength > buf.length) {
+			buf = new byte[Math.min(contentLength, MAX_POOLED_BODY)];
+		}
+		int len = 0;
+		int n;
+		boolean fits = true;
+		while ((n = body.read(buf, len, buf.length - len)) != -1) {
+			len += n;
+			if (len == buf.length) {
+				int next = body.read();
+				if (next == -1) {
+					break;
+				}
+				if (len == MAX_BODY) {
+					fits = false;
+					break;
+				}
+				buf = Arrays.copyOf(buf, Math.min(buf.length * 2, MAX_BODY));
+				buf[len++] = (byte) next;
+			}
+		}
+		buffers.in = buf;
+		buffers.length = len;
+		return fits;
+	}
+
+	/** Drops a one-off oversized input buffer once the request is done with it. */
+	static void release(Buffers buffers) {
+		if (buffers.in.length > MAX_POOLED_BODY) {
+			buffers.in = new byte[512];
+		}
+		buffers.pooled = buffers.in.length + buffers.out.length;
+	}
+
+	/** Buffer sets of threads that are still running. */
+	static int bufferSets() {
+		return live().size();
+	}
+
+	/** Bytes the live threads' buffer sets keep between requests. */
+	static long pooledBytes() {
+		long bytes = 0;
+		for (Buffers buffers : live()) {
+			bytes += buffers.pooled;
+		}
+		return bytes;
+	}
+
+	/** The registry after dropping the sets whose thread has exited. */
+	private static Queue<Buffers> live() {
+		for (Iterator<Buffers> it = SETS.iterator(); it.hasNext(); ) {
+			if (it.next().exited()) {
+				it.remove();
+			}
+		}
+		return SETS;
+	}
+
+	/**
+	 * Parses {@code buf[0, len)} into {@code target}. Returns false when the body is not in the
+	 * plain form this parser understands; {@code target} is then left in an unspecified state.
+	 */
+	static boolean parse(byte[] buf, int len, ApplyOfferRequest target) {
+		target.setCart_value(0);
+		target.setRestaurant_id(0);
+		target.setUser_id(0);
+
+		int i = skipWhitespace(buf, 0, len);
+		if (i >= len || buf[i] != '{') {
+			return false;
+		}
+		i = skipWhitespace(buf, i + 1, len);
+		if (i < len && buf[i] == '}') {
+			return skipWhitespace(buf, i + 1, len) == len;
+		}
+		while (true) {
+			if (i >= len || buf[i] != '"') {
+				return false;
+			}
+			int keyStart = i + 1;
+			int keyEnd = keyStart;
+			while (keyEnd < len && buf[keyEnd] != '"') {
+				if (buf[keyEnd] == '\\') {
+					return false;
+				}
+				keyEnd++;
+			}
+			if (keyEnd >= len) {
+				return false;
+			}
+			i = skipWhitespace(buf, keyEnd + 1, len);
+			if (i >= len || buf[i] != ':') {
+				return false;
+			}
+			i = skipWhitespace(buf, i + 1, len);
+
+			int field = fieldOf(buf, keyStart, keyEnd);
+			if (field == 0) {
+				i = skipScalar(buf, i, len);
+				if (i < 0) {
+					return false;
+				}
+			} else {
+				int end = integerEnd(buf, i, len);
+				if (end < 0) {
+					return false;
+				}
+				long value = 0;
+				boolean negative = buf[i] == '-';
+				for (int d = negative ? i + 1 : i; d < end; d++) {
+					value = value * 10 + (buf[d] - '0');
+				}
+				if (negative) {
+					value = -value;
+				}
+				if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+					return false;
+				}
+				switch (field) {
+					case 1 -> target.setCart_value((int) value);
+					case 2 -> target.setRestaurant_id((int) value);
+					default -> target.setUser_id((int) value);
+				}
+				i = end;
+			}
+
+			i = skipWhitespace(buf, i, len);
+			if (i >= len) {
+				return false;
+			}
+			if (buf[i] == '}') {
+				return skipWhitespace(buf, i + 1, len) == len;
+			}
+			if (buf[i] != ',') {
+				return false;
+			}
+			i = skipWhitespace(buf, i + 1, len);
+		}
+	}
+
+	/** Renders {@code {"cart_value":N}} into {@code out} and returns the number of bytes written. */
+	static int writeResponse(int cartValue, byte[] out) {
+		System.arraycopy(RESPONSE_PREFIX, 0, out, 0, RESPONSE_PREFIX.length);
+		int pos = RESPONSE_PREFIX.length;
+		long v = cartValue;
+		if (v < 0) {
+			out[pos++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (long p = 10; p <= v; p *= 10) {
+			digits++;
+		}
+		for (int d = pos + digits - 1; d >= pos; d--) {
+			out[d] = (byte) ('0' + (v % 10));
+			v /= 10;
+		}
+		pos += digits;
+		out[pos++] = '}';
+		return pos;
+	}
+
+	private static int fieldOf(byte[] buf, int start, int end) {
+		if (matches(buf, start, end, CART_VALUE)) {
+			return 1;
+		}
+		if (matches(buf, start, end, RESTAURANT_ID)) {
+			return 2;
+		}
+		if (matches(buf, start, end, USER_ID)) {
+			return 3;
+		}
+		return 0;
+	}
+
+	private static boolean matches(byte[] buf, int start, int end, byte[] name) {
+		if (end - start != name.length) {
+			return false;
+		}
+		for (int k = 0; k < name.length; k++) {
+			if (buf[start + k] != name[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** End index of a plain JSON integer starting at {@code i}, or -1 if it is not one. */
+	private static int integerEnd(byte[] buf, int i, int len) {
+		int j = i;
+		if (j < len && buf[j] == '-') {
+			j++;
+		}
+		int firstDigit = j;
+		while (j < len && buf[j] >= '0' && buf[j] <= '9') {
+			j++;
+		}
+		int digits = j - firstDigit;
+		if (digits == 0 || digits > 10 || (digits > 1 && buf[firstDigit] == '0')) {
+			return -1;
+		}
+		if (j < len && (buf[j] == '.' || buf[j] == 'e' || buf[j] == 'E')) {
+			return -1;
+		}
+		return j;
+	}
+
+	/** Skips a value of an unknown field if it is an integer, true, false or null; -1 otherwise. */
+	private static int skipScalar(byte[] buf, int i, int len) {
+		int end = integerEnd(buf, i, len);
+		if (end >= 0) {
+			return end;
+		}
+		if (startsWith(buf, i, len, "true")) {
+			return i + 4;
+		}
+		if (startsWith(buf, i, len, "false")) {
+			return i + 5;
+		}
+		if (startsWith(buf, i, len, "null")) {
+			return i + 4;
+		}
+		return -1;
+	}
+
+	private static boolean startsWith(byte[] buf, int i, int len, String literal) {
+		if (i + literal.length() > len) {
+			return false;
+		}
+		for (int k = 0; k < literal.length(); k++) {
+			if (buf[i + k] != literal.charAt(k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int skipWhitespace(byte[] buf, int i, int len) {
+		while (i < len && (buf[i] == ' ' || buf[i] == '\n' || buf[i] == '\r' || buf[i] == '\t')) {
+			i++;
+		}
+		return i;
+	}
+}
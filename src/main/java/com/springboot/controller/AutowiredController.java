@@ -1,84 +1,320 @@
 package com.springboot.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.repository.OfferStore;
 import com.springboot.service.Dog;
+import com.springboot.service.InvalidationBus;
+import com.springboot.service.MemoryFootprint;
+import com.springboot.service.OfferCatalog;
+import com.springboot.property.DeadlineProperty;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.service.PricingConcurrencyLimiter;
+import com.springboot.service.PricingDeadlines;
+import com.springboot.service.PricingTimings;
+import com.springboot.service.PricingTracer;
+import com.springboot.service.RestaurantRateLimiter;
+import com.springboot.service.SegmentClient;
+import com.springboot.service.ShadowPricing;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.springboot.service.Animal;
 
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
-public class AutowiredController {
+@Lazy(false)
+public class AutowiredController implements MemoryFootprint.Source {
 
 
-	List<OfferRequest> allOffers = new ArrayList<>();
+	private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+	private static final String NDJSON = "application/x-ndjson";
+	private static final int MAX_PAGE_SIZE = 1000;
+	private static final int EXPORT_BATCH = 1024;
+	private static final String RATE_LIMITED_MSG = "rate limit exceeded";
+	private static final byte[] RATE_LIMITED_BODY =
+			("{\"response_msg\":\"" + RATE_LIMITED_MSG + "\"}").getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] OVERLOADED_BODY =
+			"{\"response_msg\":\"overloaded\"}".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DEADLINE_EXCEEDED_BODY =
+			"{\"response_msg\":\"deadline exceeded\"}".getBytes(StandardCharsets.US_ASCII);
+	private static final String DEGRADED_HEADER = "Pricing-Degraded";
+	private static final byte[] TOO_LARGE_BODY = ("{\"response_msg\":\"request body larger than "
+			+ ApplyOfferCodec.MAX_BODY + " bytes\"}").getBytes(StandardCharsets.US_ASCII);
 
-	@PostMapping(path = "/api/v1/offer")
-	public ApiResponse postOperation(@RequestBody OfferRequest offerRequest) {
-		System.out.println(offerRequest);
-		allOffers.add(offerRequest);
-		return new ApiResponse("success");
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private RestaurantRateLimiter rateLimiter;
+
+	@Autowired
+	private PricingConcurrencyLimiter concurrencyLimiter;
+
+	@Autowired
+	private SegmentClient segmentClient;
+
+	@Autowired
+	private PricingTracer tracer;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Autowired
+	private InvalidationBus invalidationBus;
+
+	@Autowired
+	private ShadowPricing shadowPricing;
+
+	@Autowired
+	private PricingDeadlines deadlines;
+
+	@Autowired
+	private OfferCatalogProperty offerCatalogProperty;
+
+	private PrecomputedResponse catalogResponse;
+
+	@PostConstruct
+	void init() {
+		catalogResponse = new PrecomputedResponse(objectMapper, offerCatalog::revision, offerCatalog::offers);
 	}
 
-	@PostMapping(path = "/api/v1/cart/apply_offer")
-	public ApplyOfferResponse applyOffer(@RequestBody ApplyOfferRequest applyOfferRequest) throws Exception {
-		System.out.println(applyOfferRequest);
-		int cartVal = applyOfferRequest.getCart_value();
-		SegmentResponse segmentResponse = getSegmentResponse(applyOfferRequest.getUser_id());
-		Optional<OfferRequest> matchRequest = allOffers.stream().filter(x->x.getRestaurant_id()==applyOfferRequest.getRestaurant_id())
-				.filter(x->x.getCustomer_segment().contains(segmentResponse.getSegment()))
-				.findFirst();
-
-		if(matchRequest.isPresent()){
-			System.out.println("got a match");
-//			System.out.println(matchRequest.get());
-			OfferRequest gotOffer = matchRequest.get();
-
-			if(gotOffer.getOffer_type().equals("FLATX")) {
-				cartVal = cartVal - gotOffer.getOffer_value();
-			} else {
-				cartVal = (int) (cartVal - cartVal * gotOffer.getOffer_value()*(0.01));
-			}
+	/** The cached catalog body and the per-thread request buffers, for the memory report. */
+	@Override
+	public Map<String, MemoryFootprint.Usage> footprint() {
+		Map<String, MemoryFootprint.Usage> usages = new LinkedHashMap<>();
+		usages.put("catalog_response", new MemoryFootprint.Usage(1, catalogResponse.bodyBytes()));
+		usages.put("request_buffers", new MemoryFootprint.Usage(ApplyOfferCodec.bufferSets(), ApplyOfferCodec.pooledBytes()));
+		return usages;
+	}
 
+	/**
+	 * The whole catalog, re-serialized only after it changes; supports {@code If-None-Match}. A catalog
+	 * over {@code full-listing-limit} offers is not rendered into one body: the client is sent to the
+	 * paged listing with a 303, since the request itself was fine.
+	 */
+	@GetMapping(path = "/api/v1/offer")
+	public ResponseEntity<?> getOffers(WebRequest request) {
+		int limit = offerCatalogProperty.getFullListingLimit();
+		if (offerCatalog.size() > limit) {
+			return ResponseEntity.status(HttpStatus.SEE_OTHER)
+					.location(UriComponentsBuilder.fromPath("/api/v1/offers").build().toUri())
+					.body(new ApiResponse("catalog has more than " + limit
+							+ " offers, page through GET /api/v1/offers or stream GET /api/v1/offers/export"));
 		}
-		return new ApplyOfferResponse(cartVal);
+		return catalogResponse.respond(request);
 	}
 
-	private SegmentResponse getSegmentResponse(int userid)
-	{
-		SegmentResponse segmentResponse = new SegmentResponse();
+	/**
+	 * Offers filtered by restaurant, segment and type, a page at a time. Pages follow a stable order, so
+	 * an offer stored for the whole listing shows up exactly once.
+	 */
+	@GetMapping(path = "/api/v1/offers")
+	public ResponseEntity<?> queryOffers(@RequestParam(name = "restaurant_id", required = false) Integer restaurantId,
+			@RequestParam(name = "segment", required = false) String segment,
+			@RequestParam(name = "offer_type", required = false) String offerType,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", defaultValue = "100") int limit) {
+		if (limit < 1 || limit > MAX_PAGE_SIZE) {
+			return ResponseEntity.badRequest().body(new ApiResponse("limit must be between 1 and " + MAX_PAGE_SIZE));
+		}
+		OfferCatalog.Page page;
 		try {
-			String urlString = "http://localhost:1080/api/v1/user_segment?" + "user_id=" + userid;
-			URL url = new URL(urlString);
-			HttpURLConnection con = (HttpURLConnection) url.openConnection();
-			con.setRequestMethod("GET");
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			page = offerCatalog.query(new OfferStore.Query(restaurantId, segment, offerType), cursor, limit);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage()));
+		}
+		if (page.cursorExpired()) {
+			return ResponseEntity.status(HttpStatus.GONE)
+					.body(new ApiResponse("catalog was replaced, start the listing again"));
+		}
+		return ResponseEntity.ok(new OfferPage(page.offers(), page.nextCursor()));
+	}
+
+	/** Same filters as {@link #queryOffers}, every match streamed as NDJSON without holding the listing. */
+	@GetMapping(path = "/api/v1/offers/export")
+	public void exportOffers(@RequestParam(name = "restaurant_id", required = false) Integer restaurantId,
+			@RequestParam(name = "segment", required = false) String segment,
+			@RequestParam(name = "offer_type", required = false) String offerType,
+			HttpServletResponse response) throws IOException {
+		response.setContentType(NDJSON);
+		OutputStream out = response.getOutputStream();
+		offerCatalog.export(new OfferStore.Query(restaurantId, segment, offerType), EXPORT_BATCH, batch -> {
+			for (OfferRequest offer : batch) {
+				out.write(objectMapper.writeValueAsBytes(offer));
+				out.write('\n');
+			}
+			out.flush();
+		});
+	}
+
+	@PostMapping(path = "/api/v1/offer")
+	public ResponseEntity<ApiResponse> postOperation(@RequestBody OfferRequest offerRequest,
+			@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		return upsertOffer(offerRequest, idempotencyKey);
+	}
+
+	@PutMapping(path = "/api/v1/offer/{offer_id}")
+	public ResponseEntity<ApiResponse> putOffer(@PathVariable("offer_id") String offerId,
+			@RequestBody OfferRequest offerRequest,
+			@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+		offerRequest.setOffer_id(offerId);
+		return upsertOffer(offerRequest, idempotencyKey);
+	}
 
+	@DeleteMapping(path = "/api/v1/offer/{offer_id}")
+	public ResponseEntity<ApiResponse> deleteOffer(@PathVariable("offer_id") String offerId) {
+		if (!offerCatalog.delete(offerId)) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse("offer not found"));
+		}
+		invalidationBus.publishOfferDelete(offerId);
+		return ResponseEntity.ok(new ApiResponse("success"));
+	}
 
-			connection.setRequestProperty("accept", "application/json");
+	private ResponseEntity<ApiResponse> upsertOffer(OfferRequest offerRequest, String idempotencyKey) {
+		if (!rateLimiter.tryAcquire(RestaurantRateLimiter.Endpoint.OFFER_INGEST, offerRequest.getRestaurant_id())) {
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimiter.retryAfterSeconds(
+							RestaurantRateLimiter.Endpoint.OFFER_INGEST, offerRequest.getRestaurant_id())))
+					.body(new ApiResponse(RATE_LIMITED_MSG));
+		}
+		System.out.println(offerRequest);
+		OfferCatalog.Outcome outcome = offerCatalog.upsert(offerRequest, idempotencyKey);
+		if (outcome == OfferCatalog.Outcome.KEY_CONFLICT) {
+			return ResponseEntity.unprocessableEntity()
+					.body(new ApiResponse("idempotency key already used for a different offer"));
+		}
+		if (outcome != OfferCatalog.Outcome.REPLAYED) {
+			invalidationBus.publishOfferUpsert(offerRequest);
+		}
+		return ResponseEntity.ok()
+				.location(UriComponentsBuilder.fromPath("/api/v1/offer/{offer_id}").encode()
+						.buildAndExpand(offerRequest.getOffer_id()).toUri())
+				.body(new ApiResponse("success"));
+	}
 
-			// This line makes the request
-			InputStream responseStream = connection.getInputStream();
+	/**
+	 * Hot path for apply_offer. The body is parsed by {@link ApplyOfferCodec} into a per-thread request
+	 * and the response is written from a per-thread buffer, so steady-state calls produce no garbage
+	 * here. Bodies the codec does not recognise go through Jackson, same as {@code @RequestBody} did.
+	 *
+	 * A caller deadline header bounds the segment lookup; a request that arrives expired, or whose
+	 * lookup runs out of budget, gets the configured degraded answer instead of being priced.
+	 */
+	@PostMapping(path = "/api/v1/cart/apply_offer", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+	public void applyOffer(HttpServletRequest request, HttpServletResponse response) throws Exception {
+		long deadline = deadlines.deadlineNanos(request);
+		ApplyOfferCodec.Buffers buffers = ApplyOfferCodec.buffers();
+		try {
+			// a length beyond int range comes back as -1, and is then capped while reading
+			if (!ApplyOfferCodec.readBody(request.getInputStream(), request.getContentLength(), buffers)) {
+				response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+				writeJson(response, TOO_LARGE_BODY, TOO_LARGE_BODY.length);
+				return;
+			}
+			ApplyOfferRequest applyOfferRequest = buffers.request;
+			if (!ApplyOfferCodec.parse(buffers.in, buffers.length, applyOfferRequest)) {
+				applyOfferRequest = readWithJackson(request, buffers);
+			}
+			if (deadlines.expired(deadline)) {
+				deadlines.degraded(true);
+				writeDegraded(response, applyOfferRequest, buffers);
+				return;
+			}
+			if (!rateLimiter.tryAcquire(RestaurantRateLimiter.Endpoint.APPLY_OFFER, applyOfferRequest.getRestaurant_id())) {
+				response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+				response.setIntHeader(HttpHeaders.RETRY_AFTER, rateLimiter.retryAfterSeconds(
+						RestaurantRateLimiter.Endpoint.APPLY_OFFER, applyOfferRequest.getRestaurant_id()));
+				writeJson(response, RATE_LIMITED_BODY, RATE_LIMITED_BODY.length);
+				return;
+			}
+			if (!concurrencyLimiter.tryAcquire()) {
+				response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+				writeJson(response, OVERLOADED_BODY, OVERLOADED_BODY.length);
+				return;
+			}
+			PricingTimings timings = tracer.begin();
+			long start = System.nanoTime();
+			int cartVal = 0;
+			boolean degraded;
+			try {
+				String segment = segmentClient.segmentOf(applyOfferRequest.getUser_id(), timings, deadline);
+				degraded = deadlines.expired(deadline);
+				if (!degraded) {
+					cartVal = priceCart(applyOfferRequest, segment, timings);
+				}
+			} finally {
+				concurrencyLimiter.release(start);
+			}
+			if (degraded) {
+				deadlines.degraded(false);
+				writeDegraded(response, applyOfferRequest, buffers);
+				return;
+			}
+			if (timings != null) {
+				tracer.finish(timings, response, applyOfferRequest.getUser_id(), applyOfferRequest.getRestaurant_id(),
+						applyOfferRequest.getCart_value(), cartVal);
+			}
 
-			// Manually converting the response body InputStream to APOD using Jackson
-			ObjectMapper mapper = new ObjectMapper();
-			 segmentResponse = mapper.readValue(responseStream,SegmentResponse.class);
-			System.out.println("got segment response" + segmentResponse);
+			writeJson(response, buffers.out, ApplyOfferCodec.writeResponse(cartVal, buffers.out));
+		} finally {
+			ApplyOfferCodec.release(buffers);
+		}
+	}
 
+	public ApplyOfferResponse applyOffer(ApplyOfferRequest applyOfferRequest) throws Exception {
+		String segment = segmentClient.segmentOf(applyOfferRequest.getUser_id(), null);
+		return new ApplyOfferResponse(priceCart(applyOfferRequest, segment, null));
+	}
 
-		} catch (Exception e) {
-			System.out.println(e);
+	private int priceCart(ApplyOfferRequest applyOfferRequest, String segment, PricingTimings timings) {
+		return shadowPricing.priceCart(applyOfferRequest.getCart_value(), applyOfferRequest.getRestaurant_id(),
+				segment, timings);
+	}
+
+	/** The answer for a request out of time: its cart value unpriced, or a 504. */
+	private void writeDegraded(HttpServletResponse response, ApplyOfferRequest applyOfferRequest,
+			ApplyOfferCodec.Buffers buffers) throws IOException {
+		if (deadlines.degradedResponse() == DeadlineProperty.DegradedResponse.GATEWAY_TIMEOUT) {
+			response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+			writeJson(response, DEADLINE_EXCEEDED_BODY, DEADLINE_EXCEEDED_BODY.length);
+			return;
 		}
-		return segmentResponse;
+		response.setHeader(DEGRADED_HEADER, "deadline");
+		writeJson(response, buffers.out, ApplyOfferCodec.writeResponse(applyOfferRequest.getCart_value(), buffers.out));
+	}
+
+	private static void writeJson(HttpServletResponse response, byte[] body, int len) throws IOException {
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setContentLength(len);
+		response.getOutputStream().write(body, 0, len);
 	}
 
+	private ApplyOfferRequest readWithJackson(HttpServletRequest request, ApplyOfferCodec.Buffers buffers) {
+		try {
+			return objectMapper.readValue(buffers.in, 0, buffers.length, ApplyOfferRequest.class);
+		} catch (IOException e) {
+			throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e,
+					new ServletServerHttpRequest(request));
+		}
+	}
 
 }
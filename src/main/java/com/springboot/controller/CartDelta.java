@@ -0,0 +1,9 @@
+package com.springboot.controller;
+
+import lombok.Data;
+
+@Data
+public class CartDelta {
+    // added to the session's cart value; negative for removals
+    private int cart_value_delta;
+}
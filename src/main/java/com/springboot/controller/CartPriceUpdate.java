@@ -0,0 +1,15 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CartPriceUpdate {
+    // increases with every update pushed on the session; also the event id
+    private long seq;
+    // cart value before the offer
+    private int cart_value;
+    // cart value with the offer applied, as apply_offer would answer
+    private int offer_cart_value;
+}
@@ -0,0 +1,122 @@
+package com.springboot.controller;
+
+import com.springboot.property.CartSessionProperty;
+import com.springboot.service.CartSessionService;
+import com.springboot.service.RestaurantRateLimiter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live cart sessions. {@code POST /api/v1/cart/sessions} takes an apply_offer body and opens a session,
+ * {@code GET .../{session_id}/prices} streams {@code price} events as server-sent events, and
+ * {@code POST .../{session_id}/delta} changes the cart value. A client that reconnects to the stream gets
+ * the current price first.
+ */
+@RestController
+@RequestMapping("/api/v1/cart/sessions")
+public class CartSessionController {
+
+	private static final String RATE_LIMITED_MSG = "rate limit exceeded";
+	private static final String NO_SESSION_MSG = "cart session not found";
+
+	@Autowired
+	private CartSessionService cartSessions;
+
+	@Autowired
+	private CartSessionProperty cartSessionProperty;
+
+	@Autowired
+	private RestaurantRateLimiter rateLimiter;
+
+	/** Opening a session counts against the restaurant's apply_offer rate; deltas do not. */
+	@PostMapping
+	public ResponseEntity<?> open(@RequestBody ApplyOfferRequest request) {
+		if (!rateLimiter.tryAcquire(RestaurantRateLimiter.Endpoint.APPLY_OFFER, request.getRestaurant_id())) {
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimiter.retryAfterSeconds(
+							RestaurantRateLimiter.Endpoint.APPLY_OFFER, request.getRestaurant_id())))
+					.body(new ApiResponse(RATE_LIMITED_MSG));
+		}
+		if (request.getCart_value() < 0) {
+			return ResponseEntity.badRequest().body(new ApiResponse("cart_value must not be negative"));
+		}
+		CartSessionService.Session session = cartSessions.open(request.getUser_id(), request.getRestaurant_id(),
+				request.getCart_value());
+		if (session == null) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ApiResponse("too many cart sessions"));
+		}
+		return ResponseEntity.status(HttpStatus.CREATED)
+				.location(UriComponentsBuilder.fromPath("/api/v1/cart/sessions/{session_id}/prices").encode()
+						.buildAndExpand(session.id()).toUri())
+				.body(new CartSessionResponse(session.id(), cartSessions.price(session)));
+	}
+
+	@GetMapping(path = "/{session_id}/prices", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter prices(@PathVariable("session_id") String sessionId, HttpServletResponse response)
+			throws IOException {
+		CartSessionService.Session session = cartSessions.session(sessionId);
+		if (session == null) {
+			response.sendError(HttpStatus.NOT_FOUND.value(), NO_SESSION_MSG);
+			return null;
+		}
+		// the stream ends after the idle timeout; EventSource clients reconnect by themselves
+		SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(cartSessionProperty.getIdleTimeoutSeconds()));
+		CartSessionService.Sink sink = new CartSessionService.Sink() {
+			@Override
+			public void push(CartPriceUpdate update) throws IOException {
+				emitter.send(SseEmitter.event()
+						.id(Long.toString(update.getSeq()))
+						.name("price")
+						.data(update, MediaType.APPLICATION_JSON));
+			}
+
+			@Override
+			public void close() {
+				emitter.complete();
+			}
+		};
+		emitter.onCompletion(() -> cartSessions.detach(session, sink));
+		emitter.onTimeout(() -> cartSessions.detach(session, sink));
+		emitter.onError(e -> cartSessions.detach(session, sink));
+		cartSessions.attach(session, sink);
+		return emitter;
+	}
+
+	@PostMapping("/{session_id}/delta")
+	public ResponseEntity<ApiResponse> delta(@PathVariable("session_id") String sessionId, @RequestBody CartDelta delta) {
+		CartSessionService.Session session = cartSessions.session(sessionId);
+		if (session == null) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(NO_SESSION_MSG));
+		}
+		try {
+			cartSessions.applyDelta(session, delta.getCart_value_delta());
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage()));
+		}
+		return ResponseEntity.accepted().body(new ApiResponse("accepted"));
+	}
+
+	@DeleteMapping("/{session_id}")
+	public ResponseEntity<ApiResponse> close(@PathVariable("session_id") String sessionId) {
+		if (!cartSessions.close(sessionId)) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(NO_SESSION_MSG));
+		}
+		return ResponseEntity.ok(new ApiResponse("success"));
+	}
+}
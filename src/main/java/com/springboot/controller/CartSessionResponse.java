@@ -0,0 +1,12 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CartSessionResponse {
+    private String session_id;
+    // the opening cart value with the offer applied
+    private int cart_value;
+}
@@ -1,24 +1,39 @@
 package com.springboot.controller;
 
-import java.util.List;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
-import com.springboot.property.Property;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springboot.property.ComplexProperty;
 
+import jakarta.annotation.PostConstruct;
+
 @RestController
+@Profile("!pricing-only")
 @RequestMapping("/confProperty")
 public class ConfigurationPropertyController {
 
 	@Autowired
 	private ComplexProperty complexProperty;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private PrecomputedResponse properties;
+
+	@PostConstruct
+	void init() {
+		// bound once at startup, so rendered once
+		properties = new PrecomputedResponse(objectMapper, () -> 0, complexProperty::getProperty);
+	}
+
 	@GetMapping
-	public List<Property> fetchConfigurationProperties() {
-		return complexProperty.getProperty();
+	public ResponseEntity<byte[]> fetchConfigurationProperties(WebRequest request) {
+		return properties.respond(request);
 	}
-}
\ No newline at end of file
+}
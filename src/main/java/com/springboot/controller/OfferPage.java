@@ -0,0 +1,14 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OfferPage {
+    private List<OfferRequest> offers;
+    // pass back as ?cursor= for the next page; null on the last one
+    private String next_cursor;
+}
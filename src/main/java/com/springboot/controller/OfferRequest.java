@@ -9,9 +9,19 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 public class OfferRequest {
+    // stable identity; derived from the offer's content when the client does not supply one
+    private String offer_id;
     private int restaurant_id;
     private String offer_type;
     private int offer_value;
 
     private List<String> customer_segment;
+
+    // optional validity window, epoch milliseconds; valid_until is exclusive
+    private Long valid_from;
+    private Long valid_until;
+
+    public OfferRequest(int restaurant_id, String offer_type, int offer_value, List<String> customer_segment) {
+        this(null, restaurant_id, offer_type, offer_value, customer_segment, null, null);
+    }
 }
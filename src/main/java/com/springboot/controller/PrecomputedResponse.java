@@ -0,0 +1,85 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * JSON body of a read-mostly GET endpoint, serialized once per change of its source instead of once per
+ * request.
+ *
+ * The source reports a revision that moves whenever its data changes; the body is re-rendered only
+ * when a request sees a revision other than the one the current bytes were rendered at. The strong
+ * ETag is a hash of the bytes themselves, so it is right even if the source changed while rendering,
+ * and a client that sends it back in {@code If-None-Match} gets a 304 without a body.
+ */
+final class PrecomputedResponse {
+
+	private record Rendered(long revision, byte[] body, String etag) {
+	}
+
+	private final ObjectMapper objectMapper;
+	private final LongSupplier revision;
+	private final Supplier<?> source;
+	private volatile Rendered rendered;
+
+	PrecomputedResponse(ObjectMapper objectMapper, LongSupplier revision, Supplier<?> source) {
+		this.objectMapper = objectMapper;
+		this.revision = revision;
+		this.source = source;
+	}
+
+	/** 304 when the client already has the current body, otherwise the body with its ETag. */
+	ResponseEntity<byte[]> respond(WebRequest request) {
+		Rendered current = current();
+		if (request.checkNotModified(current.etag())) {
+			return null;
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.eTag(current.etag())
+				.body(current.body());
+	}
+
+	/** Size of the rendered body held, zero before the first request. */
+	long bodyBytes() {
+		Rendered current = rendered;
+		return current == null ? 0 : current.body().length;
+	}
+
+	private Rendered current() {
+		long now = revision.getAsLong();
+		Rendered current = rendered;
+		if (current != null && current.revision() >= now) {
+			return current;
+		}
+		synchronized (this) {
+			current = rendered;
+			if (current == null || current.revision() < now) {
+				current = render(now);
+				rendered = current;
+			}
+			return current;
+		}
+	}
+
+	private Rendered render(long at) {
+		try {
+			byte[] body = objectMapper.writeValueAsBytes(source.get());
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+			return new Rendered(at, body, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Cannot serialize response", e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.service.RedemptionAnalytics;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Offer redemption counts from the latest {@link RedemptionAnalytics} snapshot. {@code GET
+ * /api/v1/redemptions} answers the most redeemed offers, optionally for one restaurant or segment;
+ * {@code GET /api/v1/redemptions/export} streams every row as newline-delimited JSON.
+ */
+@RestController
+@RequestMapping("/api/v1/redemptions")
+public class RedemptionController {
+
+	private static final String NDJSON = "application/x-ndjson";
+	private static final int MAX_LIMIT = 1000;
+
+	@Autowired
+	private RedemptionAnalytics redemptions;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@GetMapping
+	public ResponseEntity<?> report(@RequestParam(name = "restaurant_id", required = false) Integer restaurantId,
+			@RequestParam(name = "segment", required = false) String segment,
+			@RequestParam(name = "limit", defaultValue = "100") int limit) {
+		if (limit < 1 || limit > MAX_LIMIT) {
+			return ResponseEntity.badRequest().body(new ApiResponse("limit must be between 1 and " + MAX_LIMIT));
+		}
+		return ResponseEntity.ok(redemptions.report(restaurantId, segment, limit));
+	}
+
+	@GetMapping("/export")
+	public void export(HttpServletResponse response) throws IOException {
+		response.setContentType(NDJSON);
+		OutputStream out = response.getOutputStream();
+		for (RedemptionCount row : redemptions.all()) {
+			out.write(objectMapper.writeValueAsBytes(row));
+			out.write('\n');
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,16 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RedemptionCount {
+    private String offer_id;
+    private int restaurant_id;
+    private String segment;
+    // since the service started
+    private long redemptions;
+    // since the snapshot before
+    private long last_interval;
+}
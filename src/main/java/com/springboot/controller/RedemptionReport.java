@@ -0,0 +1,17 @@
+package com.springboot.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RedemptionReport {
+    // epoch millis the counters were added up at
+    private long taken_at;
+    private long interval_millis;
+    private long total_redemptions;
+    // most redeemed first
+    private List<RedemptionCount> offers;
+}
@@ -0,0 +1,26 @@
+package com.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One offer upsert through the API. */
+@Name("com.springboot.OfferIngest")
+@Label("Offer Ingest")
+@Category({"Pricing"})
+@StackTrace(false)
+public class OfferIngestEvent extends Event {
+
+	@Label("Offer Id")
+	public String offerId;
+
+	@Label("Restaurant Id")
+	public int restaurantId;
+
+	@Label("Outcome")
+	@Description("CREATED, UPDATED, REPLAYED or KEY_CONFLICT")
+	public String outcome;
+}
@@ -0,0 +1,30 @@
+package com.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Offer match and discount for one cart. */
+@Name("com.springboot.PriceCart")
+@Label("Price Cart")
+@Category({"Pricing"})
+@StackTrace(false)
+public class PriceCartEvent extends Event {
+
+	@Label("Restaurant Id")
+	public int restaurantId;
+
+	@Label("Segment")
+	public String segment;
+
+	@Label("Matched")
+	public boolean matched;
+
+	@Label("Cart Value")
+	public int cartValue;
+
+	@Label("Priced Value")
+	public int pricedValue;
+}
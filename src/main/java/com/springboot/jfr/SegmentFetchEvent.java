@@ -0,0 +1,27 @@
+package com.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One user segment lookup, from the cache or the segment service. */
+@Name("com.springboot.SegmentFetch")
+@Label("Segment Fetch")
+@Category({"Pricing"})
+@StackTrace(false)
+public class SegmentFetchEvent extends Event {
+
+	@Label("User Id")
+	public int userId;
+
+	@Label("Segment")
+	@Description("Null when the lookup failed")
+	public String segment;
+
+	@Label("Source")
+	@Description("cache, service or failed")
+	public String source;
+}
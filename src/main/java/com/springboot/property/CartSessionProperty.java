@@ -0,0 +1,83 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Live cart sessions: a client keeps one open per cart, sends cart value deltas and gets prices pushed
+ * back over server-sent events.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.cart-session")
+public class CartSessionProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** open sessions beyond this are refused with 503 */
+	private int maxSessions = 10000;
+
+	/** sessions without a delta or an attached stream for this long are closed */
+	private long idleTimeoutSeconds = 300;
+
+	/** threads pricing and pushing updates; a slow client holds one for at most push-timeout-millis */
+	private int pushThreads = 2;
+
+	/** a push not written within this time closes the stream; the client reconnects for the latest price */
+	private long pushTimeoutMillis = 2000;
+
+	/** threads writing to streams; a client that stopped reading holds two until its connection times out */
+	private int writeThreads = 64;
+
+	/** how often idle sessions are swept and catalog changes are pushed to open sessions */
+	private long sweepMillis = 1000;
+
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+
+	public long getIdleTimeoutSeconds() {
+		return idleTimeoutSeconds;
+	}
+
+	public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+		this.idleTimeoutSeconds = idleTimeoutSeconds;
+	}
+
+	public int getPushThreads() {
+		return pushThreads;
+	}
+
+	public void setPushThreads(int pushThreads) {
+		this.pushThreads = pushThreads;
+	}
+
+	public long getPushTimeoutMillis() {
+		return pushTimeoutMillis;
+	}
+
+	public void setPushTimeoutMillis(long pushTimeoutMillis) {
+		this.pushTimeoutMillis = pushTimeoutMillis;
+	}
+
+	public int getWriteThreads() {
+		return writeThreads;
+	}
+
+	public void setWriteThreads(int writeThreads) {
+		this.writeThreads = writeThreads;
+	}
+
+	public long getSweepMillis() {
+		return sweepMillis;
+	}
+
+	public void setSweepMillis(long sweepMillis) {
+		this.sweepMillis = sweepMillis;
+	}
+}
@@ -3,9 +3,11 @@ package com.springboot.property;
 import java.io.Serializable;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 @Component
+@Profile("!pricing-only")
 @ConfigurationProperties(prefix = "complex")
 public class ComplexProperty extends BaseProperty implements Serializable {
 	private static final long serialVersionUID = 1L;
@@ -0,0 +1,90 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adaptive in-flight limit for apply_offer. The limit starts at {@code initial-limit} and moves between
+ * {@code min-limit} and {@code max-limit} as observed latency changes.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.concurrency-limit")
+public class ConcurrencyLimitProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean enabled;
+
+	private int initialLimit = 50;
+
+	private int minLimit = 8;
+
+	private int maxLimit = 1000;
+
+	/** weight of each new limit estimate, 0..1 */
+	private double smoothing = 0.2;
+
+	/** minimum length of a sampling window */
+	private long windowMillis = 100;
+
+	/** minimum samples before a window is evaluated */
+	private int windowMinSamples = 20;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	public int getWindowMinSamples() {
+		return windowMinSamples;
+	}
+
+	public void setWindowMinSamples(int windowMinSamples) {
+		this.windowMinSamples = windowMinSamples;
+	}
+}
@@ -0,0 +1,67 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caller deadlines on apply_offer. A request may carry its deadline as epoch milliseconds or as the
+ * milliseconds it has left; without either header nothing changes.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.deadline")
+public class DeadlineProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum DegradedResponse {
+		/** 200 with the cart value unchanged, as if no offer applied */
+		UNDISCOUNTED,
+		/** 504 */
+		GATEWAY_TIMEOUT
+	}
+
+	/** header with the absolute deadline in epoch milliseconds; relies on the caller's clock */
+	private String deadlineHeader = "X-Request-Deadline";
+
+	/** header with the remaining budget in milliseconds; used when the deadline header is absent */
+	private String timeoutHeader = "X-Request-Timeout-Ms";
+
+	/** part of the budget kept for writing the answer; segment lookups are cut off this much before the deadline */
+	private long reserveMillis = 2;
+
+	private DegradedResponse degradedResponse = DegradedResponse.UNDISCOUNTED;
+
+	public String getDeadlineHeader() {
+		return deadlineHeader;
+	}
+
+	public void setDeadlineHeader(String deadlineHeader) {
+		this.deadlineHeader = deadlineHeader;
+	}
+
+	public String getTimeoutHeader() {
+		return timeoutHeader;
+	}
+
+	public void setTimeoutHeader(String timeoutHeader) {
+		this.timeoutHeader = timeoutHeader;
+	}
+
+	public long getReserveMillis() {
+		return reserveMillis;
+	}
+
+	public void setReserveMillis(long reserveMillis) {
+		this.reserveMillis = reserveMillis;
+	}
+
+	public DegradedResponse getDegradedResponse() {
+		return degradedResponse;
+	}
+
+	public void setDegradedResponse(DegradedResponse degradedResponse) {
+		this.degradedResponse = degradedResponse;
+	}
+}
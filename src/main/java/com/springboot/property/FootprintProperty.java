@@ -0,0 +1,38 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimated retained size of the in-process data structures, sampled to report how fast each grows.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.footprint")
+public class FootprintProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** how often sizes are sampled for the growth rate */
+	private long sampleSeconds = 60;
+
+	/** samples kept; growth is measured from the oldest of them */
+	private int windowSamples = 60;
+
+	public long getSampleSeconds() {
+		return sampleSeconds;
+	}
+
+	public void setSampleSeconds(long sampleSeconds) {
+		this.sampleSeconds = sampleSeconds;
+	}
+
+	public int getWindowSamples() {
+		return windowSamples;
+	}
+
+	public void setWindowSamples(int windowSamples) {
+		this.windowSamples = windowSamples;
+	}
+}
@@ -0,0 +1,106 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * UDP bus that replays offer writes and segment invalidations on the other instances of the service.
+ * Every instance lists the others as {@code peers}; there is no broker. Messages are neither signed nor
+ * encrypted and a peer is recognised by its source address only, so the bus must run on a trusted network.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.invalidation")
+public class InvalidationProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean enabled;
+
+	/** loopback unless set; other instances can only reach the bus once this is an address they can route to */
+	private String bindAddress = "127.0.0.1";
+
+	private int port = 7400;
+
+	/** host:port of every other instance; packets from any other address are dropped */
+	private List<String> peers = new ArrayList<>();
+
+	/** how often an instance announces its latest sequence number, so a lost last message is noticed */
+	private long heartbeatMillis = 1000;
+
+	/** how long a gap is waited on for retransmits before its messages are given up as lost */
+	private long gapTimeoutMillis = 3000;
+
+	/** messages kept for retransmission, and out-of-order messages held per sender */
+	private int retransmitWindow = 4096;
+
+	/** messages resent for one NACK; a longer gap is asked for again on the next heartbeat */
+	private int maxRetransmitsPerNack = 64;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getBindAddress() {
+		return bindAddress;
+	}
+
+	public void setBindAddress(String bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public List<String> getPeers() {
+		return peers;
+	}
+
+	public void setPeers(List<String> peers) {
+		this.peers = peers;
+	}
+
+	public long getHeartbeatMillis() {
+		return heartbeatMillis;
+	}
+
+	public void setHeartbeatMillis(long heartbeatMillis) {
+		this.heartbeatMillis = heartbeatMillis;
+	}
+
+	public long getGapTimeoutMillis() {
+		return gapTimeoutMillis;
+	}
+
+	public void setGapTimeoutMillis(long gapTimeoutMillis) {
+		this.gapTimeoutMillis = gapTimeoutMillis;
+	}
+
+	public int getRetransmitWindow() {
+		return retransmitWindow;
+	}
+
+	public void setRetransmitWindow(int retransmitWindow) {
+		this.retransmitWindow = retransmitWindow;
+	}
+
+	public int getMaxRetransmitsPerNack() {
+		return maxRetransmitsPerNack;
+	}
+
+	public void setMaxRetransmitsPerNack(int maxRetransmitsPerNack) {
+		this.maxRetransmitsPerNack = maxRetransmitsPerNack;
+	}
+}
@@ -0,0 +1,72 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * On-demand flight recordings started from the admin API. Recordings are always bounded in time and
+ * size, whatever the caller asks for.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.jfr")
+public class JfrProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** JFR settings the recording starts from: "default" (~1% overhead) or "profile" (~2%, more sampling) */
+	private String settings = "profile";
+
+	/** length of a recording when the caller does not say */
+	private long defaultDurationSeconds = 60;
+
+	/** upper bound on the length of any recording; it stops by itself after this */
+	private long maxDurationSeconds = 600;
+
+	/** recording data kept at most; the oldest chunks are dropped beyond it */
+	private long maxSizeMb = 256;
+
+	/** where recording files are written until they are downloaded; the temp directory when unset */
+	private String directory;
+
+	public String getSettings() {
+		return settings;
+	}
+
+	public void setSettings(String settings) {
+		this.settings = settings;
+	}
+
+	public long getDefaultDurationSeconds() {
+		return defaultDurationSeconds;
+	}
+
+	public void setDefaultDurationSeconds(long defaultDurationSeconds) {
+		this.defaultDurationSeconds = defaultDurationSeconds;
+	}
+
+	public long getMaxDurationSeconds() {
+		return maxDurationSeconds;
+	}
+
+	public void setMaxDurationSeconds(long maxDurationSeconds) {
+		this.maxDurationSeconds = maxDurationSeconds;
+	}
+
+	public long getMaxSizeMb() {
+		return maxSizeMb;
+	}
+
+	public void setMaxSizeMb(long maxSizeMb) {
+		this.maxSizeMb = maxSizeMb;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+}
@@ -0,0 +1,105 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "pricing.catalog")
+public class OfferCatalogProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Storage {
+		HEAP, OFF_HEAP
+	}
+
+	/** where the offer columns live; off-heap keeps a large catalog out of the garbage collector's way */
+	private Storage storage = Storage.HEAP;
+
+	/** rows allocated up front; the store doubles when it fills up */
+	private int initialCapacity = 1024;
+
+	/** resolution of the expiry timer wheel; expired offers are evicted at most one tick late */
+	private long expiryTickMillis = 1000;
+
+	/** how long an Idempotency-Key is remembered */
+	private long idempotencyKeyTtlSeconds = 24 * 60 * 60;
+
+	/** most Idempotency-Keys remembered at once; the least recently used are forgotten first */
+	private int idempotencyKeyCapacity = 100_000;
+
+	/** directory watched for catalog files; each new file replaces the whole catalog. Unset disables it */
+	private String watchDir;
+
+	/** quiet period after the last change in the directory before the newest file is loaded */
+	private long reloadSettleMillis = 500;
+
+	/** largest catalog GET /api/v1/offer returns in one body; beyond it clients page through /api/v1/offers */
+	private int fullListingLimit = 10_000;
+
+	public Storage getStorage() {
+		return storage;
+	}
+
+	public void setStorage(Storage storage) {
+		this.storage = storage;
+	}
+
+	public int getInitialCapacity() {
+		return initialCapacity;
+	}
+
+	public void setInitialCapacity(int initialCapacity) {
+		this.initialCapacity = initialCapacity;
+	}
+
+	public long getExpiryTickMillis() {
+		return expiryTickMillis;
+	}
+
+	public void setExpiryTickMillis(long expiryTickMillis) {
+		this.expiryTickMillis = expiryTickMillis;
+	}
+
+	public long getIdempotencyKeyTtlSeconds() {
+		return idempotencyKeyTtlSeconds;
+	}
+
+	public void setIdempotencyKeyTtlSeconds(long idempotencyKeyTtlSeconds) {
+		this.idempotencyKeyTtlSeconds = idempotencyKeyTtlSeconds;
+	}
+
+	public int getIdempotencyKeyCapacity() {
+		return idempotencyKeyCapacity;
+	}
+
+	public void setIdempotencyKeyCapacity(int idempotencyKeyCapacity) {
+		this.idempotencyKeyCapacity = idempotencyKeyCapacity;
+	}
+
+	public String getWatchDir() {
+		return watchDir;
+	}
+
+	public void setWatchDir(String watchDir) {
+		this.watchDir = watchDir;
+	}
+
+	public long getReloadSettleMillis() {
+		return reloadSettleMillis;
+	}
+
+	public void setReloadSettleMillis(long reloadSettleMillis) {
+		this.reloadSettleMillis = reloadSettleMillis;
+	}
+
+	public int getFullListingLimit() {
+		return fullListingLimit;
+	}
+
+	public void setFullListingLimit(int fullListingLimit) {
+		this.fullListingLimit = fullListingLimit;
+	}
+}
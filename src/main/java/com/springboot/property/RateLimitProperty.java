@@ -0,0 +1,136 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-restaurant rate limits for apply_offer and offer ingestion. Restaurants not listed under
+ * {@code restaurants} use {@code default-tier}.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.rate-limit")
+public class RateLimitProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean enabled;
+
+	private int stripes = 64;
+
+	private int initialStripeCapacity = 1024;
+
+	private long idleEvictionSeconds = 300;
+
+	private String defaultTier = "standard";
+
+	private Map<String, Tier> tiers = new LinkedHashMap<>();
+
+	/** restaurant_id to tier name */
+	private Map<Integer, String> restaurants = new HashMap<>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getStripes() {
+		return stripes;
+	}
+
+	public void setStripes(int stripes) {
+		this.stripes = stripes;
+	}
+
+	public int getInitialStripeCapacity() {
+		return initialStripeCapacity;
+	}
+
+	public void setInitialStripeCapacity(int initialStripeCapacity) {
+		this.initialStripeCapacity = initialStripeCapacity;
+	}
+
+	public long getIdleEvictionSeconds() {
+		return idleEvictionSeconds;
+	}
+
+	public void setIdleEvictionSeconds(long idleEvictionSeconds) {
+		this.idleEvictionSeconds = idleEvictionSeconds;
+	}
+
+	public String getDefaultTier() {
+		return defaultTier;
+	}
+
+	public void setDefaultTier(String defaultTier) {
+		this.defaultTier = defaultTier;
+	}
+
+	public Map<String, Tier> getTiers() {
+		return tiers;
+	}
+
+	public void setTiers(Map<String, Tier> tiers) {
+		this.tiers = tiers;
+	}
+
+	public Map<Integer, String> getRestaurants() {
+		return restaurants;
+	}
+
+	public void setRestaurants(Map<Integer, String> restaurants) {
+		this.restaurants = restaurants;
+	}
+
+	public static class Tier implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int applyOfferPerSecond = 200;
+
+		private int applyOfferBurst = 400;
+
+		private int offerIngestPerSecond = 20;
+
+		private int offerIngestBurst = 40;
+
+		public int getApplyOfferPerSecond() {
+			return applyOfferPerSecond;
+		}
+
+		public void setApplyOfferPerSecond(int applyOfferPerSecond) {
+			this.applyOfferPerSecond = applyOfferPerSecond;
+		}
+
+		public int getApplyOfferBurst() {
+			return applyOfferBurst;
+		}
+
+		public void setApplyOfferBurst(int applyOfferBurst) {
+			this.applyOfferBurst = applyOfferBurst;
+		}
+
+		public int getOfferIngestPerSecond() {
+			return offerIngestPerSecond;
+		}
+
+		public void setOfferIngestPerSecond(int offerIngestPerSecond) {
+			this.offerIngestPerSecond = offerIngestPerSecond;
+		}
+
+		public int getOfferIngestBurst() {
+			return offerIngestBurst;
+		}
+
+		public void setOfferIngestBurst(int offerIngestBurst) {
+			this.offerIngestBurst = offerIngestBurst;
+		}
+	}
+}
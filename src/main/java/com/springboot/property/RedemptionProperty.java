@@ -0,0 +1,48 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts of offers applied by apply_offer, per offer, restaurant and segment.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.redemptions")
+public class RedemptionProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean enabled;
+
+	/** how often the per-thread counters are added up into the snapshot the endpoints serve */
+	private long aggregateMillis = 10_000;
+
+	/** distinct offer and segment pairs a thread counts between two aggregations; beyond, only as dropped */
+	private int maxKeysPerThread = 65536;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public long getAggregateMillis() {
+		return aggregateMillis;
+	}
+
+	public void setAggregateMillis(long aggregateMillis) {
+		this.aggregateMillis = aggregateMillis;
+	}
+
+	public int getMaxKeysPerThread() {
+		return maxKeysPerThread;
+	}
+
+	public void setMaxKeysPerThread(int maxKeysPerThread) {
+		this.maxKeysPerThread = maxKeysPerThread;
+	}
+}
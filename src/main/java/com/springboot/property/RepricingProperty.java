@@ -0,0 +1,94 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Offline repricing job, run with the {@code reprice} profile. Paths are required; the rest tunes the
+ * run.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.reprice")
+public class RepricingProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** carts to price, .csv or .ndjson/.jsonl */
+	private String input;
+
+	/** where priced carts are written, in the input's format */
+	private String output;
+
+	/** user_id,segment CSV */
+	private String segments;
+
+	/** offers as NDJSON or a JSON array, in the add-offer request format */
+	private String offers;
+
+	/** lines per chunk; two chunks are held in memory at a time */
+	private int chunkLines = 65_536;
+
+	/** worker threads; 0 uses every core */
+	private int parallelism;
+
+	/** instant (epoch ms) offer validity is checked at; 0 means now */
+	private long asOfMillis;
+
+	public String getInput() {
+		return input;
+	}
+
+	public void setInput(String input) {
+		this.input = input;
+	}
+
+	public String getOutput() {
+		return output;
+	}
+
+	public void setOutput(String output) {
+		this.output = output;
+	}
+
+	public String getSegments() {
+		return segments;
+	}
+
+	public void setSegments(String segments) {
+		this.segments = segments;
+	}
+
+	public String getOffers() {
+		return offers;
+	}
+
+	public void setOffers(String offers) {
+		this.offers = offers;
+	}
+
+	public int getChunkLines() {
+		return chunkLines;
+	}
+
+	public void setChunkLines(int chunkLines) {
+		this.chunkLines = chunkLines;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public long getAsOfMillis() {
+		return asOfMillis;
+	}
+
+	public void setAsOfMillis(long asOfMillis) {
+		this.asOfMillis = asOfMillis;
+	}
+}
@@ -0,0 +1,243 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Connection to the user segment service and optional request hedging: when a call has not answered
+ * within the observed {@code hedge.percentile} latency, a second identical call is sent and whichever
+ * answers first is used.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.segment")
+public class SegmentProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String baseUrl = "http://localhost:1080";
+
+	private long connectTimeoutMillis = 1000;
+
+	/** overall wait for an answer, hedge included */
+	private long requestTimeoutMillis = 5000;
+
+	private Hedge hedge = new Hedge();
+
+	private Cache cache = new Cache();
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	public long getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public long getRequestTimeoutMillis() {
+		return requestTimeoutMillis;
+	}
+
+	public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+	public Hedge getHedge() {
+		return hedge;
+	}
+
+	public void setHedge(Hedge hedge) {
+		this.hedge = hedge;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public void setCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	public static class Cache implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private boolean enabled;
+
+		/** how long a user's segment is reused before asking the service again */
+		private long ttlSeconds = 60;
+
+		/**
+		 * age after which a cached segment is refreshed in the background while still being served; up to
+		 * {@code ttl-seconds} it keeps being served if refreshes fail. 0 refreshes only on expiry, in line
+		 */
+		private long refreshAfterSeconds;
+
+		/** background refreshes in flight at most, to spare the segment service */
+		private int refreshConcurrency = 4;
+
+		/** refreshes waiting for a slot at most; beyond that, stale hits do not queue another */
+		private int refreshQueue = 1024;
+
+		/** wait before retrying the refresh of an entry whose last refresh failed */
+		private long refreshRetryMillis = 1000;
+
+		/** users cached at most; the cache is allocated at this size up front */
+		private int capacity = 65_536;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getTtlSeconds() {
+			return ttlSeconds;
+		}
+
+		public void setTtlSeconds(long ttlSeconds) {
+			this.ttlSeconds = ttlSeconds;
+		}
+
+		public long getRefreshAfterSeconds() {
+			return refreshAfterSeconds;
+		}
+
+		public void setRefreshAfterSeconds(long refreshAfterSeconds) {
+			this.refreshAfterSeconds = refreshAfterSeconds;
+		}
+
+		public int getRefreshConcurrency() {
+			return refreshConcurrency;
+		}
+
+		public void setRefreshConcurrency(int refreshConcurrency) {
+			this.refreshConcurrency = refreshConcurrency;
+		}
+
+		public int getRefreshQueue() {
+			return refreshQueue;
+		}
+
+		public void setRefreshQueue(int refreshQueue) {
+			this.refreshQueue = refreshQueue;
+		}
+
+		public long getRefreshRetryMillis() {
+			return refreshRetryMillis;
+		}
+
+		public void setRefreshRetryMillis(long refreshRetryMillis) {
+			this.refreshRetryMillis = refreshRetryMillis;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(int capacity) {
+			this.capacity = capacity;
+		}
+	}
+
+	public static class Hedge implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private boolean enabled;
+
+		/** latency quantile (0..1) after which the hedge is sent */
+		private double percentile = 0.95;
+
+		/** bounds for the hedge delay, whatever the observed latency */
+		private long minDelayMillis = 2;
+
+		private long maxDelayMillis = 500;
+
+		/** hedges allowed per 100 calls; unused allowance is banked up to {@code budget-burst} hedges */
+		private int budgetPercent = 5;
+
+		private int budgetBurst = 10;
+
+		/** calls observed before the first delay estimate; no hedging until then */
+		private int minSamples = 100;
+
+		/** how often the delay is re-estimated from the latest window of calls */
+		private long refreshMillis = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getPercentile() {
+			return percentile;
+		}
+
+		public void setPercentile(double percentile) {
+			this.percentile = percentile;
+		}
+
+		public long getMinDelayMillis() {
+			return minDelayMillis;
+		}
+
+		public void setMinDelayMillis(long minDelayMillis) {
+			this.minDelayMillis = minDelayMillis;
+		}
+
+		public long getMaxDelayMillis() {
+			return maxDelayMillis;
+		}
+
+		public void setMaxDelayMillis(long maxDelayMillis) {
+			this.maxDelayMillis = maxDelayMillis;
+		}
+
+		public int getBudgetPercent() {
+			return budgetPercent;
+		}
+
+		public void setBudgetPercent(int budgetPercent) {
+			this.budgetPercent = budgetPercent;
+		}
+
+		public int getBudgetBurst() {
+			return budgetBurst;
+		}
+
+		public void setBudgetBurst(int budgetBurst) {
+			this.budgetBurst = budgetBurst;
+		}
+
+		public int getMinSamples() {
+			return minSamples;
+		}
+
+		public void setMinSamples(int minSamples) {
+			this.minSamples = minSamples;
+		}
+
+		public long getRefreshMillis() {
+			return refreshMillis;
+		}
+
+		public void setRefreshMillis(long refreshMillis) {
+			this.refreshMillis = refreshMillis;
+		}
+	}
+}
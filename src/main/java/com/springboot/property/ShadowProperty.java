@@ -0,0 +1,82 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shadow pricing: a sample of apply_offer calls is priced again, off the request thread, by a
+ * candidate engine and the two answers and latencies are compared.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.shadow")
+public class ShadowProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean enabled;
+
+	/** bean name of the candidate PricingEngine */
+	private String candidate = "scan";
+
+	/** fraction of apply_offer calls mirrored, 0..1 */
+	private double sampleRate = 0.01;
+
+	/** threads running the candidate */
+	private int threads = 1;
+
+	/** mirrored calls waiting for a thread; beyond this they are dropped, never waited for */
+	private int queue = 1024;
+
+	/** most recent mismatches kept for the admin read-out */
+	private int mismatchSamples = 20;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getCandidate() {
+		return candidate;
+	}
+
+	public void setCandidate(String candidate) {
+		this.candidate = candidate;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getQueue() {
+		return queue;
+	}
+
+	public void setQueue(int queue) {
+		this.queue = queue;
+	}
+
+	public int getMismatchSamples() {
+		return mismatchSamples;
+	}
+
+	public void setMismatchSamples(int mismatchSamples) {
+		this.mismatchSamples = mismatchSamples;
+	}
+}
@@ -0,0 +1,49 @@
+package com.springboot.property;
+
+import java.io.Serializable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-request stage timing for apply_offer. With everything off (the default) no stage is timed.
+ */
+@Component
+@ConfigurationProperties(prefix = "pricing.tracing")
+public class TracingProperty implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** add a Server-Timing header with segment, match and discount durations to every response */
+	private boolean serverTiming;
+
+	/** fraction of requests (0..1) whose stage breakdown is logged */
+	private double sampleRate;
+
+	/** also log every request slower than this; 0 turns it off */
+	private long slowMillis;
+
+	public boolean isServerTiming() {
+		return serverTiming;
+	}
+
+	public void setServerTiming(boolean serverTiming) {
+		this.serverTiming = serverTiming;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public long getSlowMillis() {
+		return slowMillis;
+	}
+
+	public void setSlowMillis(long slowMillis) {
+		this.slowMillis = slowMillis;
+	}
+}
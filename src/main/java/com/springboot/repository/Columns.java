@@ -0,0 +1,168 @@
+package com.springboot.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Fixed-width primitive columns backing {@link OfferStore}, either as plain arrays or as direct
+ * (off-heap) buffers. A store uses one flavour for all of its columns, so call sites stay monomorphic.
+ */
+final class Columns {
+
+	private Columns() {
+	}
+
+	static IntColumn ints(int capacity, boolean offHeap) {
+		return offHeap ? new DirectIntColumn(capacity) : new HeapIntColumn(capacity);
+	}
+
+	static LongColumn longs(int capacity, boolean offHeap) {
+		return offHeap ? new DirectLongColumn(capacity) : new HeapLongColumn(capacity);
+	}
+
+	abstract static class IntColumn {
+		abstract int get(int row);
+
+		abstract void set(int row, int value);
+
+		/** Copy of this column with room for {@code capacity} rows. */
+		abstract IntColumn resize(int capacity);
+
+		abstract long bytes();
+	}
+
+	abstract static class LongColumn {
+		abstract long get(int row);
+
+		abstract void set(int row, long value);
+
+		abstract LongColumn resize(int capacity);
+
+		abstract long bytes();
+	}
+
+	private static final class HeapIntColumn extends IntColumn {
+		private final int[] values;
+
+		HeapIntColumn(int capacity) {
+			this(new int[capacity]);
+		}
+
+		private HeapIntColumn(int[] values) {
+			this.values = values;
+		}
+
+		@Override
+		int get(int row) {
+			return values[row];
+		}
+
+		@Override
+		void set(int row, int value) {
+			values[row] = value;
+		}
+
+		@Override
+		IntColumn resize(int capacity) {
+			return new HeapIntColumn(Arrays.copyOf(values, capacity));
+		}
+
+		@Override
+		long bytes() {
+			return (long) values.length * Integer.BYTES;
+		}
+	}
+
+	private static final class HeapLongColumn extends LongColumn {
+		private final long[] values;
+
+		HeapLongColumn(int capacity) {
+			this(new long[capacity]);
+		}
+
+		private HeapLongColumn(long[] values) {
+			this.values = values;
+		}
+
+		@Override
+		long get(int row) {
+			return values[row];
+		}
+
+		@Override
+		void set(int row, long value) {
+			values[row] = value;
+		}
+
+		@Override
+		LongColumn resize(int capacity) {
+			return new HeapLongColumn(Arrays.copyOf(values, capacity));
+		}
+
+		@Override
+		long bytes() {
+			return (long) values.length * Long.BYTES;
+		}
+	}
+
+	private static final class DirectIntColumn extends IntColumn {
+		private final ByteBuffer buffer;
+
+		DirectIntColumn(int capacity) {
+			this.buffer = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+		}
+
+		@Override
+		int get(int row) {
+			return buffer.getInt(row << 2);
+		}
+
+		@Override
+		void set(int row, int value) {
+			buffer.putInt(row << 2, value);
+		}
+
+		@Override
+		IntColumn resize(int capacity) {
+			DirectIntColumn copy = new DirectIntColumn(capacity);
+			copy.buffer.put(0, buffer, 0, Math.min(buffer.capacity(), copy.buffer.capacity()));
+			return copy;
+		}
+
+		@Override
+		long bytes() {
+			return buffer.capacity();
+		}
+	}
+
+	private static final class DirectLongColumn extends LongColumn {
+		private final ByteBuffer buffer;
+
+		DirectLongColumn(int capacity) {
+			this.buffer = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder());
+		}
+
+		@Override
+		long get(int row) {
+			return buffer.getLong(row << 3);
+		}
+
+		@Override
+		void set(int row, long value) {
+			buffer.putLong(row << 3, value);
+		}
+
+		@Override
+		LongColumn resize(int capacity) {
+			DirectLongColumn copy = new DirectLongColumn(capacity);
+			copy.buffer.put(0, buffer, 0, Math.min(buffer.capacity(), copy.buffer.capacity()));
+			return copy;
+		}
+
+		@Override
+		long bytes() {
+			return buffer.capacity();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.springboot.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offer files in the add-offer request format, either a JSON array or one offer per line (NDJSON).
+ */
+public final class OfferFiles {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private OfferFiles() {
+	}
+
+	public static List<OfferRequest> read(Path path) throws IOException {
+		List<OfferRequest> offers = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			int first;
+			do {
+				reader.mark(1);
+				first = reader.read();
+			} while (first != -1 && Character.isWhitespace(first));
+			reader.reset();
+			if (first == '[') {
+				offers.addAll(Arrays.asList(MAPPER.readValue(reader, OfferRequest[].class)));
+			} else {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.isBlank()) {
+						offers.add(MAPPER.readValue(line, OfferRequest.class));
+					}
+				}
+			}
+		}
+		return offers;
+	}
+}
@@ -0,0 +1,51 @@
+package com.springboot.repository;
+
+/**
+ * Mutable result of {@link OfferStore#match}, meant to be reused by the calling thread so matching
+ * does not allocate. Only meaningful after a match returned true.
+ */
+public final class OfferMatch {
+
+	int row;
+	long seq;
+	int restaurantId;
+	boolean flat;
+	int value;
+	int segmentCode;
+
+	/** Row the offer was stored in when it matched. */
+	public int row() {
+		return row;
+	}
+
+	/** Insertion sequence of the matched offer; unlike the row it is never reused. */
+	public long seq() {
+		return seq;
+	}
+
+	public int restaurantId() {
+		return restaurantId;
+	}
+
+	/** True for FLATX (subtract {@link #value()}), false for a percentage offer. */
+	public boolean flat() {
+		return flat;
+	}
+
+	public int value() {
+		return value;
+	}
+
+	/** The store's code for the segment matched on; stable for the life of the store. */
+	public int segmentCode() {
+		return segmentCode;
+	}
+
+	/** {@code cartValue} after this offer: FLATX subtracts the value, anything else takes a percentage off. */
+	public int applyTo(int cartValue) {
+		if (flat) {
+			return cartValue - value;
+		}
+		return (int) (cartValue - cartValue * value * (0.01));
+	}
+}
@@ -0,0 +1,761 @@
+package com.springboot.repository;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.util.IntIntMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Offer catalog stored column-wise: one primitive column per field (restaurant, type code, value,
+ * segment bitmask, validity window, id), optionally in off-heap buffers. Nothing is allocated per
+ * offer apart from the rare client-chosen id or offer with more than 63 distinct segments in the
+ * catalog, and matching walks primitive columns without materializing {@link OfferRequest}s.
+ *
+ * Offers of a restaurant are chained in insertion order, which is also match precedence: the first
+ * offer in the chain that covers the user's segment and is valid right now wins. Re-submitting an
+ * offer with the same {@code offer_id} overwrites its row in place and keeps its position.
+ *
+ * Writers take a {@link StampedLock} write lock; {@link #match} runs as an optimistic read and only
+ * falls back to the read lock when a write overlapped it.
+ */
+public class OfferStore {
+
+	static final String FLAT_TYPE = "FLATX";
+
+	private static final long NO_VALID_FROM = Long.MIN_VALUE;
+	private static final long NO_VALID_UNTIL = Long.MAX_VALUE;
+	private static final int SEGMENT_BITS = 63;
+	private static final long OVERFLOW_SEGMENTS = 1L << 63;
+	private static final int FREE = 0;
+	// rows examined per read-lock hold while scanning, so a long listing never holds writers off for long
+	private static final int SCAN_SLICE = 4096;
+
+	/** Listing filter; null fields match everything. */
+	public record Query(Integer restaurantId, String segment, String offerType) {
+	}
+
+	/**
+	 * Handle for the stored offer (see {@link #removeIfExpired}), whether the upsert created it, and the
+	 * {@code valid_until} it replaced, null when it created the offer or the offer had none.
+	 */
+	public record Upserted(long handle, boolean created, Long previousValidUntil) {
+	}
+
+	/** An offer copied out with its insertion sequence, sorted outside the lock. */
+	private record Sequenced(long seq, OfferRequest offer) {
+	}
+
+	/** What {@link #removeAndGetHandle} answers when there was no such offer. */
+	public static final long NO_HANDLE = -1;
+
+	private final boolean offHeap;
+	private final long generation;
+	private final StampedLock lock = new StampedLock();
+
+	private Columns.IntColumn restaurantIds;
+	private Columns.IntColumn types;
+	private Columns.IntColumn values;
+	private Columns.IntColumn next;
+	private Columns.IntColumn prev;
+	private Columns.LongColumn segmentMasks;
+	private Columns.LongColumn validFrom;
+	private Columns.LongColumn validUntil;
+	private Columns.LongColumn idHi;
+	private Columns.LongColumn idLo;
+	private Columns.LongColumn seqs;
+	private int capacity;
+	// rows [0, highWater) have been handed out at least once
+	private int highWater;
+	private int live;
+	private int[] freeRows = new int[16];
+	private int freeCount;
+	// shared with the stores this one replaces, so an insertion sequence names one offer for good
+	private final AtomicLong lastSeq;
+	private LongConsumer onRemove = seq -> { };
+
+	// restaurant_id -> first / last row of its chain
+	private final IntIntMap heads = new IntIntMap();
+	private final IntIntMap tails = new IntIntMap();
+
+	// offer_id -> row, open addressing over row + 1
+	private int[] idIndex = new int[32];
+
+	private final Map<String, Integer> segmentCodes = new ConcurrentHashMap<>();
+	private final List<String> segmentNames = new ArrayList<>();
+	private final Map<String, Integer> typeCodes = new ConcurrentHashMap<>();
+	private final List<String> typeNames = new ArrayList<>(List.of(""));
+	private volatile boolean[] flatTypes = {false};
+	private final Map<Integer, String> customIds = new ConcurrentHashMap<>();
+	private final Map<Integer, List<String>> overflowSegments = new ConcurrentHashMap<>();
+
+	public OfferStore(int initialCapacity, boolean offHeap) {
+		this(initialCapacity, offHeap, 0, new AtomicLong());
+	}
+
+	/**
+	 * {@code generation} tells this store apart from the ones it replaces, e.g. in listing cursors;
+	 * {@code lastSeq} hands out insertion sequences and is passed on from store to store.
+	 */
+	public OfferStore(int initialCapacity, boolean offHeap, long generation, AtomicLong lastSeq) {
+		this.offHeap = offHeap;
+		this.generation = generation;
+		this.lastSeq = lastSeq;
+		this.capacity = Math.max(16, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1);
+		restaurantIds = Columns.ints(capacity, offHeap);
+		types = Columns.ints(capacity, offHeap);
+		values = Columns.ints(capacity, offHeap);
+		next = Columns.ints(capacity, offHeap);
+		prev = Columns.ints(capacity, offHeap);
+		segmentMasks = Columns.longs(capacity, offHeap);
+		validFrom = Columns.longs(capacity, offHeap);
+		validUntil = Columns.longs(capacity, offHeap);
+		idHi = Columns.longs(capacity, offHeap);
+		idLo = Columns.longs(capacity, offHeap);
+		seqs = Columns.longs(capacity, offHeap);
+	}
+
+	/** Inserts the offer, or overwrites the one with the same {@code offer_id} in place. The id is required. */
+	public Upserted upsert(OfferRequest offer) {
+		UUID id = internalId(offer.getOffer_id());
+		long stamp = lock.writeLock();
+		try {
+			int row = findRow(id.getMostSignificantBits(), id.getLeastSignificantBits());
+			boolean created = row < 0;
+			Long previousValidUntil = created || validUntil.get(row) == NO_VALID_UNTIL ? null : validUntil.get(row);
+			if (created) {
+				row = allocateRow();
+				idHi.set(row, id.getMostSignificantBits());
+				idLo.set(row, id.getLeastSignificantBits());
+				seqs.set(row, lastSeq.incrementAndGet());
+				if (!isCanonicalUuid(offer.getOffer_id())) {
+					customIds.put(row, offer.getOffer_id());
+				}
+				indexId(row);
+				writeFields(row, offer);
+				link(row, offer.getRestaurant_id());
+				live++;
+			} else if (restaurantIds.get(row) != offer.getRestaurant_id()) {
+				unlink(row, restaurantIds.get(row));
+				writeFields(row, offer);
+				link(row, offer.getRestaurant_id());
+			} else {
+				writeFields(row, offer);
+			}
+			return new Upserted(handle(row), created, previousValidUntil);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public boolean remove(String offerId) {
+		return removeAndGetHandle(offerId) != NO_HANDLE;
+	}
+
+	/** Removes the offer and returns the handle it was stored under, or {@link #NO_HANDLE}. */
+	public long removeAndGetHandle(String offerId) {
+		UUID id = internalId(offerId);
+		long stamp = lock.writeLock();
+		try {
+			int row = findRow(id.getMostSignificantBits(), id.getLeastSignificantBits());
+			if (row < 0) {
+				return NO_HANDLE;
+			}
+			long handle = handle(row);
+			removeRow(row);
+			return handle;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes the offer behind {@code handle} if it is still stored and its validity window has ended
+	 * by {@code nowMillis}.
+	 */
+	public boolean removeIfExpired(long handle, long nowMillis) {
+		int row = (int) (handle >>> 32);
+		long stamp = lock.writeLock();
+		try {
+			if (row >= highWater || types.get(row) == FREE || (int) seqs.get(row) != (int) handle
+					|| nowMillis < validUntil.get(row)) {
+				return false;
+			}
+			removeRow(row);
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/** Handles of the offers with a {@code valid_until}, e.g. to cancel their expiry when the store is replaced. */
+	public long[] expiringHandles() {
+		long stamp = lock.readLock();
+		try {
+			long[] handles = new long[16];
+			int count = 0;
+			for (int row = 0; row < highWater; row++) {
+				if (types.get(row) != FREE && validUntil.get(row) != NO_VALID_UNTIL) {
+					if (count == handles.length) {
+						handles = Arrays.copyOf(handles, count * 2);
+					}
+					handles[count++] = handle(row);
+				}
+			}
+			return Arrays.copyOf(handles, count);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Finds the first offer for {@code restaurantId} covering {@code segment} that is valid at
+	 * {@code nowMillis} and describes it in {@code out}. Returns false if there is none.
+	 */
+	public boolean match(int restaurantId, String segment, long nowMillis, OfferMatch out) {
+		if (segment == null) {
+			return false;
+		}
+		Integer code = segmentCodes.get(segment);
+		if (code == null) {
+			return false;
+		}
+		long bit = code < SEGMENT_BITS ? 1L << code : OVERFLOW_SEGMENTS;
+		out.segmentCode = code;
+
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				boolean found = find(restaurantId, segment, bit, nowMillis, out);
+				if (lock.validate(stamp)) {
+					return found;
+				}
+			} catch (RuntimeException tornRead) {
+				// a writer resized or relinked underneath us; redo it under the read lock
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return find(restaurantId, segment, bit, nowMillis, out);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/** Id of the offer {@code match} found, or null if it has been removed since. */
+	public String offerId(OfferMatch match) {
+		long stamp = lock.readLock();
+		try {
+			int row = match.row;
+			if (row >= highWater || types.get(row) == FREE || seqs.get(row) != match.seq) {
+				return null;
+			}
+			String id = customIds.get(row);
+			return id != null ? id : new UUID(idHi.get(row), idLo.get(row)).toString();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Copies of the stored offers in insertion order; for reading the catalog back, not for pricing.
+	 *
+	 * Rows are copied {@code SCAN_SLICE} at a time, each slice under its own read lock, so writers wait
+	 * for one slice rather than for the whole catalog. Like {@link #scan}, the copy is not a single point
+	 * in time: an offer written while it runs may or may not be included.
+	 */
+	public List<OfferRequest> offers() {
+		List<Sequenced> copied = new ArrayList<>();
+		int row = 0;
+		boolean more = true;
+		while (more) {
+			long stamp = lock.readLock();
+			try {
+				for (int end = Math.min(highWater, row + SCAN_SLICE); row < end; row++) {
+					if (types.get(row) != FREE) {
+						copied.add(new Sequenced(seqs.get(row), toOffer(row)));
+					}
+				}
+				more = row < highWater;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		// freed rows are reused, so row order is not insertion order
+		return inInsertionOrder(copied);
+	}
+
+	/** Copies of one restaurant's offers in insertion order; one short read lock, the chain is short. */
+	public List<OfferRequest> offersOf(int restaurantId) {
+		long stamp = lock.readLock();
+		List<Sequenced> copied = new ArrayList<>();
+		try {
+			for (int row = heads.get(restaurantId, -1); row >= 0; row = next.get(row)) {
+				copied.add(new Sequenced(seqs.get(row), toOffer(row)));
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		// an offer moved to another restaurant is appended to its chain, so chain order is not insertion order
+		return inInsertionOrder(copied);
+	}
+
+	private static List<OfferRequest> inInsertionOrder(List<Sequenced> copied) {
+		copied.sort(Comparator.comparingLong(Sequenced::seq));
+		List<OfferRequest> offers = new ArrayList<>(copied.size());
+		for (Sequenced entry : copied) {
+			offers.add(entry.offer());
+		}
+		return offers;
+	}
+
+	/**
+	 * Adds to {@code out} up to {@code limit} offers matching {@code query}, in row order starting at
+	 * {@code fromRow}, and returns the row to continue from, or -1 when there are no more rows.
+	 *
+	 * Row order is a stable order for paging: an offer keeps its row while it exists, so one that is
+	 * stored for the whole listing is returned exactly once. Offers added meanwhile may or may not be.
+	 */
+	public int scan(Query query, int fromRow, int limit, List<OfferRequest> out) {
+		if (query.restaurantId() != null) {
+			return scanRestaurant(query, fromRow, limit, out);
+		}
+		int row = Math.max(0, fromRow);
+		int found = 0;
+		while (found < limit) {
+			long stamp = lock.readLock();
+			try {
+				int typeCode = typeFilter(query.offerType());
+				long bit = segmentFilter(query.segment());
+				if (typeCode < 0 || bit == 0) {
+					return -1;
+				}
+				for (int end = Math.min(highWater, row + SCAN_SLICE); row < end && found < limit; row++) {
+					if (matches(row, query, typeCode, bit)) {
+						out.add(toOffer(row));
+						found++;
+					}
+				}
+				if (row >= highWater) {
+					return -1;
+				}
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return row;
+	}
+
+	private int scanRestaurant(Query query, int fromRow, int limit, List<OfferRequest> out) {
+		long stamp = lock.readLock();
+		try {
+			int typeCode = typeFilter(query.offerType());
+			long bit = segmentFilter(query.segment());
+			if (typeCode < 0 || bit == 0) {
+				return -1;
+			}
+			// a restaurant's chain is short; walk it in row order rather than chain order
+			int[] rows = new int[16];
+			int count = 0;
+			for (int row = heads.get(query.restaurantId(), -1); row >= 0; row = next.get(row)) {
+				if (row >= fromRow) {
+					if (count == rows.length) {
+						rows = Arrays.copyOf(rows, count * 2);
+					}
+					rows[count++] = row;
+				}
+			}
+			Arrays.sort(rows, 0, count);
+			int found = 0;
+			for (int i = 0; i < count; i++) {
+				if (found == limit) {
+					return rows[i];
+				}
+				if (matches(rows[i], query, typeCode, bit)) {
+					out.add(toOffer(rows[i]));
+					found++;
+				}
+			}
+			return -1;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/** Type code to match, {@link #FREE} for any type, or -1 when no stored offer has the type. */
+	private int typeFilter(String offerType) {
+		if (offerType == null) {
+			return FREE;
+		}
+		Integer code = typeCodes.get(offerType);
+		return code == null ? -1 : code;
+	}
+
+	/** Segment bit to match, all bits for any segment, or 0 when no stored offer has the segment. */
+	private long segmentFilter(String segment) {
+		if (segment == null) {
+			return -1L;
+		}
+		Integer code = segmentCodes.get(segment);
+		if (code == null) {
+			return 0;
+		}
+		return code < SEGMENT_BITS ? 1L << code : OVERFLOW_SEGMENTS;
+	}
+
+	private boolean matches(int row, Query query, int typeCode, long bit) {
+		int type = types.get(row);
+		if (type == FREE || (typeCode != FREE && type != typeCode)) {
+			return false;
+		}
+		if (query.restaurantId() != null && restaurantIds.get(row) != query.restaurantId()) {
+			return false;
+		}
+		if (query.segment() == null) {
+			return true;
+		}
+		return (segmentMasks.get(row) & bit) != 0
+				&& (bit != OVERFLOW_SEGMENTS || hasOverflowSegment(row, query.segment()));
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return live;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public long generation() {
+		return generation;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/** Bytes held by columns, indexes and dictionaries; capacity based, so cheap to call. */
+	public long estimatedBytes() {
+		return columnBytes() + indexBytes();
+	}
+
+	/** Bytes held by the offer columns and the side maps hanging off rows. */
+	public long columnBytes() {
+		long stamp = lock.readLock();
+		try {
+			long bytes = restaurantIds.bytes() + types.bytes() + values.bytes() + next.bytes() + prev.bytes()
+					+ segmentMasks.bytes() + validFrom.bytes() + validUntil.bytes() + idHi.bytes() + idLo.bytes()
+					+ seqs.bytes();
+			bytes += (long) freeRows.length * Integer.BYTES;
+			// rough per-entry cost of the side maps: node, boxed key and the string or list it points to
+			bytes += customIds.size() * 120L + overflowSegments.size() * 160L;
+			return bytes;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/** Bytes held by the id index, the per-restaurant chains and the segment dictionary. */
+	public long indexBytes() {
+		long stamp = lock.readLock();
+		try {
+			return (long) idIndex.length * Integer.BYTES + heads.capacityBytes() + tails.capacityBytes()
+					+ segmentCodes.size() * 100L;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/** Restaurants with at least one offer, i.e. entries of the per-restaurant index. */
+	public int indexedRestaurants() {
+		long stamp = lock.readLock();
+		try {
+			return heads.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private boolean find(int restaurantId, String segment, long bit, long nowMillis, OfferMatch out) {
+		int row = heads.get(restaurantId, -1);
+		// the guard only matters for an optimistic read racing a relink
+		for (int guard = highWater; row >= 0 && guard >= 0; guard--) {
+			if ((segmentMasks.get(row) & bit) != 0
+					&& nowMillis >= validFrom.get(row) && nowMillis < validUntil.get(row)
+					&& (bit != OVERFLOW_SEGMENTS || hasOverflowSegment(row, segment))) {
+				out.row = row;
+				out.seq = seqs.get(row);
+				out.restaurantId = restaurantId;
+				out.flat = flatTypes[types.get(row)];
+				out.value = values.get(row);
+				return true;
+			}
+			row = next.get(row);
+		}
+		return false;
+	}
+
+	private boolean hasOverflowSegment(int row, String segment) {
+		List<String> segments = overflowSegments.get(row);
+		return segments != null && segments.contains(segment);
+	}
+
+	private OfferRequest toOffer(int row) {
+		String id = customIds.get(row);
+		if (id == null) {
+			id = new UUID(idHi.get(row), idLo.get(row)).toString();
+		}
+		String type = typeNames.get(types.get(row));
+		long mask = segmentMasks.get(row);
+		List<String> segments = new ArrayList<>(Long.bitCount(mask));
+		for (long bits = mask & ~OVERFLOW_SEGMENTS; bits != 0; bits &= bits - 1) {
+			segments.add(segmentNames.get(Long.numberOfTrailingZeros(bits)));
+		}
+		if ((mask & OVERFLOW_SEGMENTS) != 0) {
+			segments.addAll(overflowSegments.get(row));
+		}
+		long from = validFrom.get(row);
+		long until = validUntil.get(row);
+		return new OfferRequest(id, restaurantIds.get(row), type.isEmpty() ? null : type, values.get(row), segments,
+				from == NO_VALID_FROM ? null : from, until == NO_VALID_UNTIL ? null : until);
+	}
+
+	private void writeFields(int row, OfferRequest offer) {
+		restaurantIds.set(row, offer.getRestaurant_id());
+		types.set(row, typeCode(offer.getOffer_type()));
+		values.set(row, offer.getOffer_value());
+		validFrom.set(row, offer.getValid_from() == null ? NO_VALID_FROM : offer.getValid_from());
+		validUntil.set(row, offer.getValid_until() == null ? NO_VALID_UNTIL : offer.getValid_until());
+
+		long mask = 0;
+		List<String> overflow = null;
+		if (offer.getCustomer_segment() != null) {
+			for (String segment : offer.getCustomer_segment()) {
+				if (segment == null) {
+					continue;
+				}
+				int code = segmentCode(segment);
+				if (code < SEGMENT_BITS) {
+					mask |= 1L << code;
+				} else {
+					if (overflow == null) {
+						overflow = new ArrayList<>();
+					}
+					overflow.add(segment);
+					mask |= OVERFLOW_SEGMENTS;
+				}
+			}
+		}
+		segmentMasks.set(row, mask);
+		if (overflow != null) {
+			overflowSegments.put(row, overflow);
+		} else {
+			overflowSegments.remove(row);
+		}
+	}
+
+	private int segmentCode(String segment) {
+		Integer code = segmentCodes.get(segment);
+		if (code == null) {
+			code = segmentNames.size();
+			segmentNames.add(segment);
+			segmentCodes.put(segment, code);
+		}
+		return code;
+	}
+
+	private int typeCode(String type) {
+		String key = type == null ? "" : type;
+		Integer code = typeCodes.get(key);
+		if (code == null) {
+			code = typeNames.size();
+			typeNames.add(key);
+			boolean[] flats = Arrays.copyOf(flatTypes, code + 1);
+			flats[code] = FLAT_TYPE.equals(type);
+			flatTypes = flats;
+			typeCodes.put(key, code);
+		}
+		return code;
+	}
+
+	/** Called with the insertion sequence of every offer removed, under the write lock; set before use. */
+	public void onRemove(LongConsumer onRemove) {
+		this.onRemove = onRemove;
+	}
+
+	private void removeRow(int row) {
+		onRemove.accept(seqs.get(row));
+		unlink(row, restaurantIds.get(row));
+		unindexId(row);
+		types.set(row, FREE);
+		segmentMasks.set(row, 0);
+		customIds.remove(row);
+		overflowSegments.remove(row);
+		if (freeCount == freeRows.length) {
+			freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+		}
+		freeRows[freeCount++] = row;
+		live--;
+	}
+
+	private int allocateRow() {
+		if (freeCount > 0) {
+			return freeRows[--freeCount];
+		}
+		if (highWater == capacity) {
+			grow(capacity * 2);
+		}
+		return highWater++;
+	}
+
+	private void grow(int newCapacity) {
+		restaurantIds = restaurantIds.resize(newCapacity);
+		types = types.resize(newCapacity);
+		values = values.resize(newCapacity);
+		next = next.resize(newCapacity);
+		prev = prev.resize(newCapacity);
+		segmentMasks = segmentMasks.resize(newCapacity);
+		validFrom = validFrom.resize(newCapacity);
+		validUntil = validUntil.resize(newCapacity);
+		idHi = idHi.resize(newCapacity);
+		idLo = idLo.resize(newCapacity);
+		seqs = seqs.resize(newCapacity);
+		capacity = newCapacity;
+	}
+
+	private void link(int row, int restaurantId) {
+		int tail = tails.get(restaurantId, -1);
+		prev.set(row, tail);
+		next.set(row, -1);
+		if (tail < 0) {
+			heads.put(restaurantId, row);
+		} else {
+			next.set(tail, row);
+		}
+		tails.put(restaurantId, row);
+	}
+
+	private void unlink(int row, int restaurantId) {
+		int p = prev.get(row);
+		int n = next.get(row);
+		if (p < 0) {
+			if (n < 0) {
+				heads.remove(restaurantId, -1);
+			} else {
+				heads.put(restaurantId, n);
+			}
+		} else {
+			next.set(p, n);
+		}
+		if (n < 0) {
+			if (p < 0) {
+				tails.remove(restaurantId, -1);
+			} else {
+				tails.put(restaurantId, p);
+			}
+		} else {
+			prev.set(n, p);
+		}
+	}
+
+	private long handle(int row) {
+		return ((long) row << 32) | (seqs.get(row) & 0xFFFF_FFFFL);
+	}
+
+	private int findRow(long hi, long lo) {
+		int mask = idIndex.length - 1;
+		int i = idSlot(hi, lo, mask);
+		while (idIndex[i] != 0) {
+			int row = idIndex[i] - 1;
+			if (idHi.get(row) == hi && idLo.get(row) == lo) {
+				return row;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void indexId(int row) {
+		if ((live + 1) * 2 > idIndex.length) {
+			int[] old = idIndex;
+			idIndex = new int[old.length * 2];
+			for (int entry : old) {
+				if (entry != 0) {
+					insertId(entry - 1);
+				}
+			}
+		}
+		insertId(row);
+	}
+
+	private void insertId(int row) {
+		int mask = idIndex.length - 1;
+		int i = idSlot(idHi.get(row), idLo.get(row), mask);
+		while (idIndex[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		idIndex[i] = row + 1;
+	}
+
+	private void unindexId(int row) {
+		int mask = idIndex.length - 1;
+		int hole = idSlot(idHi.get(row), idLo.get(row), mask);
+		while (idIndex[hole] != row + 1) {
+			hole = (hole + 1) & mask;
+		}
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (idIndex[i] == 0) {
+				break;
+			}
+			int r = idIndex[i] - 1;
+			int home = idSlot(idHi.get(r), idLo.get(r), mask);
+			boolean between = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+			if (!between) {
+				idIndex[hole] = idIndex[i];
+				hole = i;
+			}
+		}
+		idIndex[hole] = 0;
+	}
+
+	private static int idSlot(long hi, long lo, int mask) {
+		long h = (hi ^ Long.rotateLeft(lo, 29)) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/** Canonical UUID ids are stored as their 128 bits; any other id as a name-based UUID of itself. */
+	private static UUID internalId(String offerId) {
+		Objects.requireNonNull(offerId, "offer_id");
+		if (isCanonicalUuid(offerId)) {
+			return UUID.fromString(offerId);
+		}
+		return UUID.nameUUIDFromBytes(("offer_id:" + offerId).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static boolean isCanonicalUuid(String offerId) {
+		if (offerId == null || offerId.length() != 36) {
+			return false;
+		}
+		for (int i = 0; i < 36; i++) {
+			char c = offerId.charAt(i);
+			boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+			if (dash ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
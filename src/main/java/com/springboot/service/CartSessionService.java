@@ -0,0 +1,375 @@
+package com.springboot.service;
+
+import com.springboot.controller.CartPriceUpdate;
+import com.springboot.property.CartSessionProperty;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live carts: a client opens one session per cart, sends cart value deltas and gets the priced cart
+ * pushed back, instead of re-posting the whole cart to apply_offer on every change.
+ *
+ * The user's segment is resolved once when the session opens. Updates are conflated: at most one push
+ * per session is queued or running, and it prices whatever the cart value is by the time it runs, so a
+ * client sending deltas faster than it reads gets the latest price rather than a backlog. A push whose
+ * cart value and price match what the stream already has is skipped. Catalog changes reach open streams
+ * on the next sweep.
+ *
+ * The push threads price and then hand the write to a writer thread, waiting at most
+ * {@code push-timeout-millis} for it. A stream that is not written in time is detached and closed, so a
+ * client that stopped reading costs the shared push threads one timeout, not every later push. It still
+ * holds two writers until the container gives up on the connection: the blocked write, and the close
+ * waiting for the emitter's lock. Writers are capped at {@code write-threads}; a push that finds none
+ * free detaches and closes its stream right away, and the client reconnects once writers are free.
+ */
+@Service
+public class CartSessionService implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(CartSessionService.class);
+
+	/** Where a session's updates go, usually an event stream; replaced when the client reconnects. */
+	public interface Sink {
+
+		void push(CartPriceUpdate update) throws IOException;
+
+		void close();
+	}
+
+	public static final class Session {
+
+		private final String id;
+		private final int userId;
+		private final int restaurantId;
+		private final String segment;
+		private final AtomicInteger cartValue;
+		// updates requested since the running push started; the push that takes it from 0 owns the session
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile Sink sink;
+		private volatile long lastActiveMillis;
+		// touched by the owning push only
+		private long seq;
+		private Sink pushedTo;
+		private int pushedCartValue = -1;
+		private int pushedPrice = -1;
+
+		private Session(String id, int userId, int restaurantId, String segment, int cartValue) {
+			this.id = id;
+			this.userId = userId;
+			this.restaurantId = restaurantId;
+			this.segment = segment;
+			this.cartValue = new AtomicInteger(cartValue);
+			this.lastActiveMillis = System.currentTimeMillis();
+		}
+
+		public String id() {
+			return id;
+		}
+
+		public int userId() {
+			return userId;
+		}
+
+		public int restaurantId() {
+			return restaurantId;
+		}
+
+		public int cartValue() {
+			return cartValue.get();
+		}
+	}
+
+	@Autowired
+	private CartSessionProperty cartSessionProperty;
+
+	@Autowired
+	private SegmentClient segmentClient;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private final LongAdder deltas = new LongAdder();
+	private final LongAdder pushes = new LongAdder();
+	private final LongAdder conflated = new LongAdder();
+	private final LongAdder pushFailures = new LongAdder();
+	private final LongAdder pushTimeouts = new LongAdder();
+	private final LongAdder pushRejections = new LongAdder();
+	private ExecutorService pushers;
+	private ExecutorService writers;
+	private ScheduledExecutorService sweeper;
+	private long idleTimeoutMillis;
+	private long sweptRevision;
+
+	@PostConstruct
+	void init() {
+		idleTimeoutMillis = TimeUnit.SECONDS.toMillis(cartSessionProperty.getIdleTimeoutSeconds());
+		AtomicInteger threads = new AtomicInteger();
+		pushers = Executors.newFixedThreadPool(cartSessionProperty.getPushThreads(), r -> {
+			Thread thread = new Thread(r, "cart-session-push-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicInteger writerThreads = new AtomicInteger();
+		// no queue: a write that cannot start now is refused rather than left to wait behind stuck ones
+		writers = new ThreadPoolExecutor(0, cartSessionProperty.getWriteThreads(), 60, TimeUnit.SECONDS,
+				new SynchronousQueue<>(), r -> {
+					Thread thread = new Thread(r, "cart-session-write-" + writerThreads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		sweptRevision = offerCatalog.revision();
+		sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "cart-session-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long sweepMillis = cartSessionProperty.getSweepMillis();
+		sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/** Opens a session, resolving the user's segment; null when {@code max-sessions} are already open. */
+	public Session open(int userId, int restaurantId, int cartValue) {
+		if (sessions.size() >= cartSessionProperty.getMaxSessions()) {
+			rejected.increment();
+			return null;
+		}
+		Session session = new Session(UUID.randomUUID().toString(), userId, restaurantId,
+				segmentClient.segmentOf(userId, null), cartValue);
+		sessions.put(session.id, session);
+		opened.increment();
+		return session;
+	}
+
+	/** The open session with this id, or null. */
+	public Session session(String id) {
+		return id == null ? null : sessions.get(id);
+	}
+
+	/** The session's cart value with the offer applied, priced on the calling thread. */
+	public int price(Session session) {
+		return offerCatalog.priceCart(session.cartValue.get(), session.restaurantId, session.segment);
+	}
+
+	/** Streams the session's updates to {@code sink}, starting with the current price. */
+	public void attach(Session session, Sink sink) {
+		Sink previous = session.sink;
+		session.sink = sink;
+		session.lastActiveMillis = System.currentTimeMillis();
+		if (previous != null) {
+			previous.close();
+		}
+		schedule(session);
+	}
+
+	/** Stops streaming to {@code sink}, unless the session has moved on to another one already. */
+	public void detach(Session session, Sink sink) {
+		if (session.sink == sink) {
+			session.sink = null;
+			session.lastActiveMillis = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Adds {@code delta} to the cart value and queues a push; returns the new cart value.
+	 *
+	 * @throws IllegalArgumentException when the cart value would drop below zero or overflow
+	 */
+	public int applyDelta(Session session, int delta) {
+		int value;
+		int updated;
+		do {
+			value = session.cartValue.get();
+			long next = (long) value + delta;
+			if (next < 0 || next > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("cart_value would be " + next);
+			}
+			updated = (int) next;
+		} while (!session.cartValue.compareAndSet(value, updated));
+		session.lastActiveMillis = System.currentTimeMillis();
+		deltas.increment();
+		schedule(session);
+		return updated;
+	}
+
+	public boolean close(String id) {
+		Session session = sessions.remove(id);
+		if (session == null) {
+			return false;
+		}
+		Sink sink = session.sink;
+		session.sink = null;
+		if (sink != null) {
+			sink.close();
+		}
+		return true;
+	}
+
+	private void schedule(Session session) {
+		if (session.pending.getAndIncrement() == 0) {
+			pushers.execute(() -> push(session));
+		}
+	}
+
+	/**
+	 * Prices the latest cart value and pushes it. Requests that arrived meanwhile are folded into one
+	 * more push, queued behind other sessions' rather than run here, so a chatty session cannot hold a
+	 * push thread.
+	 */
+	private void push(Session session) {
+		int seen = session.pending.get();
+		Sink sink = session.sink;
+		if (sink != null && sessions.get(session.id) == session) {
+			int cartValue = session.cartValue.get();
+			int price = offerCatalog.priceCart(cartValue, session.restaurantId, session.segment);
+			if (sink != session.pushedTo || cartValue != session.pushedCartValue || price != session.pushedPrice) {
+				try {
+					write(sink, new CartPriceUpdate(++session.seq, cartValue, price));
+					session.pushedTo = sink;
+					session.pushedCartValue = cartValue;
+					session.pushedPrice = price;
+					pushes.increment();
+				} catch (TimeoutException e) {
+					pushTimeouts.increment();
+					log.debug("push to cart session {} timed out, closing its stream", session.id);
+					detach(session, sink);
+					// closing may wait for the blocked write, so it must not hold this thread either
+					closeOnWriter(session, sink);
+				} catch (RejectedExecutionException e) {
+					pushRejections.increment();
+					log.debug("no writer free for cart session {}, closing its stream", session.id);
+					detach(session, sink);
+					// nothing is writing to this stream, so closing it does not wait
+					sink.close();
+				} catch (IOException | RuntimeException e) {
+					pushFailures.increment();
+					log.debug("push to cart session {} failed", session.id, e);
+					detach(session, sink);
+				}
+			}
+		}
+		if (seen > 1) {
+			conflated.add(seen - 1);
+		}
+		if (session.pending.addAndGet(-seen) != 0) {
+			pushers.execute(() -> push(session));
+		}
+	}
+
+	private void closeOnWriter(Session session, Sink sink) {
+		try {
+			writers.execute(sink::close);
+		} catch (RejectedExecutionException e) {
+			// the stream is detached already; the container ends it when the connection times out
+			log.debug("no writer free to close cart session {}'s stream", session.id);
+		}
+	}
+
+	/**
+	 * Writes {@code update} on a writer thread, waiting at most {@code push-timeout-millis}.
+	 *
+	 * @throws RejectedExecutionException when all {@code write-threads} are busy
+	 */
+	private void write(Sink sink, CartPriceUpdate update) throws IOException, TimeoutException {
+		Future<?> write = writers.submit(() -> {
+			sink.push(update);
+			return null;
+		});
+		try {
+			write.get(cartSessionProperty.getPushTimeoutMillis(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException io) {
+				throw io;
+			}
+			if (e.getCause() instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			write.cancel(true);
+			throw new IOException("interrupted while pushing", e);
+		} catch (TimeoutException e) {
+			write.cancel(true);
+			throw e;
+		}
+	}
+
+	/** Drops idle sessions without a stream and re-prices open streams after a catalog change. */
+	void sweep() {
+		try {
+			long now = System.currentTimeMillis();
+			long revision = offerCatalog.revision();
+			boolean catalogChanged = revision != sweptRevision;
+			sweptRevision = revision;
+			for (Session session : sessions.values()) {
+				if (session.sink == null) {
+					if (now - session.lastActiveMillis >= idleTimeoutMillis && close(session.id)) {
+						expired.increment();
+					}
+				} else if (catalogChanged) {
+					// sessions whose price did not change skip the push
+					schedule(session);
+				}
+			}
+		} catch (RuntimeException e) {
+			log.warn("cart session sweep failed", e);
+		}
+	}
+
+	/** Estimated retained size of the open sessions, for {@link MemoryFootprint}. */
+	public MemoryFootprint.Usage footprint() {
+		int open = sessions.size();
+		// map node, id string, session and its counters; a stream's emitter is the container's
+		return new MemoryFootprint.Usage(open, open * 240L);
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("sessions_open", sessions.size());
+		stats.put("sessions_opened", opened.sum());
+		stats.put("sessions_rejected", rejected.sum());
+		stats.put("sessions_expired", expired.sum());
+		stats.put("deltas", deltas.sum());
+		stats.put("pushes", pushes.sum());
+		stats.put("updates_conflated", conflated.sum());
+		stats.put("push_failures", pushFailures.sum());
+		stats.put("push_timeouts", pushTimeouts.sum());
+		stats.put("push_rejections", pushRejections.sum());
+		return stats;
+	}
+
+	@Override
+	public void destroy() {
+		sweeper.shutdownNow();
+		pushers.shutdownNow();
+		writers.shutdownNow();
+		for (String id : sessions.keySet()) {
+			close(id);
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package com.springboot.service;
 
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 //@Primary
 @Service
+@Profile("!pricing-only")
 public class Cat implements Animal {
 
 	@Override
@@ -0,0 +1,119 @@
+package com.springboot.service;
+
+import com.springboot.jfr.OfferIngestEvent;
+import com.springboot.jfr.PriceCartEvent;
+import com.springboot.jfr.SegmentFetchEvent;
+import com.springboot.property.JfrProperty;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One bounded flight recording at a time, started and stopped through the admin API. The recording starts
+ * from the JDK's {@code pricing.jfr.settings} configuration, so the pricing events, recorded whatever
+ * their duration, line up with the GC, lock and allocation events around them.
+ */
+@Service
+public class FlightRecordingService implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(FlightRecordingService.class);
+
+	@Autowired
+	private JfrProperty jfrProperty;
+
+	private Recording recording;
+	private Path file;
+
+	/**
+	 * Starts a recording of {@code seconds} (the configured default when null, capped at the maximum).
+	 * Returns false if one is already running; a finished recording that was never downloaded is dropped.
+	 */
+	public synchronized boolean start(Long seconds) throws IOException {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			return false;
+		}
+		discard();
+		Configuration configuration;
+		try {
+			configuration = Configuration.getConfiguration(jfrProperty.getSettings());
+		} catch (ParseException e) {
+			throw new IOException("Bad JFR settings " + jfrProperty.getSettings(), e);
+		}
+		long duration = Math.min(seconds == null ? jfrProperty.getDefaultDurationSeconds() : Math.max(1, seconds),
+				jfrProperty.getMaxDurationSeconds());
+		Path dir = jfrProperty.getDirectory() == null ? null : Path.of(jfrProperty.getDirectory());
+		file = dir == null ? Files.createTempFile("pricing-", ".jfr") : Files.createTempFile(dir, "pricing-", ".jfr");
+
+		recording = new Recording(configuration);
+		recording.setName("pricing");
+		recording.enable(SegmentFetchEvent.class).withoutThreshold();
+		recording.enable(PriceCartEvent.class).withoutThreshold();
+		recording.enable(OfferIngestEvent.class).withoutThreshold();
+		recording.setToDisk(true);
+		recording.setMaxSize(jfrProperty.getMaxSizeMb() * 1024 * 1024);
+		recording.setDuration(Duration.ofSeconds(duration));
+		recording.setDestination(file);
+		recording.start();
+		log.info("Flight recording started for {} s into {}", duration, file);
+		return true;
+	}
+
+	/**
+	 * Stops the recording if it is still running and hands over its file, which the caller deletes once
+	 * it has been sent. Null when nothing was recorded since the last download.
+	 */
+	public synchronized Path stop() {
+		if (recording == null) {
+			return null;
+		}
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		recording.close();
+		recording = null;
+		Path recorded = file;
+		file = null;
+		log.info("Flight recording stopped, {}", recorded);
+		return recorded;
+	}
+
+	public synchronized Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("state", recording == null ? "NONE" : recording.getState().name());
+		stats.put("started_at", recording == null || recording.getStartTime() == null
+				? null : recording.getStartTime().toEpochMilli());
+		stats.put("duration_seconds", recording == null ? null : recording.getDuration().toSeconds());
+		stats.put("settings", jfrProperty.getSettings());
+		stats.put("max_size_mb", jfrProperty.getMaxSizeMb());
+		return stats;
+	}
+
+	private void discard() throws IOException {
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+		if (file != null) {
+			Files.deleteIfExists(file);
+			file = null;
+		}
+	}
+
+	@Override
+	public synchronized void destroy() throws IOException {
+		discard();
+	}
+}
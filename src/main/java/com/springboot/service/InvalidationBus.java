@@ -0,0 +1,470 @@
+package com.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.InvalidationProperty;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays offer writes and segment invalidations on the other instances, over UDP to the configured
+ * {@code peers}, so caches can keep long TTLs without serving prices another instance has moved on from.
+ *
+ * Each instance numbers what it publishes. A receiver delivers a sender's messages in sequence order,
+ * holding back any that arrive past a gap and asking the sender to resend the missing ones from its
+ * retransmit window. Heartbeats carry the sender's latest sequence number, so losing the last message
+ * before a quiet spell is noticed too. A gap still open after {@code gap-timeout-millis} is given up:
+ * its messages are counted as lost and the whole segment cache is dropped, since the invalidations in
+ * it are unknown. Lost offer writes are not recovered; they are logged.
+ *
+ * Node ids are drawn at startup, so a restarted instance is a new sender starting from its first message.
+ *
+ * Packets whose source is not one of the {@code peers} are dropped unread, and one NACK resends at most
+ * {@code max-retransmits-per-nack} messages. Nothing is authenticated beyond the source address, so the
+ * bus is only safe on a network where addresses cannot be spoofed by untrusted hosts.
+ */
+@Service
+public class InvalidationBus implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+	private static final int MAGIC = 0x50494e56;
+	private static final byte VERSION = 1;
+	private static final int HEADER_BYTES = 4 + 1 + 1 + 8 + 8;
+	private static final int MAX_PACKET_BYTES = 65507;
+	// a sender silent for this many heartbeats is forgotten
+	private static final int PEER_TIMEOUT_HEARTBEATS = 30;
+
+	enum Type {
+		OFFER_UPSERT, OFFER_DELETE, SEGMENT_INVALIDATE, HEARTBEAT, NACK;
+
+		private static final Type[] VALUES = values();
+	}
+
+	/** Heartbeats carry the sender's latest sequence number, NACKs the first and last missing one. */
+	record Message(Type type, long nodeId, long seq, byte[] payload) {
+	}
+
+	@Autowired
+	private InvalidationProperty invalidationProperty;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Autowired
+	private SegmentClient segmentClient;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final long nodeId = ThreadLocalRandom.current().nextLong();
+	private final Map<Long, Sender> senders = new ConcurrentHashMap<>();
+	private final LongAdder published = new LongAdder();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder gaps = new LongAdder();
+	private final LongAdder gapsGivenUp = new LongAdder();
+	private final LongAdder lost = new LongAdder();
+	private final LongAdder nacksSent = new LongAdder();
+	private final LongAdder retransmits = new LongAdder();
+	private final LongAdder malformed = new LongAdder();
+	private final LongAdder unknownSources = new LongAdder();
+	private final LongAdder applyFailures = new LongAdder();
+	private final LongAdder sendFailures = new LongAdder();
+	private List<InetSocketAddress> peers;
+	private Set<InetSocketAddress> peerAddresses;
+	private DatagramSocket socket;
+	private Thread receiver;
+	private ScheduledExecutorService ticker;
+	private long gapTimeoutMillis;
+	private int window;
+	private int maxRetransmitsPerNack;
+	// retransmit window, indexed by sequence number; guarded by itself
+	private byte[][] sentPackets;
+	private long[] sentSeqs;
+	private long sentBytes;
+	private long lastSeq;
+
+	@PostConstruct
+	void init() throws IOException {
+		if (!invalidationProperty.isEnabled()) {
+			return;
+		}
+		peers = new ArrayList<>();
+		for (String peer : invalidationProperty.getPeers()) {
+			int colon = peer.lastIndexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("pricing.invalidation.peers entry is not host:port: " + peer);
+			}
+			peers.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+		}
+		peerAddresses = Set.copyOf(peers);
+		gapTimeoutMillis = invalidationProperty.getGapTimeoutMillis();
+		maxRetransmitsPerNack = invalidationProperty.getMaxRetransmitsPerNack();
+		window = invalidationProperty.getRetransmitWindow();
+		sentPackets = new byte[window][];
+		sentSeqs = new long[window];
+		socket = new DatagramSocket(new InetSocketAddress(invalidationProperty.getBindAddress(),
+				invalidationProperty.getPort()));
+		receiver = new Thread(this::receive, "invalidation-bus-receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+		ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "invalidation-bus-ticker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long heartbeat = invalidationProperty.getHeartbeatMillis();
+		ticker.scheduleWithFixedDelay(this::tick, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+		log.info("Invalidation bus node {} on {} with peers {}", Long.toHexString(nodeId), socket.getLocalSocketAddress(),
+				peers);
+	}
+
+	/** Address the bus receives on, e.g. when bound to an ephemeral port. */
+	SocketAddress localAddress() {
+		return socket.getLocalSocketAddress();
+	}
+
+	/** Replays an offer write on the other instances; call only for writes that changed the catalog. */
+	public void publishOfferUpsert(OfferRequest offer) {
+		if (socket == null) {
+			return;
+		}
+		try {
+			publish(Type.OFFER_UPSERT, objectMapper.writeValueAsBytes(offer));
+		} catch (IOException e) {
+			sendFailures.increment();
+			log.warn("Offer {} not published", offer.getOffer_id(), e);
+		}
+	}
+
+	public void publishOfferDelete(String offerId) {
+		if (socket != null) {
+			publish(Type.OFFER_DELETE, offerId.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	public void publishSegmentInvalidation(int userId) {
+		if (socket != null) {
+			publish(Type.SEGMENT_INVALIDATE, ByteBuffer.allocate(4).putInt(userId).array());
+		}
+	}
+
+	private void publish(Type type, byte[] payload) {
+		if (HEADER_BYTES + payload.length > MAX_PACKET_BYTES) {
+			sendFailures.increment();
+			log.warn("{} message of {} bytes does not fit a datagram, not published", type, payload.length);
+			return;
+		}
+		byte[] packet;
+		synchronized (sentPackets) {
+			long seq = ++lastSeq;
+			packet = encode(new Message(type, nodeId, seq, payload));
+			int slot = (int) (seq % window);
+			sentBytes += packet.length - (sentPackets[slot] == null ? 0 : sentPackets[slot].length);
+			sentPackets[slot] = packet;
+			sentSeqs[slot] = seq;
+		}
+		published.increment();
+		for (InetSocketAddress peer : peers) {
+			send(packet, peer);
+		}
+	}
+
+	private void send(byte[] packet, SocketAddress to) {
+		try {
+			socket.send(new DatagramPacket(packet, packet.length, to));
+		} catch (IOException e) {
+			// the receiver sees a gap and asks again
+			sendFailures.increment();
+			log.debug("send to {} failed", to, e);
+		}
+	}
+
+	private void receive() {
+		byte[] buffer = new byte[MAX_PACKET_BYTES];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while (!socket.isClosed()) {
+			try {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+				if (!peerAddresses.contains(packet.getSocketAddress())) {
+					unknownSources.increment();
+					continue;
+				}
+				Message message = decode(buffer, packet.getLength());
+				if (message == null) {
+					malformed.increment();
+					continue;
+				}
+				if (message.nodeId() == nodeId) {
+					continue;
+				}
+				received.increment();
+				if (message.type() == Type.NACK) {
+					ByteBuffer range = ByteBuffer.wrap(message.payload());
+					retransmit(range.getLong(), range.getLong(), packet.getSocketAddress());
+					continue;
+				}
+				Sender sender = senders.computeIfAbsent(message.nodeId(), Sender::new);
+				sender.receive(message, packet.getSocketAddress());
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					log.warn("Invalidation bus receive failed", e);
+				}
+			} catch (RuntimeException e) {
+				malformed.increment();
+				log.debug("Invalidation bus message dropped", e);
+			}
+		}
+	}
+
+	private void retransmit(long from, long to, SocketAddress requester) {
+		List<byte[]> resend = new ArrayList<>();
+		synchronized (sentPackets) {
+			long first = Math.max(from, lastSeq - window + 1);
+			// bounded, so one NACK, possibly with a forged source, cannot trigger a flood of datagrams
+			long last = Math.min(Math.min(to, lastSeq), first + maxRetransmitsPerNack - 1);
+			for (long seq = first; seq <= last; seq++) {
+				int slot = (int) (seq % window);
+				if (sentSeqs[slot] == seq) {
+					resend.add(sentPackets[slot]);
+				}
+			}
+		}
+		for (byte[] packet : resend) {
+			send(packet, requester);
+			retransmits.increment();
+		}
+	}
+
+	/** Heartbeats to every peer, then re-asks for or gives up on open gaps and forgets silent senders. */
+	void tick() {
+		try {
+			long seq;
+			synchronized (sentPackets) {
+				seq = lastSeq;
+			}
+			byte[] heartbeat = encode(new Message(Type.HEARTBEAT, nodeId, seq, new byte[0]));
+			for (InetSocketAddress peer : peers) {
+				send(heartbeat, peer);
+			}
+			long now = System.currentTimeMillis();
+			long silentMillis = PEER_TIMEOUT_HEARTBEATS * invalidationProperty.getHeartbeatMillis();
+			senders.values().removeIf(sender -> sender.tick(now, silentMillis));
+		} catch (RuntimeException e) {
+			log.warn("Invalidation bus tick failed", e);
+		}
+	}
+
+	private void apply(Message message) {
+		try {
+			switch (message.type()) {
+			case OFFER_UPSERT -> offerCatalog.upsert(objectMapper.readValue(message.payload(), OfferRequest.class), null);
+			case OFFER_DELETE -> offerCatalog.delete(new String(message.payload(), StandardCharsets.UTF_8));
+			case SEGMENT_INVALIDATE -> segmentClient.invalidate(ByteBuffer.wrap(message.payload()).getInt());
+			default -> throw new IllegalStateException("not a data message: " + message.type());
+			}
+			delivered.increment();
+		} catch (IOException | RuntimeException e) {
+			applyFailures.increment();
+			log.warn("{} from node {} seq {} not applied", message.type(), Long.toHexString(message.nodeId()),
+					message.seq(), e);
+		}
+	}
+
+	/** Delivery state for one remote instance; its messages are delivered in order on the receiver thread. */
+	private final class Sender {
+
+		private final long nodeId;
+		private final TreeMap<Long, Message> held = new TreeMap<>();
+		private SocketAddress address;
+		private long deliveredSeq = -1;
+		private long highestSeq;
+		private long gapSinceMillis;
+		private long lastHeardMillis;
+
+		Sender(long nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		synchronized void receive(Message message, SocketAddress from) {
+			address = from;
+			lastHeardMillis = System.currentTimeMillis();
+			if (deliveredSeq < 0) {
+				// joined after the sender started: nothing before this message is asked for
+				deliveredSeq = message.type() == Type.HEARTBEAT ? message.seq() : message.seq() - 1;
+			}
+			highestSeq = Math.max(highestSeq, message.seq());
+			if (message.type() != Type.HEARTBEAT) {
+				if (message.seq() <= deliveredSeq || held.putIfAbsent(message.seq(), message) != null) {
+					duplicates.increment();
+					return;
+				}
+				drain();
+				if (held.size() > window) {
+					giveUp();
+				}
+			}
+			if (highestSeq > deliveredSeq && gapSinceMillis == 0) {
+				gaps.increment();
+				gapSinceMillis = lastHeardMillis;
+				nack();
+			}
+		}
+
+		private void drain() {
+			long before = deliveredSeq;
+			while (!held.isEmpty() && held.firstKey() == deliveredSeq + 1) {
+				apply(held.pollFirstEntry().getValue());
+				deliveredSeq++;
+			}
+			if (deliveredSeq >= highestSeq) {
+				gapSinceMillis = 0;
+			} else if (deliveredSeq > before && gapSinceMillis != 0) {
+				// the first hole filled up, the next one gets its own timeout
+				gapSinceMillis = System.currentTimeMillis();
+				nack();
+			}
+		}
+
+		private long gapEnd() {
+			return held.isEmpty() ? highestSeq : held.firstKey() - 1;
+		}
+
+		private void nack() {
+			if (address == null) {
+				return;
+			}
+			byte[] range = ByteBuffer.allocate(16).putLong(deliveredSeq + 1).putLong(gapEnd()).array();
+			send(encode(new Message(Type.NACK, InvalidationBus.this.nodeId, 0, range)), address);
+			nacksSent.increment();
+		}
+
+		/** Skips the first hole, counting its messages as lost. */
+		private void giveUp() {
+			long end = gapEnd();
+			lost.add(end - deliveredSeq);
+			gapsGivenUp.increment();
+			log.warn("Gave up on messages {}..{} from node {}; dropping cached segments, offer writes in it are lost",
+					deliveredSeq + 1, end, Long.toHexString(nodeId));
+			deliveredSeq = end;
+			gapSinceMillis = 0;
+			segmentClient.invalidateAll();
+			drain();
+			if (highestSeq > deliveredSeq) {
+				gapSinceMillis = System.currentTimeMillis();
+				nack();
+			}
+		}
+
+		/** Re-asks for or gives up on an open gap; true when the sender has been silent too long to keep. */
+		synchronized boolean tick(long now, long silentMillis) {
+			if (gapSinceMillis != 0) {
+				if (now - gapSinceMillis >= gapTimeoutMillis) {
+					giveUp();
+				} else {
+					nack();
+				}
+			}
+			return now - lastHeardMillis > silentMillis;
+		}
+	}
+
+	static byte[] encode(Message message) {
+		return ByteBuffer.allocate(HEADER_BYTES + message.payload().length)
+				.putInt(MAGIC)
+				.put(VERSION)
+				.put((byte) message.type().ordinal())
+				.putLong(message.nodeId())
+				.putLong(message.seq())
+				.put(message.payload())
+				.array();
+	}
+
+	/** The message in the first {@code length} bytes, or null if they are not one. */
+	static Message decode(byte[] packet, int length) {
+		if (length < HEADER_BYTES) {
+			return null;
+		}
+		ByteBuffer in = ByteBuffer.wrap(packet, 0, length);
+		if (in.getInt() != MAGIC || in.get() != VERSION) {
+			return null;
+		}
+		int type = in.get();
+		if (type < 0 || type >= Type.VALUES.length) {
+			return null;
+		}
+		long sender = in.getLong();
+		long seq = in.getLong();
+		return new Message(Type.VALUES[type], sender, seq, Arrays.copyOfRange(packet, HEADER_BYTES, length));
+	}
+
+	/** Estimated retained size of the retransmit window, for {@link MemoryFootprint}. */
+	public MemoryFootprint.Usage retransmitFootprint() {
+		if (sentPackets == null) {
+			return new MemoryFootprint.Usage(0, 0);
+		}
+		synchronized (sentPackets) {
+			return new MemoryFootprint.Usage(Math.min(lastSeq, window),
+					sentBytes + (long) window * (Long.BYTES + 4));
+		}
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", socket != null);
+		stats.put("node_id", Long.toHexString(nodeId));
+		stats.put("peers", peers == null ? List.of() : peers.stream().map(InetSocketAddress::toString).toList());
+		stats.put("senders", senders.size());
+		stats.put("published", published.sum());
+		stats.put("received", received.sum());
+		stats.put("delivered", delivered.sum());
+		stats.put("duplicates", duplicates.sum());
+		stats.put("gaps", gaps.sum());
+		stats.put("gaps_given_up", gapsGivenUp.sum());
+		stats.put("lost", lost.sum());
+		stats.put("nacks_sent", nacksSent.sum());
+		stats.put("retransmits", retransmits.sum());
+		stats.put("malformed", malformed.sum());
+		stats.put("unknown_sources", unknownSources.sum());
+		stats.put("apply_failures", applyFailures.sum());
+		stats.put("send_failures", sendFailures.sum());
+		return stats;
+	}
+
+	@Override
+	public void destroy() {
+		if (socket != null) {
+			ticker.shutdownNow();
+			socket.close();
+			receiver.interrupt();
+		}
+	}
+}
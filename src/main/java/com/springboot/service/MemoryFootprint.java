@@ -0,0 +1,182 @@
+package com.springboot.service;
+
+import com.springboot.property.FootprintProperty;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Entry count and estimated retained size of each in-process data structure, and how fast they grow.
+ *
+ * Sizes are estimated from array capacities and fixed per-entry costs rather than by walking object
+ * graphs, so a report costs microseconds and can be scraped as often as needed. The segment cache is
+ * the one structure that is walked, once per report. A background sample every {@code sample-seconds}
+ * keeps a window of past sizes; growth is reported per minute since the oldest sample in the window.
+ *
+ * The services measured are looked up when measured, not injected, so this bean does not pull them in
+ * under lazy initialization; beans outside this package report through {@link Source}.
+ */
+@Service
+public class MemoryFootprint implements DisposableBean {
+
+	/** One structure's entries and estimated bytes. */
+	public record Usage(long entries, long bytes) {
+	}
+
+	/** A bean with structures of its own to report, e.g. a controller's buffers. */
+	public interface Source {
+
+		Map<String, Usage> footprint();
+	}
+
+	private record Sample(long atMillis, Map<String, Long> bytes) {
+	}
+
+	private static final String HEAP = "heap_used";
+
+	@Autowired
+	private FootprintProperty footprintProperty;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Autowired
+	private ObjectProvider<SegmentClient> segmentClient;
+
+	@Autowired
+	private ObjectProvider<RestaurantRateLimiter> rateLimiter;
+
+	@Autowired
+	private ObjectProvider<CartSessionService> cartSessions;
+
+	@Autowired
+	private ObjectProvider<InvalidationBus> invalidationBus;
+
+	@Autowired
+	private ObjectProvider<RedemptionAnalytics> redemptions;
+
+	@Autowired
+	private ObjectProvider<Source> beanSources;
+
+	private final Map<String, Supplier<Usage>> sources = new LinkedHashMap<>();
+	private final Deque<Sample> samples = new ArrayDeque<>();
+	private ScheduledExecutorService sampler;
+
+	@PostConstruct
+	void init() {
+		register("segment_cache", () -> segmentClient.getObject().cacheFootprint());
+		register("rate_limit_tables", () -> {
+			RestaurantRateLimiter limiter = rateLimiter.getObject();
+			return new Usage(limiter.trackedRestaurants(), limiter.tableBytes());
+		});
+		register("cart_sessions", () -> cartSessions.getObject().footprint());
+		register("invalidation_window", () -> invalidationBus.getObject().retransmitFootprint());
+		register("redemption_counters", () -> redemptions.getObject().footprint());
+		sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "memory-footprint");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = footprintProperty.getSampleSeconds();
+		sampler.scheduleWithFixedDelay(() -> sample(System.currentTimeMillis()), period, period, TimeUnit.SECONDS);
+	}
+
+	/** Adds a structure to the report, e.g. one owned by a controller. */
+	public synchronized void register(String name, Supplier<Usage> source) {
+		sources.put(name, source);
+	}
+
+	/** Current estimates: the catalog's structures, the registered ones in order, then the {@link Source} beans. */
+	synchronized Map<String, Usage> measure() {
+		Map<String, Usage> usages = new LinkedHashMap<>(offerCatalog.footprint());
+		sources.forEach((name, source) -> usages.put(name, source.get()));
+		if (beanSources != null) {
+			beanSources.orderedStream().forEach(source -> usages.putAll(source.footprint()));
+		}
+		return usages;
+	}
+
+	private static long heapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/** Records the current sizes for the growth rate, dropping samples that left the window. */
+	void sample(long nowMillis) {
+		Map<String, Long> bytes = new LinkedHashMap<>();
+		measure().forEach((name, usage) -> bytes.put(name, usage.bytes()));
+		bytes.put(HEAP, heapUsed());
+		synchronized (samples) {
+			samples.addLast(new Sample(nowMillis, bytes));
+			while (samples.size() > footprintProperty.getWindowSamples()) {
+				samples.removeFirst();
+			}
+		}
+	}
+
+	public Map<String, Object> report() {
+		return report(System.currentTimeMillis());
+	}
+
+	Map<String, Object> report(long nowMillis) {
+		long start = System.nanoTime();
+		Map<String, Usage> usages = measure();
+		long estimateMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+		Sample oldest;
+		synchronized (samples) {
+			oldest = samples.peekFirst();
+		}
+		long elapsedMillis = oldest == null ? 0 : nowMillis - oldest.atMillis();
+
+		Map<String, Object> structures = new LinkedHashMap<>();
+		long total = 0;
+		for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+			String name = entry.getKey();
+			Usage usage = entry.getValue();
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("entries", usage.entries());
+			row.put("bytes", usage.bytes());
+			row.put("bytes_per_minute", growthPerMinute(oldest, name, usage.bytes(), elapsedMillis));
+			structures.put(name, row);
+			total += usage.bytes();
+		}
+		long heap = heapUsed();
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("taken_at", nowMillis);
+		report.put("estimated_total_bytes", total);
+		// for comparison: what the estimates leave out shows up here, along with garbage not yet collected
+		report.put("heap_used_bytes", heap);
+		report.put("heap_used_bytes_per_minute", growthPerMinute(oldest, HEAP, heap, elapsedMillis));
+		report.put("growth_window_seconds", elapsedMillis / 1000);
+		report.put("estimate_micros", estimateMicros);
+		report.put("structures", structures);
+		return report;
+	}
+
+	private static long growthPerMinute(Sample oldest, String name, long bytes, long elapsedMillis) {
+		// a structure registered after the oldest sample has no growth yet
+		Long before = oldest == null ? null : oldest.bytes().get(name);
+		if (before == null || elapsedMillis <= 0) {
+			return 0;
+		}
+		return (bytes - before) * 60_000 / elapsedMillis;
+	}
+
+	@Override
+	public void destroy() {
+		if (sampler != null) {
+			sampler.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,442 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.jfr.OfferIngestEvent;
+import com.springboot.jfr.PriceCartEvent;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.repository.OfferMatch;
+import com.springboot.repository.OfferStore;
+import com.springboot.util.HierarchicalTimerWheel;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entry point for offer mutations and matching.
+ *
+ * Every offer has a stable {@code offer_id}, either supplied by the client or derived from restaurant,
+ * type, value and segments, and writes are upserts on that id, so re-sent offers replace themselves
+ * instead of piling up. An {@code Idempotency-Key} pins a key to the offer it first created so a
+ * retried request is answered without being applied again.
+ *
+ * Offers with a {@code valid_until} are registered with a timer wheel and dropped from the
+ * {@link OfferStore} when they expire; matching also checks the validity window itself, so an expired
+ * offer is never applied between two wheel ticks.
+ *
+ * {@link #replaceAll} builds a complete new store off to the side and swaps it in with one volatile
+ * write, so a pricing call sees either the old catalog or the new one, never a mix.
+ */
+@Service
+public class OfferCatalog implements DisposableBean, PricingEngine {
+
+	public enum Outcome {
+		CREATED, UPDATED, REPLAYED, KEY_CONFLICT
+	}
+
+	@Autowired
+	private OfferCatalogProperty offerCatalogProperty;
+
+	@Autowired
+	private RedemptionAnalytics redemptions;
+
+	private final ThreadLocal<OfferMatch> matches = ThreadLocal.withInitial(OfferMatch::new);
+	private volatile OfferStore offerStore;
+	private final AtomicLong lastSeq = new AtomicLong();
+	// bumped after every change to the offers, so readers can tell when a rendering of them is stale
+	private final AtomicLong revision = new AtomicLong();
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder updated = new LongAdder();
+	private final LongAdder replayed = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private HierarchicalTimerWheel expiryWheel;
+	private ScheduledExecutorService expiryTicker;
+	private Map<String, IdempotencyEntry> idempotencyKeys;
+
+	/** One page of a listing; {@code nextCursor} is null on the last page. */
+	public record Page(List<OfferRequest> offers, String nextCursor, boolean cursorExpired) {
+	}
+
+	/** Receives a listing batch by batch; each batch is only valid during the call. */
+	@FunctionalInterface
+	public interface BatchConsumer {
+		void accept(List<OfferRequest> batch) throws IOException;
+	}
+
+	private record IdempotencyEntry(String offerId, long expiresAtMillis) {
+	}
+
+	@PostConstruct
+	void init() {
+		offerStore = newStore(offerCatalogProperty.getInitialCapacity(), 0);
+
+		int keyCapacity = offerCatalogProperty.getIdempotencyKeyCapacity();
+		idempotencyKeys = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IdempotencyEntry> eldest) {
+				return size() > keyCapacity;
+			}
+		};
+
+		long tick = offerCatalogProperty.getExpiryTickMillis();
+		expiryWheel = new HierarchicalTimerWheel(tick, System.currentTimeMillis());
+		expiryTicker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "offer-expiry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		expiryTicker.scheduleAtFixedRate(this::evictExpired, tick, tick, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates or replaces the offer. Fills in {@code offer_id} when the client left it out. With an
+	 * {@code idempotencyKey} that was already used, nothing is written: the call is a replay if the key
+	 * was used for the same offer and a conflict otherwise.
+	 */
+	public Outcome upsert(OfferRequest offer, String idempotencyKey) {
+		OfferIngestEvent event = new OfferIngestEvent();
+		event.begin();
+		Outcome outcome = store(offer, idempotencyKey);
+		if (event.shouldCommit()) {
+			event.offerId = offer.getOffer_id();
+			event.restaurantId = offer.getRestaurant_id();
+			event.outcome = outcome.name();
+			event.commit();
+		}
+		return outcome;
+	}
+
+	private Outcome store(OfferRequest offer, String idempotencyKey) {
+		if (offer.getOffer_id() == null || offer.getOffer_id().isBlank()) {
+			offer.setOffer_id(deriveOfferId(offer));
+		}
+		if (idempotencyKey != null) {
+			long now = System.currentTimeMillis();
+			synchronized (idempotencyKeys) {
+				IdempotencyEntry seen = idempotencyKeys.get(idempotencyKey);
+				if (seen != null && seen.expiresAtMillis() > now) {
+					if (!seen.offerId().equals(offer.getOffer_id())) {
+						return Outcome.KEY_CONFLICT;
+					}
+					replayed.increment();
+					return Outcome.REPLAYED;
+				}
+				idempotencyKeys.put(idempotencyKey, new IdempotencyEntry(offer.getOffer_id(),
+						now + TimeUnit.SECONDS.toMillis(offerCatalogProperty.getIdempotencyKeyTtlSeconds())));
+			}
+		}
+
+		OfferStore.Upserted stored = offerStore.upsert(offer);
+		revision.incrementAndGet();
+		// an unchanged window is already scheduled; a new one replaces the handle's entry in the wheel
+		if (offer.getValid_until() != null && !offer.getValid_until().equals(stored.previousValidUntil())) {
+			expiryWheel.schedule(stored.handle(), offer.getValid_until());
+		} else if (offer.getValid_until() == null && stored.previousValidUntil() != null) {
+			expiryWheel.cancel(stored.handle());
+		}
+		if (stored.created()) {
+			created.increment();
+			return Outcome.CREATED;
+		}
+		updated.increment();
+		return Outcome.UPDATED;
+	}
+
+	public boolean delete(String offerId) {
+		long handle = offerStore.removeAndGetHandle(offerId);
+		if (handle == OfferStore.NO_HANDLE) {
+			return false;
+		}
+		expiryWheel.cancel(handle);
+		revision.incrementAndGet();
+		deleted.increment();
+		return true;
+	}
+
+	/** Applies the offer matching restaurant and segment, if any, to {@code cartValue}. */
+	@Override
+	public int priceCart(int cartValue, int restaurantId, String segment) {
+		PriceCartEvent event = new PriceCartEvent();
+		event.begin();
+		OfferMatch match = matches.get();
+		boolean found = offerStore.match(restaurantId, segment, System.currentTimeMillis(), match);
+		int priced = found ? match.applyTo(cartValue) : cartValue;
+		recordPricing(event, restaurantId, segment, found, cartValue, priced);
+		return priced;
+	}
+
+	/** Same as {@link #priceCart(int, int, String)}, timing match and discount into {@code timings}. */
+	public int priceCart(int cartValue, int restaurantId, String segment, PricingTimings timings) {
+		if (timings == null) {
+			return priceCart(cartValue, restaurantId, segment);
+		}
+		return price(offerStore, cartValue, restaurantId, segment, timings, false);
+	}
+
+	/** Prices as apply_offer does, counting the offer applied as a redemption. */
+	public int redeem(int cartValue, int restaurantId, String segment, PricingTimings timings) {
+		if (redemptions == null || !redemptions.isEnabled()) {
+			return priceCart(cartValue, restaurantId, segment, timings);
+		}
+		return price(offerStore, cartValue, restaurantId, segment, timings, true);
+	}
+
+	private int price(OfferStore store, int cartValue, int restaurantId, String segment, PricingTimings timings,
+			boolean redeem) {
+		PriceCartEvent event = new PriceCartEvent();
+		event.begin();
+		OfferMatch match = matches.get();
+		long start = System.nanoTime();
+		boolean found = store.match(restaurantId, segment, System.currentTimeMillis(), match);
+		long matched = System.nanoTime();
+		if (timings != null) {
+			timings.match(matched - start, found);
+		}
+		int priced = cartValue;
+		if (found) {
+			priced = match.applyTo(cartValue);
+			if (timings != null) {
+				timings.discount(System.nanoTime() - matched);
+			}
+			if (redeem) {
+				countRedemption(store, match, restaurantId, segment);
+			}
+		}
+		recordPricing(event, restaurantId, segment, found, cartValue, priced);
+		return priced;
+	}
+
+	private OfferStore newStore(int capacity, long generation) {
+		OfferStore store = new OfferStore(capacity,
+				offerCatalogProperty.getStorage() == OfferCatalogProperty.Storage.OFF_HEAP, generation, lastSeq);
+		if (redemptions != null) {
+			store.onRemove(redemptions::retire);
+		}
+		return store;
+	}
+
+	private void countRedemption(OfferStore store, OfferMatch match, int restaurantId, String segment) {
+		long key = RedemptionAnalytics.key(match.seq(), match.segmentCode());
+		if (!redemptions.increment(key)) {
+			redemptions.add(key, new RedemptionAnalytics.Offer(store.offerId(match), restaurantId, segment));
+		}
+	}
+
+	private static void recordPricing(PriceCartEvent event, int restaurantId, String segment, boolean matched,
+			int cartValue, int priced) {
+		if (event.shouldCommit()) {
+			event.restaurantId = restaurantId;
+			event.segment = segment;
+			event.matched = matched;
+			event.cartValue = cartValue;
+			event.pricedValue = priced;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Replaces the whole catalog with {@code offers}, deriving missing ids, and returns the new catalog
+	 * version. Writes made through the API while the new store is being built are not carried over, and
+	 * neither are idempotency keys: a key used before the swap names an offer the new catalog may not have.
+	 */
+	public synchronized long replaceAll(List<OfferRequest> offers) {
+		long version = offerStore.generation() + 1;
+		OfferStore store = newStore(Math.max(offerCatalogProperty.getInitialCapacity(), offers.size()), version);
+		// every offer of the old store had a sequence up to here; their redemption counts go with them
+		long replacedThrough = lastSeq.get();
+		List<long[]> expiring = new ArrayList<>();
+		for (OfferRequest offer : offers) {
+			if (offer.getOffer_id() == null || offer.getOffer_id().isBlank()) {
+				offer.setOffer_id(deriveOfferId(offer));
+			}
+			OfferStore.Upserted stored = store.upsert(offer);
+			if (offer.getValid_until() != null) {
+				expiring.add(new long[] {stored.handle(), offer.getValid_until()});
+			}
+		}
+		OfferStore replaced = offerStore;
+		offerStore = store;
+		revision.incrementAndGet();
+		synchronized (idempotencyKeys) {
+			idempotencyKeys.clear();
+		}
+		if (redemptions != null) {
+			redemptions.retireThrough(replacedThrough);
+		}
+		// the old store's handles are cancelled first, so a reload does not leave its expiries in the wheel
+		for (long handle : replaced.expiringHandles()) {
+			expiryWheel.cancel(handle);
+		}
+		for (long[] entry : expiring) {
+			expiryWheel.schedule(entry[0], entry[1]);
+		}
+		return version;
+	}
+
+	/** Number of {@link #replaceAll} swaps so far; 0 while the catalog is built only through the API. */
+	public long version() {
+		return offerStore.generation();
+	}
+
+	/** Changes so far to the offers through any path: API writes, expiry and catalog swaps. */
+	public long revision() {
+		return revision.get();
+	}
+
+	/** All offers in insertion order, as they would be re-submitted. */
+	public List<OfferRequest> offers() {
+		return offerStore.offers();
+	}
+
+	/** One restaurant's offers in insertion order. */
+	public List<OfferRequest> offersOf(int restaurantId) {
+		return offerStore.offersOf(restaurantId);
+	}
+
+	/**
+	 * Up to {@code limit} offers matching {@code query}, continuing after {@code cursor} (null for the
+	 * first page). Cursors belong to one catalog version; after a swap they come back as expired and the
+	 * listing has to start over. Throws IllegalArgumentException for a cursor this service did not issue.
+	 */
+	public Page query(OfferStore.Query query, String cursor, int limit) {
+		OfferStore store = offerStore;
+		int fromRow = 0;
+		if (cursor != null) {
+			long[] position = decodeCursor(cursor);
+			if (position[0] != store.generation()) {
+				return new Page(List.of(), null, true);
+			}
+			fromRow = (int) position[1];
+		}
+		List<OfferRequest> offers = new ArrayList<>(Math.min(limit, 1024));
+		int next = store.scan(query, fromRow, limit, offers);
+		return new Page(offers, next < 0 ? null : encodeCursor(store.generation(), next), false);
+	}
+
+	/**
+	 * Streams every offer matching {@code query} to {@code consumer}, {@code batchSize} at a time, from the
+	 * catalog version current when the call starts. Only one batch is held in memory.
+	 */
+	public void export(OfferStore.Query query, int batchSize, BatchConsumer consumer) throws IOException {
+		OfferStore store = offerStore;
+		List<OfferRequest> batch = new ArrayList<>(batchSize);
+		int row = 0;
+		while (row >= 0) {
+			batch.clear();
+			row = store.scan(query, row, batchSize, batch);
+			if (!batch.isEmpty()) {
+				consumer.accept(batch);
+			}
+		}
+	}
+
+	private static String encodeCursor(long generation, int row) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((generation + "." + row).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static long[] decodeCursor(String cursor) {
+		long[] position;
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+			int dot = decoded.indexOf('.');
+			position = new long[] {Long.parseLong(decoded.substring(0, dot)), Integer.parseInt(decoded.substring(dot + 1))};
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("invalid cursor", e);
+		}
+		if (position[1] < 0) {
+			throw new IllegalArgumentException("invalid cursor");
+		}
+		return position;
+	}
+
+	public int size() {
+		return offerStore.size();
+	}
+
+	/** Estimated retained size of the store, its indexes and the idempotency keys, for {@link MemoryFootprint}. */
+	public Map<String, MemoryFootprint.Usage> footprint() {
+		OfferStore store = offerStore;
+		int keys;
+		synchronized (idempotencyKeys) {
+			keys = idempotencyKeys.size();
+		}
+		Map<String, MemoryFootprint.Usage> footprint = new LinkedHashMap<>();
+		footprint.put("offer_store", new MemoryFootprint.Usage(store.size(), store.columnBytes()));
+		footprint.put("offer_indexes", new MemoryFootprint.Usage(store.indexedRestaurants(), store.indexBytes()));
+		// map node, key string, entry and offer id string
+		footprint.put("idempotency_keys", new MemoryFootprint.Usage(keys, keys * 200L));
+		return footprint;
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("version", offerStore.generation());
+		stats.put("offers", offerStore.size());
+		stats.put("storage", offerStore.isOffHeap() ? "off-heap" : "heap");
+		stats.put("store_bytes", offerStore.estimatedBytes());
+		stats.put("created", created.sum());
+		stats.put("updated", updated.sum());
+		stats.put("replayed", replayed.sum());
+		stats.put("deleted", deleted.sum());
+		stats.put("scheduled_expiries", expiryWheel.size());
+		stats.put("expired", expired.sum());
+		return stats;
+	}
+
+	/**
+	 * Content-derived identity: the same restaurant, type, value and set of segments always map to the
+	 * same id, whatever order the segments were sent in. The validity window is not part of it, so
+	 * re-sending an offer with new dates moves its window. The value is, because a restaurant may run
+	 * several offers of one type for a segment: re-sending with a new value adds an offer, and pricing
+	 * keeps applying the one added first until it is deleted by id.
+	 */
+	public static String deriveOfferId(OfferRequest offer) {
+		StringBuilder canonical = new StringBuilder()
+				.append(offer.getRestaurant_id()).append('\u0000')
+				.append(offer.getOffer_type()).append('\u0000')
+				.append(offer.getOffer_value());
+		if (offer.getCustomer_segment() != null) {
+			TreeSet<String> segments = new TreeSet<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+			segments.addAll(offer.getCustomer_segment());
+			for (String segment : segments) {
+				canonical.append('\u0000').append(segment);
+			}
+		}
+		return UUID.nameUUIDFromBytes(canonical.toString().getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	void evictExpired() {
+		long now = System.currentTimeMillis();
+		expiryWheel.advance(now, handle -> {
+			// an upsert may have moved valid_until, or a delete freed the row, since this was scheduled
+			if (offerStore.removeIfExpired(handle, now)) {
+				revision.incrementAndGet();
+				expired.increment();
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		expiryTicker.shutdownNow();
+	}
+}
@@ -0,0 +1,184 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.repository.OfferFiles;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Loads offer catalogs dropped into {@code pricing.catalog.watch-dir}. Each file (.json array or
+ * .ndjson/.jsonl, add-offer format) is a complete catalog: once the directory has been quiet for
+ * {@code reload-settle-millis}, the newest file is parsed on the watcher thread and swapped in with
+ * {@link OfferCatalog#replaceAll}. A file that does not parse leaves the current catalog in place.
+ *
+ * Files should be written elsewhere and moved in, so a half-written file is never picked up; dot files
+ * are ignored for the same reason. Created eagerly even under lazy initialization: nothing on the
+ * pricing path asks for it, but the catalog has to be loaded before the first request.
+ */
+@Service
+@Lazy(false)
+public class OfferCatalogWatcher implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(OfferCatalogWatcher.class);
+
+	@Autowired
+	private OfferCatalogProperty offerCatalogProperty;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	private final LongAdder reloads = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private volatile String lastFile;
+	private volatile long lastReloadMillis;
+	private volatile long lastReloadAt;
+	private volatile String lastError;
+	private Path dir;
+	private WatchService watchService;
+	private Thread watcher;
+
+	@PostConstruct
+	void init() throws IOException {
+		String watchDir = offerCatalogProperty.getWatchDir();
+		if (watchDir == null || watchDir.isBlank()) {
+			return;
+		}
+		dir = Path.of(watchDir);
+		watchService = FileSystems.getDefault().newWatchService();
+		dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		// whatever is already there is the catalog to start with, before any request is served
+		Path newest = newestCatalogFile();
+		if (newest != null) {
+			reload(newest);
+		}
+		watcher = new Thread(this::watch, "offer-catalog-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = drain(key);
+				// wait for the directory to settle, so a burst of copies ends in one reload
+				while ((key = watchService.poll(offerCatalogProperty.getReloadSettleMillis(), TimeUnit.MILLISECONDS)) != null) {
+					changed |= drain(key);
+				}
+				if (changed) {
+					Path newest = newestCatalogFile();
+					if (newest != null) {
+						reload(newest);
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// shutting down
+		} catch (IOException e) {
+			log.error("Stopped watching {} for offer catalogs", dir, e);
+		}
+	}
+
+	private boolean drain(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || isCatalogFile((Path) event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	/** Parses {@code file} and swaps it in; returns false, keeping the current catalog, if it does not load. */
+	boolean reload(Path file) {
+		long start = System.nanoTime();
+		List<OfferRequest> offers;
+		try {
+			offers = OfferFiles.read(file);
+		} catch (IOException | RuntimeException e) {
+			failures.increment();
+			lastError = file.getFileName() + ": " + e.getMessage();
+			log.warn("Offer catalog {} not loaded, keeping version {}", file, offerCatalog.version(), e);
+			return false;
+		}
+		long version = offerCatalog.replaceAll(offers);
+		lastReloadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		lastReloadAt = System.currentTimeMillis();
+		lastFile = file.getFileName().toString();
+		lastError = null;
+		reloads.increment();
+		log.info("Offer catalog version {} loaded from {}: {} offers in {} ms", version, file, offers.size(),
+				lastReloadMillis);
+		return true;
+	}
+
+	private Path newestCatalogFile() throws IOException {
+		Path newest = null;
+		FileTime newestTime = null;
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				if (!isCatalogFile(file.getFileName()) || !Files.isRegularFile(file)) {
+					continue;
+				}
+				FileTime modified = Files.getLastModifiedTime(file);
+				if (newestTime == null || modified.compareTo(newestTime) > 0
+						|| (modified.equals(newestTime) && file.getFileName().compareTo(newest.getFileName()) > 0)) {
+					newest = file;
+					newestTime = modified;
+				}
+			}
+		}
+		return newest;
+	}
+
+	private static boolean isCatalogFile(Path name) {
+		String file = name.toString().toLowerCase(Locale.ROOT);
+		return !file.startsWith(".")
+				&& (file.endsWith(".json") || file.endsWith(".ndjson") || file.endsWith(".jsonl"));
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("watch_dir", dir == null ? null : dir.toString());
+		stats.put("reloads", reloads.sum());
+		stats.put("reload_failures", failures.sum());
+		stats.put("last_reload_file", lastFile);
+		stats.put("last_reload_millis", lastReloadMillis);
+		stats.put("last_reload_at", lastReloadAt);
+		stats.put("last_reload_error", lastError);
+		return stats;
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watcher.interrupt();
+		}
+	}
+}
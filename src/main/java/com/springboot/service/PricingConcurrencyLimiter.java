@@ -0,0 +1,58 @@
+package com.springboot.service;
+
+import com.springboot.property.ConcurrencyLimitProperty;
+import com.springboot.util.GradientConcurrencyLimit;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive in-flight limit in front of apply_offer. Requests over the limit are shed with 503 straight
+ * away instead of queueing behind a slow segment service.
+ */
+@Service
+public class PricingConcurrencyLimiter {
+
+	@Autowired
+	private ConcurrencyLimitProperty concurrencyLimitProperty;
+
+	private boolean enabled;
+	private GradientConcurrencyLimit limit;
+
+	@PostConstruct
+	void init() {
+		enabled = concurrencyLimitProperty.isEnabled();
+		limit = new GradientConcurrencyLimit(concurrencyLimitProperty.getInitialLimit(),
+				concurrencyLimitProperty.getMinLimit(), concurrencyLimitProperty.getMaxLimit(),
+				concurrencyLimitProperty.getSmoothing(),
+				TimeUnit.MILLISECONDS.toNanos(concurrencyLimitProperty.getWindowMillis()),
+				concurrencyLimitProperty.getWindowMinSamples(), System.nanoTime());
+	}
+
+	/** False means the request must be shed; otherwise {@link #release} has to follow. */
+	public boolean tryAcquire() {
+		return !enabled || limit.tryAcquire();
+	}
+
+	public void release(long startNanos) {
+		if (enabled) {
+			limit.release(startNanos, System.nanoTime());
+		}
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled);
+		stats.put("limit", limit.limit());
+		stats.put("in_flight", limit.inFlight());
+		stats.put("accepted", limit.accepted());
+		stats.put("shed", limit.rejected());
+		stats.put("short_rtt_ms", limit.shortRttMillis());
+		stats.put("long_rtt_ms", limit.longRttMillis());
+		return stats;
+	}
+}
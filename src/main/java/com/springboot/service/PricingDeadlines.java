@@ -0,0 +1,93 @@
+package com.springboot.service;
+
+import com.springboot.property.DeadlineProperty;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads the caller's deadline off an apply_offer request and keeps count of what it cut short.
+ *
+ * Deadlines are {@link System#nanoTime()} values for when pricing work has to stop: the caller's
+ * deadline less {@code reserve-millis}, so a degraded answer still gets out in time. A request without
+ * a deadline header gets {@link #NO_DEADLINE}.
+ */
+@Service
+public class PricingDeadlines {
+
+	public static final long NO_DEADLINE = Long.MIN_VALUE;
+
+	@Autowired
+	private DeadlineProperty deadlineProperty;
+
+	private final LongAdder withDeadline = new LongAdder();
+	private final LongAdder arrivedExpired = new LongAdder();
+	private final LongAdder degradedOnArrival = new LongAdder();
+	private final LongAdder degradedInFlight = new LongAdder();
+	private final LongAdder invalidHeaders = new LongAdder();
+
+	/** The request's deadline, or {@link #NO_DEADLINE} when it has none or it does not parse. */
+	public long deadlineNanos(HttpServletRequest request) {
+		long now = System.nanoTime();
+		String deadline = request.getHeader(deadlineProperty.getDeadlineHeader());
+		String timeout = deadline == null ? request.getHeader(deadlineProperty.getTimeoutHeader()) : null;
+		if (deadline == null && timeout == null) {
+			return NO_DEADLINE;
+		}
+		long remainingMillis;
+		try {
+			// a deadline before the epoch is long past; clamping it keeps the subtraction from overflowing
+			remainingMillis = deadline != null
+					? Math.max(0, Long.parseLong(deadline.trim())) - System.currentTimeMillis()
+					: Long.parseLong(timeout.trim());
+		} catch (NumberFormatException e) {
+			invalidHeaders.increment();
+			return NO_DEADLINE;
+		}
+		withDeadline.increment();
+		if (remainingMillis <= 0) {
+			arrivedExpired.increment();
+		}
+		// far-off and long-past deadlines are clamped so the nanoTime arithmetic cannot overflow either way
+		long clampedMillis = Math.max(-1, Math.min(remainingMillis, TimeUnit.DAYS.toMillis(1)));
+		long budgetMillis = clampedMillis - deadlineProperty.getReserveMillis();
+		return now + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+	}
+
+	public boolean expired(long deadlineNanos) {
+		return deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0;
+	}
+
+	/** Time left until {@code deadlineNanos}, or {@code fallbackNanos} when it is {@link #NO_DEADLINE}. */
+	public static long remainingNanos(long deadlineNanos, long fallbackNanos) {
+		if (deadlineNanos == NO_DEADLINE) {
+			return fallbackNanos;
+		}
+		return Math.min(fallbackNanos, deadlineNanos - System.nanoTime());
+	}
+
+	/** Records a request answered with the degraded response; {@code onArrival} if no work was done for it. */
+	public void degraded(boolean onArrival) {
+		(onArrival ? degradedOnArrival : degradedInFlight).increment();
+	}
+
+	public DeadlineProperty.DegradedResponse degradedResponse() {
+		return deadlineProperty.getDegradedResponse();
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("requests_with_deadline", withDeadline.sum());
+		stats.put("arrived_expired", arrivedExpired.sum());
+		stats.put("degraded_on_arrival", degradedOnArrival.sum());
+		stats.put("degraded_in_flight", degradedInFlight.sum());
+		stats.put("invalid_headers", invalidHeaders.sum());
+		stats.put("degraded_response", deadlineProperty.getDegradedResponse().name());
+		return stats;
+	}
+}
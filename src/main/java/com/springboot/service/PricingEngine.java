@@ -0,0 +1,12 @@
+package com.springboot.service;
+
+/**
+ * Prices a cart against the offer catalog. apply_offer prices with {@link OfferCatalog}; other
+ * implementations are candidates, run on mirrored traffic by {@link ShadowPricing} and registered
+ * as beans under the name {@code pricing.shadow.candidate} refers to.
+ */
+public interface PricingEngine {
+
+	/** {@code cartValue} after the offer for restaurant and segment, or unchanged when none applies. */
+	int priceCart(int cartValue, int restaurantId, String segment);
+}
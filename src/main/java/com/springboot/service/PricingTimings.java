@@ -0,0 +1,105 @@
+package com.springboot.service;
+
+/**
+ * Stage durations of one apply_offer call. Instances are reused per thread by {@link PricingTracer};
+ * when tracing is off no instance is handed out and the stages are not timed at all.
+ */
+public final class PricingTimings {
+
+	public enum SegmentSource {
+		CACHE, STALE, SERVICE, FAILED, SKIPPED
+	}
+
+	private long startNanos;
+	private long segmentNanos;
+	private SegmentSource segmentSource;
+	private boolean hedged;
+	private long matchNanos;
+	private long discountNanos;
+	private boolean matched;
+
+	void reset(long startNanos) {
+		this.startNanos = startNanos;
+		segmentNanos = 0;
+		segmentSource = null;
+		hedged = false;
+		matchNanos = 0;
+		discountNanos = 0;
+		matched = false;
+	}
+
+	void segment(long nanos, SegmentSource source) {
+		segmentNanos = nanos;
+		segmentSource = source;
+	}
+
+	void hedged() {
+		hedged = true;
+	}
+
+	void match(long nanos, boolean matched) {
+		matchNanos = nanos;
+		this.matched = matched;
+	}
+
+	void discount(long nanos) {
+		discountNanos = nanos;
+	}
+
+	long startNanos() {
+		return startNanos;
+	}
+
+	/** {@code Server-Timing} value, e.g. {@code segment;dur=1.204;desc="miss", match;dur=0.003, ...}. */
+	String serverTiming(long totalNanos) {
+		StringBuilder header = new StringBuilder(128);
+		appendMetric(header, "segment", segmentNanos).append(";desc=\"").append(segmentDescription()).append('"');
+		appendMetric(header.append(", "), "match", matchNanos).append(";desc=\"").append(matched ? "hit" : "none").append('"');
+		appendMetric(header.append(", "), "discount", discountNanos);
+		appendMetric(header.append(", "), "total", totalNanos);
+		return header.toString();
+	}
+
+	String segmentDescription() {
+		if (segmentSource == null) {
+			return "skipped";
+		}
+		return switch (segmentSource) {
+			case CACHE -> "hit";
+			case STALE -> "hit stale";
+			case SERVICE -> hedged ? "miss hedged" : "miss";
+			case FAILED -> "failed";
+			case SKIPPED -> "skipped deadline";
+		};
+	}
+
+	long segmentNanos() {
+		return segmentNanos;
+	}
+
+	long matchNanos() {
+		return matchNanos;
+	}
+
+	long discountNanos() {
+		return discountNanos;
+	}
+
+	boolean matched() {
+		return matched;
+	}
+
+	private static StringBuilder appendMetric(StringBuilder header, String name, long nanos) {
+		// milliseconds with microsecond precision, without going through String.format
+		long micros = nanos / 1000;
+		header.append(name).append(";dur=").append(micros / 1000).append('.');
+		long fraction = micros % 1000;
+		if (fraction < 100) {
+			header.append('0');
+		}
+		if (fraction < 10) {
+			header.append('0');
+		}
+		return header.append(fraction);
+	}
+}
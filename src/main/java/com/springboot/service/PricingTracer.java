@@ -0,0 +1,68 @@
+package com.springboot.service;
+
+import com.springboot.property.TracingProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out {@link PricingTimings} for apply_offer calls and reports them as a {@code Server-Timing}
+ * header and/or a sampled trace log line. {@link #begin} returns null when tracing is off, and every
+ * stage checks for null before reading the clock.
+ */
+@Service
+public class PricingTracer {
+
+	public static final String SERVER_TIMING = "Server-Timing";
+
+	private static final Logger log = LoggerFactory.getLogger(PricingTracer.class);
+
+	@Autowired
+	private TracingProperty tracingProperty;
+
+	private final ThreadLocal<PricingTimings> timings = ThreadLocal.withInitial(PricingTimings::new);
+	private boolean enabled;
+	private boolean serverTiming;
+	private double sampleRate;
+	private long slowNanos;
+
+	@PostConstruct
+	void init() {
+		serverTiming = tracingProperty.isServerTiming();
+		sampleRate = tracingProperty.getSampleRate();
+		slowNanos = tracingProperty.getSlowMillis() > 0 ? TimeUnit.MILLISECONDS.toNanos(tracingProperty.getSlowMillis()) : Long.MAX_VALUE;
+		enabled = serverTiming || sampleRate > 0 || slowNanos != Long.MAX_VALUE;
+	}
+
+	/** Timings for the calling thread's request, or null when tracing is off. */
+	public PricingTimings begin() {
+		if (!enabled) {
+			return null;
+		}
+		PricingTimings current = timings.get();
+		current.reset(System.nanoTime());
+		return current;
+	}
+
+	/** Sets the header (before the body is written) and logs the request if it was sampled or slow. */
+	public void finish(PricingTimings timings, HttpServletResponse response, int userId, int restaurantId,
+			int cartValue, int pricedValue) {
+		long total = System.nanoTime() - timings.startNanos();
+		if (serverTiming) {
+			response.setHeader(SERVER_TIMING, timings.serverTiming(total));
+		}
+		if (total >= slowNanos || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+			log.info("apply_offer user={} restaurant={} cart={} priced={} segment={}us ({}) match={}us ({}) discount={}us total={}us",
+					userId, restaurantId, cartValue, pricedValue,
+					timings.segmentNanos() / 1000, timings.segmentDescription(),
+					timings.matchNanos() / 1000, timings.matched() ? "hit" : "none",
+					timings.discountNanos() / 1000, total / 1000);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package com.springboot.service;
+
+import com.springboot.controller.RedemptionCount;
+import com.springboot.controller.RedemptionReport;
+import com.springboot.property.RedemptionProperty;
+import com.springboot.util.PerThreadCounters;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How often each offer is applied by apply_offer, per restaurant and segment.
+ *
+ * Pricing threads count into {@link PerThreadCounters}, so counting adds no shared write to the hot
+ * path. Every {@code aggregate-millis} the tables are added up into a snapshot, which is what the
+ * query and export endpoints serve; counts are therefore up to one period old. Each aggregation also
+ * rotates the per-thread tables, so a thread's key limit applies per period rather than for good.
+ *
+ * An offer is counted under its insertion sequence, which the catalog never hands out twice. When an
+ * offer leaves the catalog, by delete, expiry or a catalog swap, its counts are dropped at the next
+ * aggregation.
+ */
+@Service
+public class RedemptionAnalytics implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(RedemptionAnalytics.class);
+
+	/** What a counter key stands for; taken once per thread and key, when the thread first counts it. */
+	public record Offer(String offerId, int restaurantId, String segment) {
+	}
+
+	private static final int SEGMENT_BITS = 20;
+
+	@Autowired
+	private RedemptionProperty redemptionProperty;
+
+	private PerThreadCounters<Offer> counters;
+	private ScheduledExecutorService aggregator;
+	private volatile RedemptionReport snapshot = new RedemptionReport(0, 0, 0, List.of());
+	private Map<Long, Long> previousTotals = Map.of();
+	private volatile long lastAggregationMillis;
+	private final Queue<Long> removed = new ConcurrentLinkedQueue<>();
+	private final AtomicLong retiredThrough = new AtomicLong();
+	// aggregator only: removed offers whose keys some thread's table may still hold
+	private Set<Long> retired = new HashSet<>();
+
+	@PostConstruct
+	void init() {
+		if (!redemptionProperty.isEnabled()) {
+			return;
+		}
+		counters = new PerThreadCounters<>(redemptionProperty.getMaxKeysPerThread());
+		aggregator = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "redemption-aggregator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = redemptionProperty.getAggregateMillis();
+		aggregator.scheduleWithFixedDelay(this::aggregate, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	public boolean isEnabled() {
+		return counters != null;
+	}
+
+	/**
+	 * Counter key of an offer, by insertion sequence, and the segment it was applied for. Segment codes
+	 * past {@code 2^20} share bits; the offer's counts for such segments are merged.
+	 */
+	public static long key(long seq, int segmentCode) {
+		return seq << SEGMENT_BITS | (segmentCode & ((1 << SEGMENT_BITS) - 1));
+	}
+
+	private static long seqOf(long key) {
+		return key >>> SEGMENT_BITS;
+	}
+
+	/** The offer with insertion sequence {@code seq} left the catalog; called under the store's lock. */
+	public void retire(long seq) {
+		if (counters != null) {
+			removed.add(seq);
+		}
+	}
+
+	/** Every offer with an insertion sequence up to {@code seq} left the catalog, e.g. in a swap. */
+	public void retireThrough(long seq) {
+		retiredThrough.accumulateAndGet(seq, Math::max);
+	}
+
+	/** Counts a redemption under {@code key}; false when this thread has not seen the key yet. */
+	public boolean increment(long key) {
+		return counters.increment(key);
+	}
+
+	/** First redemption of {@code key} on this thread. */
+	public void add(long key, Offer offer) {
+		counters.add(key, offer);
+	}
+
+	/** Adds up every thread's counters into a new snapshot and starts the threads on fresh tables. */
+	synchronized void aggregate() {
+		try {
+			long start = System.nanoTime();
+			Long seq;
+			while ((seq = removed.poll()) != null) {
+				retired.add(seq);
+			}
+			long through = retiredThrough.get();
+			Set<Long> stillHeld = new HashSet<>();
+			Map<Long, RedemptionCount> merged = new HashMap<>();
+			counters.collect((key, offer, count) -> {
+				RedemptionCount row = merged.get(key);
+				if (row == null) {
+					merged.put(key, new RedemptionCount(offer.offerId(), offer.restaurantId(), offer.segment(), count, 0));
+					return;
+				}
+				row.setRedemptions(row.getRedemptions() + count);
+				if (row.getOffer_id() == null) {
+					row.setOffer_id(offer.offerId());
+				}
+			}, key -> {
+				long offerSeq = seqOf(key);
+				if (offerSeq <= through) {
+					return true;
+				}
+				if (!retired.isEmpty() && retired.contains(offerSeq)) {
+					stillHeld.add(offerSeq);
+					return true;
+				}
+				return false;
+			});
+			// a removed offer is remembered only while some table still holds its keys
+			retired = stillHeld;
+			counters.rotate();
+			Map<Long, Long> totals = new HashMap<>(merged.size() * 2);
+			long total = 0;
+			for (Map.Entry<Long, RedemptionCount> entry : merged.entrySet()) {
+				RedemptionCount row = entry.getValue();
+				row.setLast_interval(row.getRedemptions() - previousTotals.getOrDefault(entry.getKey(), 0L));
+				totals.put(entry.getKey(), row.getRedemptions());
+				total += row.getRedemptions();
+			}
+			List<RedemptionCount> rows = new ArrayList<>(merged.values());
+			rows.sort(Comparator.comparingLong(RedemptionCount::getRedemptions).reversed()
+					.thenComparingInt(RedemptionCount::getRestaurant_id));
+			long now = System.currentTimeMillis();
+			RedemptionReport previous = snapshot;
+			snapshot = new RedemptionReport(now, previous.getTaken_at() == 0 ? 0 : now - previous.getTaken_at(), total,
+					List.copyOf(rows));
+			previousTotals = totals;
+			lastAggregationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		} catch (RuntimeException e) {
+			log.warn("Redemption aggregation failed", e);
+		}
+	}
+
+	/** The latest snapshot, optionally narrowed to a restaurant and segment and cut to {@code limit} offers. */
+	public RedemptionReport report(Integer restaurantId, String segment, int limit) {
+		RedemptionReport current = snapshot;
+		List<RedemptionCount> offers = new ArrayList<>();
+		long total = 0;
+		for (RedemptionCount row : current.getOffers()) {
+			if ((restaurantId == null || row.getRestaurant_id() == restaurantId)
+					&& (segment == null || segment.equals(row.getSegment()))) {
+				total += row.getRedemptions();
+				if (offers.size() < limit) {
+					offers.add(row);
+				}
+			}
+		}
+		return new RedemptionReport(current.getTaken_at(), current.getInterval_millis(), total, offers);
+	}
+
+	/** Every row of the latest snapshot, most redeemed first. */
+	public List<RedemptionCount> all() {
+		return snapshot.getOffers();
+	}
+
+	/** Estimated retained size of the counters, for {@link MemoryFootprint}. */
+	public MemoryFootprint.Usage footprint() {
+		if (counters == null) {
+			return new MemoryFootprint.Usage(0, 0);
+		}
+		long keys = counters.keys();
+		// plus one Offer and its strings per key, and the snapshot's rows
+		return new MemoryFootprint.Usage(keys,
+				counters.capacityBytes() + keys * 120L + snapshot.getOffers().size() * 150L);
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", counters != null);
+		stats.put("counting_threads", counters == null ? 0 : counters.threads());
+		stats.put("dropped", counters == null ? 0 : counters.dropped());
+		stats.put("snapshot_rows", snapshot.getOffers().size());
+		stats.put("snapshot_taken_at", snapshot.getTaken_at());
+		stats.put("last_aggregation_millis", lastAggregationMillis);
+		return stats;
+	}
+
+	@Override
+	public void destroy() {
+		if (aggregator != null) {
+			aggregator.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.springboot.service;
+
+import com.springboot.property.RateLimitProperty;
+import com.springboot.util.IntIntMap;
+import com.springboot.util.TokenBucketTable;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket rate limiting keyed by restaurant_id, with separate buckets for apply_offer and offer
+ * ingestion. Limits come from the restaurant's tier ({@link RateLimitProperty}); idle buckets are
+ * evicted in the background so the tables only hold restaurants that are actually sending traffic.
+ */
+@Service
+public class RestaurantRateLimiter implements DisposableBean {
+
+	public enum Endpoint {
+		APPLY_OFFER, OFFER_INGEST
+	}
+
+	@Autowired
+	private RateLimitProperty rateLimitProperty;
+
+	private boolean enabled;
+	private IntIntMap tierByRestaurant;
+	private int defaultTier;
+	private String[] tierNames;
+	private int[][] perSecond;
+	private int[][] burst;
+	private TokenBucketTable[] tables;
+	private LongAdder[][] allowed;
+	private LongAdder[][] throttled;
+	private ScheduledExecutorService evictor;
+
+	@PostConstruct
+	void init() {
+		enabled = rateLimitProperty.isEnabled();
+		Map<String, RateLimitProperty.Tier> tiers = new LinkedHashMap<>(rateLimitProperty.getTiers());
+		tiers.putIfAbsent(rateLimitProperty.getDefaultTier(), new RateLimitProperty.Tier());
+
+		List<String> names = new ArrayList<>(tiers.keySet());
+		int endpoints = Endpoint.values().length;
+		tierNames = names.toArray(new String[0]);
+		perSecond = new int[endpoints][tierNames.length];
+		burst = new int[endpoints][tierNames.length];
+		allowed = new LongAdder[endpoints][tierNames.length];
+		throttled = new LongAdder[endpoints][tierNames.length];
+		for (int t = 0; t < tierNames.length; t++) {
+			RateLimitProperty.Tier tier = tiers.get(tierNames[t]);
+			perSecond[Endpoint.APPLY_OFFER.ordinal()][t] = tier.getApplyOfferPerSecond();
+			burst[Endpoint.APPLY_OFFER.ordinal()][t] = Math.max(1, tier.getApplyOfferBurst());
+			perSecond[Endpoint.OFFER_INGEST.ordinal()][t] = tier.getOfferIngestPerSecond();
+			burst[Endpoint.OFFER_INGEST.ordinal()][t] = Math.max(1, tier.getOfferIngestBurst());
+			for (int e = 0; e < endpoints; e++) {
+				allowed[e][t] = new LongAdder();
+				throttled[e][t] = new LongAdder();
+			}
+		}
+
+		defaultTier = names.indexOf(rateLimitProperty.getDefaultTier());
+		tierByRestaurant = new IntIntMap(rateLimitProperty.getRestaurants().size());
+		rateLimitProperty.getRestaurants().forEach((restaurantId, tierName) -> {
+			int t = names.indexOf(tierName);
+			if (t < 0) {
+				throw new IllegalStateException("Unknown rate limit tier '" + tierName + "' for restaurant " + restaurantId);
+			}
+			tierByRestaurant.put(restaurantId, t);
+		});
+
+		long now = System.currentTimeMillis();
+		tables = new TokenBucketTable[endpoints];
+		for (int e = 0; e < endpoints; e++) {
+			tables[e] = new TokenBucketTable(rateLimitProperty.getStripes(), rateLimitProperty.getInitialStripeCapacity(), now);
+		}
+
+		if (enabled) {
+			long idleMillis = TimeUnit.SECONDS.toMillis(rateLimitProperty.getIdleEvictionSeconds());
+			long period = Math.max(1000, idleMillis / 2);
+			evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "rate-limit-evictor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			evictor.scheduleWithFixedDelay(() -> {
+				for (TokenBucketTable table : tables) {
+					table.evictIdle(System.currentTimeMillis(), idleMillis);
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/** Takes a token for {@code restaurantId}; false means the request should be rejected with 429. */
+	public boolean tryAcquire(Endpoint endpoint, int restaurantId) {
+		if (!enabled) {
+			return true;
+		}
+		int e = endpoint.ordinal();
+		int tier = tierByRestaurant.get(restaurantId, defaultTier);
+		if (tables[e].tryAcquire(restaurantId, perSecond[e][tier], burst[e][tier], System.currentTimeMillis())) {
+			allowed[e][tier].increment();
+			return true;
+		}
+		throttled[e][tier].increment();
+		return false;
+	}
+
+	/** Retry-After hint; rates are whole tokens per second, so it is 1 for any tier that refills. */
+	public int retryAfterSeconds(Endpoint endpoint, int restaurantId) {
+		int rate = perSecond[endpoint.ordinal()][tierByRestaurant.get(restaurantId, defaultTier)];
+		return rate <= 0 ? 60 : Math.max(1, (int) Math.ceil(1.0 / rate));
+	}
+
+	public long trackedRestaurants() {
+		long total = 0;
+		for (TokenBucketTable table : tables) {
+			total += table.size();
+		}
+		return total;
+	}
+
+	public long tableBytes() {
+		long total = 0;
+		for (TokenBucketTable table : tables) {
+			total += table.capacityBytes();
+		}
+		return total;
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", enabled);
+		for (Endpoint endpoint : Endpoint.values()) {
+			int e = endpoint.ordinal();
+			Map<String, Object> perTier = new LinkedHashMap<>();
+			for (int t = 0; t < tierNames.length; t++) {
+				Map<String, Object> tier = new LinkedHashMap<>();
+				tier.put("per_second", perSecond[e][t]);
+				tier.put("burst", burst[e][t]);
+				tier.put("allowed", allowed[e][t].sum());
+				tier.put("throttled", throttled[e][t].sum());
+				perTier.put(tierNames[t], tier);
+			}
+			Map<String, Object> endpointStats = new LinkedHashMap<>();
+			endpointStats.put("tracked_restaurants", tables[e].size());
+			endpointStats.put("tiers", perTier);
+			stats.put(endpoint.name().toLowerCase(), endpointStats);
+		}
+		return stats;
+	}
+
+	@Override
+	public void destroy() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reference engine: walks the restaurant's offers in insertion order and applies the first one for the
+ * segment that is valid now, the way apply_offer did before offers were indexed. Allocating, but simple
+ * enough to check the indexed store against: only the restaurant lookup is shared with it, segment,
+ * validity and discount are worked out here from plain copies.
+ */
+@Component("scan")
+public class ScanPricingEngine implements PricingEngine {
+
+	private static final String FLAT_TYPE = "FLATX";
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Override
+	public int priceCart(int cartValue, int restaurantId, String segment) {
+		if (segment == null) {
+			return cartValue;
+		}
+		long now = System.currentTimeMillis();
+		for (OfferRequest offer : offerCatalog.offersOf(restaurantId)) {
+			if (offer.getCustomer_segment() != null && offer.getCustomer_segment().contains(segment)
+					&& (offer.getValid_from() == null || now >= offer.getValid_from())
+					&& (offer.getValid_until() == null || now < offer.getValid_until())) {
+				if (FLAT_TYPE.equals(offer.getOffer_type())) {
+					return cartValue - offer.getOffer_value();
+				}
+				return (int) (cartValue - cartValue * offer.getOffer_value() * (0.01));
+			}
+		}
+		return cartValue;
+	}
+}
@@ -0,0 +1,452 @@
+package com.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.SegmentResponse;
+import com.springboot.jfr.SegmentFetchEvent;
+import com.springboot.property.SegmentProperty;
+import com.springboot.util.IntTtlCache;
+import com.springboot.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client for the user segment service, with optional hedging against its long latency tail.
+ *
+ * With hedging on, a call that has not answered within the current hedge delay (the configured
+ * percentile of recent call latencies) is duplicated and the first good answer wins; the other call is
+ * cancelled. Every call deposits {@code budget-percent} hundredths of a hedge into a budget and every
+ * hedge withdraws a whole one, so hedges stay a small fraction of traffic even when the service slows
+ * down across the board.
+ *
+ * Successful lookups can be cached per user for {@code cache.ttl-seconds}. With
+ * {@code cache.refresh-after-seconds} set, an entry older than that is still served but also refreshed
+ * in the background, so users seen often never wait for the service; at most
+ * {@code cache.refresh-concurrency} refreshes run at once, and an entry whose refreshes keep failing is
+ * dropped at its ttl.
+ */
+@Service
+public class SegmentClient implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentClient.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final long HEDGE_COST = 100;
+
+	@Autowired
+	private SegmentProperty segmentProperty;
+
+	private HttpClient httpClient;
+	private String segmentUrl;
+	private long requestTimeoutNanos;
+	private boolean hedging;
+	private long budgetPerCall;
+	private long budgetCap;
+	private final AtomicLong budget = new AtomicLong();
+	private final LatencyHistogram window = new LatencyHistogram();
+	private volatile long hedgeDelayNanos = -1;
+	private volatile long windowP50Nanos;
+	private volatile long windowP99Nanos;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder hedged = new LongAdder();
+	private final LongAdder hedgeWins = new LongAdder();
+	private final LongAdder budgetExhausted = new LongAdder();
+	private ScheduledExecutorService delayEstimator;
+	private IntTtlCache<String> cache;
+	private long cacheTtlMillis;
+	private long cacheRefreshMillis;
+	private long refreshRetryMillis;
+	private ThreadPoolExecutor refresher;
+	private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder refreshFailures = new LongAdder();
+	private final LongAdder refreshesDropped = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private final LongAdder deadlineShortened = new LongAdder();
+	private final LongAdder deadlineSkipped = new LongAdder();
+
+	private record Call(CompletableFuture<HttpResponse<byte[]>> response, long startNanos, long timeoutNanos) {
+	}
+
+	@PostConstruct
+	void init() {
+		httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofMillis(segmentProperty.getConnectTimeoutMillis()))
+				.build();
+		String baseUrl = segmentProperty.getBaseUrl();
+		segmentUrl = (baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl)
+				+ "/api/v1/user_segment?user_id=";
+		requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(segmentProperty.getRequestTimeoutMillis());
+
+		SegmentProperty.Cache cacheProperty = segmentProperty.getCache();
+		if (cacheProperty.isEnabled()) {
+			cache = new IntTtlCache<>(cacheProperty.getCapacity());
+			cacheTtlMillis = TimeUnit.SECONDS.toMillis(cacheProperty.getTtlSeconds());
+			cacheRefreshMillis = cacheTtlMillis;
+			if (cacheProperty.getRefreshAfterSeconds() > 0) {
+				cacheRefreshMillis = Math.min(cacheTtlMillis, TimeUnit.SECONDS.toMillis(cacheProperty.getRefreshAfterSeconds()));
+				refreshRetryMillis = cacheProperty.getRefreshRetryMillis();
+				AtomicInteger threads = new AtomicInteger();
+				refresher = new ThreadPoolExecutor(cacheProperty.getRefreshConcurrency(), cacheProperty.getRefreshConcurrency(),
+						0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cacheProperty.getRefreshQueue()), r -> {
+							Thread thread = new Thread(r, "segment-refresh-" + threads.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						});
+			}
+		}
+
+		SegmentProperty.Hedge hedge = segmentProperty.getHedge();
+		hedging = hedge.isEnabled();
+		budgetPerCall = hedge.getBudgetPercent();
+		budgetCap = hedge.getBudgetBurst() * HEDGE_COST;
+		if (hedging) {
+			delayEstimator = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "segment-hedge-delay");
+				thread.setDaemon(true);
+				return thread;
+			});
+			delayEstimator.scheduleWithFixedDelay(this::refreshHedgeDelay,
+					hedge.getRefreshMillis(), hedge.getRefreshMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/** Segment of {@code userId}; an empty response (no segment) when the service fails or times out. */
+	public SegmentResponse fetch(int userId) {
+		SegmentResponse segmentResponse = new SegmentResponse();
+		segmentResponse.setSegment(segmentOf(userId, null));
+		return segmentResponse;
+	}
+
+	/**
+	 * Segment of {@code userId}, from the cache when possible; null when the service fails or times out.
+	 * Records the lookup in {@code timings} unless it is null.
+	 */
+	public String segmentOf(int userId, PricingTimings timings) {
+		return segmentOf(userId, timings, PricingDeadlines.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as {@link #segmentOf(int, PricingTimings)}, giving up on the service at {@code deadlineNanos}
+	 * ({@link System#nanoTime()} terms) if that comes before the request timeout. Past the deadline the
+	 * service is not called at all; cached segments are still returned.
+	 */
+	public String segmentOf(int userId, PricingTimings timings, long deadlineNanos) {
+		SegmentFetchEvent event = new SegmentFetchEvent();
+		event.begin();
+		long start = timings == null ? 0 : System.nanoTime();
+		if (cache != null) {
+			long now = System.currentTimeMillis();
+			IntTtlCache.Entry<String> cached = cache.entry(userId, now);
+			if (cached != null) {
+				boolean stale = cached.isStale(now);
+				if (stale) {
+					staleHits.increment();
+					refreshInBackground(userId);
+				} else {
+					cacheHits.increment();
+				}
+				if (timings != null) {
+					timings.segment(System.nanoTime() - start,
+							stale ? PricingTimings.SegmentSource.STALE : PricingTimings.SegmentSource.CACHE);
+				}
+				return recorded(event, userId, cached.value(), stale ? "stale" : "cache");
+			}
+			cacheMisses.increment();
+		}
+		long timeoutNanos = PricingDeadlines.remainingNanos(deadlineNanos, requestTimeoutNanos);
+		if (timeoutNanos <= 0) {
+			deadlineSkipped.increment();
+			if (timings != null) {
+				timings.segment(System.nanoTime() - start, PricingTimings.SegmentSource.SKIPPED);
+			}
+			return recorded(event, userId, null, "skipped");
+		}
+		if (timeoutNanos < requestTimeoutNanos) {
+			deadlineShortened.increment();
+		}
+		String segment = lookup(userId, timings, timeoutNanos);
+		if (segment != null && cache != null) {
+			cache(userId, segment);
+		}
+		if (timings != null) {
+			timings.segment(System.nanoTime() - start,
+					segment == null ? PricingTimings.SegmentSource.FAILED : PricingTimings.SegmentSource.SERVICE);
+		}
+		return recorded(event, userId, segment, segment == null ? "failed" : "service");
+	}
+
+	/** Drops {@code userId}'s cached segment, so the next lookup goes to the service. */
+	public void invalidate(int userId) {
+		if (cache != null) {
+			cache.invalidate(userId);
+			invalidations.increment();
+		}
+	}
+
+	public void invalidateAll() {
+		if (cache != null) {
+			cache.clear();
+			invalidations.increment();
+		}
+	}
+
+	private void cache(int userId, String segment) {
+		long now = System.currentTimeMillis();
+		cache.put(userId, segment, now + cacheRefreshMillis, now + cacheTtlMillis);
+	}
+
+	/** Queues a refresh of {@code userId}'s entry unless one is already queued or the queue is full. */
+	private void refreshInBackground(int userId) {
+		if (refresher == null || !refreshing.add(userId)) {
+			return;
+		}
+		try {
+			refresher.execute(() -> refresh(userId));
+		} catch (RejectedExecutionException full) {
+			refreshing.remove(userId);
+			refreshesDropped.increment();
+		}
+	}
+
+	private void refresh(int userId) {
+		try {
+			String segment = lookup(userId, null, requestTimeoutNanos);
+			if (segment != null) {
+				cache(userId, segment);
+				refreshes.increment();
+				return;
+			}
+			refreshFailures.increment();
+			// keep serving the old segment until its ttl, but do not retry on every hit
+			long now = System.currentTimeMillis();
+			IntTtlCache.Entry<String> stale = cache.entry(userId, now);
+			if (stale != null) {
+				cache.put(userId, stale.value(), now + refreshRetryMillis, stale.expiresAtMillis());
+			}
+		} finally {
+			refreshing.remove(userId);
+		}
+	}
+
+	private static String recorded(SegmentFetchEvent event, int userId, String segment, String source) {
+		if (event.shouldCommit()) {
+			event.userId = userId;
+			event.segment = segment;
+			event.source = source;
+			event.commit();
+		}
+		return segment;
+	}
+
+	private String lookup(int userId, PricingTimings timings, long timeoutNanos) {
+		calls.increment();
+		HttpRequest request = HttpRequest.newBuilder(URI.create(segmentUrl + userId))
+				.header("accept", "application/json")
+				.timeout(Duration.ofNanos(timeoutNanos))
+				.GET()
+				.build();
+		try {
+			Call primary = send(request, timeoutNanos);
+			HttpResponse<byte[]> response = hedging ? awaitHedged(request, primary, timings) : await(primary);
+			SegmentResponse segmentResponse = parse(response);
+			log.debug("got segment response {}", segmentResponse);
+			return segmentResponse.getSegment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failures.increment();
+		} catch (Exception e) {
+			failures.increment();
+			log.debug("segment lookup for user {} failed", userId, e);
+		}
+		return null;
+	}
+
+	/** Estimated retained size of the segment cache, for {@link MemoryFootprint}; walks the slots once. */
+	public MemoryFootprint.Usage cacheFootprint() {
+		if (cache == null) {
+			return new MemoryFootprint.Usage(0, 0);
+		}
+		int users = cache.size(System.currentTimeMillis());
+		// slot references, plus an entry and its segment string per cached user
+		return new MemoryFootprint.Usage(users, cache.capacity() * 4L + users * 80L);
+	}
+
+	public Map<String, Object> stats() {
+		long callCount = calls.sum();
+		long hedgeCount = hedged.sum();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("base_url", segmentProperty.getBaseUrl());
+		stats.put("hedging", hedging);
+		stats.put("calls", callCount);
+		stats.put("failures", failures.sum());
+		stats.put("deadline_shortened", deadlineShortened.sum());
+		stats.put("deadline_skipped", deadlineSkipped.sum());
+		stats.put("hedge_delay_ms", hedgeDelayNanos < 0 ? null : hedgeDelayNanos / 1e6);
+		stats.put("hedged", hedgeCount);
+		stats.put("hedge_rate", callCount == 0 ? 0.0 : (double) hedgeCount / callCount);
+		stats.put("hedge_wins", hedgeWins.sum());
+		stats.put("budget_exhausted", budgetExhausted.sum());
+		stats.put("window_p50_ms", windowP50Nanos / 1e6);
+		stats.put("window_p99_ms", windowP99Nanos / 1e6);
+		stats.put("cache", cache != null);
+		stats.put("cache_hits", cacheHits.sum());
+		stats.put("cache_stale_hits", staleHits.sum());
+		stats.put("cache_misses", cacheMisses.sum());
+		stats.put("refreshes", refreshes.sum());
+		stats.put("refresh_failures", refreshFailures.sum());
+		stats.put("refreshes_dropped", refreshesDropped.sum());
+		stats.put("refreshing", refreshing.size());
+		stats.put("cache_invalidations", invalidations.sum());
+		stats.put("cached_users", cache == null ? 0 : cache.size(System.currentTimeMillis()));
+		return stats;
+	}
+
+	private HttpResponse<byte[]> await(Call call) throws Exception {
+		try {
+			return call.response().get(remainingNanos(call), TimeUnit.NANOSECONDS);
+		} finally {
+			call.response().cancel(true);
+		}
+	}
+
+	private HttpResponse<byte[]> awaitHedged(HttpRequest request, Call primary, PricingTimings timings) throws Exception {
+		long delay = hedgeDelayNanos;
+		budget.getAndUpdate(b -> Math.min(budgetCap, b + budgetPerCall));
+		// no hedge when the call has to end before one would go out
+		if (delay < 0 || delay >= remainingNanos(primary)) {
+			return await(primary);
+		}
+		try {
+			return primary.response().get(delay, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException slow) {
+			// fall through and hedge
+		}
+		if (budget.getAndUpdate(b -> b >= HEDGE_COST ? b - HEDGE_COST : b) < HEDGE_COST) {
+			budgetExhausted.increment();
+			return await(primary);
+		}
+		hedged.increment();
+		if (timings != null) {
+			timings.hedged();
+		}
+		Call hedge = send(request, remainingNanos(primary));
+		try {
+			HttpResponse<byte[]> response = firstAnswer(primary.response(), hedge.response())
+					.get(remainingNanos(primary), TimeUnit.NANOSECONDS);
+			if (hedge.response().isDone() && !hedge.response().isCompletedExceptionally()
+					&& hedge.response().join() == response) {
+				hedgeWins.increment();
+			}
+			return response;
+		} finally {
+			cancel(primary);
+			cancel(hedge);
+		}
+	}
+
+	private Call send(HttpRequest request, long timeoutNanos) {
+		long start = System.nanoTime();
+		Call call = new Call(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()), start, timeoutNanos);
+		if (hedging) {
+			call.response().whenComplete((response, error) -> {
+				if (error == null) {
+					window.recordNanos(System.nanoTime() - call.startNanos());
+				}
+			});
+		}
+		return call;
+	}
+
+	private void cancel(Call call) {
+		if (call.response().cancel(true)) {
+			// the loser's latency is at least this long; leaving it out would drag the estimate down
+			window.recordNanos(System.nanoTime() - call.startNanos());
+		}
+	}
+
+	private long remainingNanos(Call call) {
+		return Math.max(0, call.timeoutNanos() - (System.nanoTime() - call.startNanos()));
+	}
+
+	void refreshHedgeDelay() {
+		SegmentProperty.Hedge hedge = segmentProperty.getHedge();
+		if (window.count() < hedge.getMinSamples()) {
+			return;
+		}
+		long delay = window.percentileNanos(hedge.getPercentile());
+		windowP50Nanos = window.percentileNanos(0.5);
+		windowP99Nanos = window.percentileNanos(0.99);
+		window.reset();
+		hedgeDelayNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(hedge.getMaxDelayMillis()),
+				Math.max(TimeUnit.MILLISECONDS.toNanos(hedge.getMinDelayMillis()), delay));
+	}
+
+	/** Completes with the first 2xx response, or with the last outcome when neither call got one. */
+	private static CompletableFuture<HttpResponse<byte[]>> firstAnswer(CompletableFuture<HttpResponse<byte[]>> a,
+			CompletableFuture<HttpResponse<byte[]>> b) {
+		CompletableFuture<HttpResponse<byte[]>> first = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger(2);
+		for (CompletableFuture<HttpResponse<byte[]>> call : List.of(a, b)) {
+			call.whenComplete((response, error) -> {
+				if (error == null && response.statusCode() / 100 == 2) {
+					first.complete(response);
+				} else if (pending.decrementAndGet() == 0) {
+					if (error != null) {
+						first.completeExceptionally(error);
+					} else {
+						first.complete(response);
+					}
+				}
+			});
+		}
+		return first;
+	}
+
+	private static SegmentResponse parse(HttpResponse<byte[]> response) throws IOException {
+		if (response.statusCode() / 100 != 2) {
+			throw new IOException("segment service answered " + response.statusCode());
+		}
+		return MAPPER.readValue(response.body(), SegmentResponse.class);
+	}
+
+	@Override
+	public void destroy() {
+		if (delayEstimator != null) {
+			delayEstimator.shutdownNow();
+		}
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.springboot.service;
+
+import com.springboot.property.ShadowProperty;
+import com.springboot.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a candidate {@link PricingEngine} on a sample of live apply_offer calls and compares it with the
+ * catalog, which keeps answering the request.
+ *
+ * The candidate runs on its own small pool after the primary answer is in hand; a full queue drops the
+ * mirrored call instead of waiting, so shadowing never adds latency to the response. Answers are only
+ * compared when the catalog did not change between the primary and the candidate run, otherwise a
+ * mismatch could just be an offer written in between. Latencies of both engines go into histograms.
+ */
+@Service
+public class ShadowPricing implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(ShadowPricing.class);
+
+	@Autowired
+	private ShadowProperty shadowProperty;
+
+	@Autowired
+	private OfferCatalog offerCatalog;
+
+	@Autowired
+	private Map<String, PricingEngine> engines;
+
+	private PricingEngine candidate;
+	private ThreadPoolExecutor executor;
+	private double sampleRate;
+	private final LatencyHistogram primaryLatency = new LatencyHistogram();
+	private final LatencyHistogram candidateLatency = new LatencyHistogram();
+	private final LongAdder mirrored = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder compared = new LongAdder();
+	private final LongAdder mismatches = new LongAdder();
+	private final LongAdder catalogChanged = new LongAdder();
+	private final LongAdder candidateErrors = new LongAdder();
+	private final Deque<Map<String, Object>> recentMismatches = new ArrayDeque<>();
+
+	@PostConstruct
+	void init() {
+		if (!shadowProperty.isEnabled()) {
+			return;
+		}
+		candidate = engines.get(shadowProperty.getCandidate());
+		if (candidate == null) {
+			throw new IllegalStateException("pricing.shadow.candidate " + shadowProperty.getCandidate()
+					+ " is not one of the pricing engines " + engines.keySet());
+		}
+		sampleRate = shadowProperty.getSampleRate();
+		AtomicInteger threads = new AtomicInteger();
+		executor = new ThreadPoolExecutor(shadowProperty.getThreads(), shadowProperty.getThreads(),
+				0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(shadowProperty.getQueue()), r -> {
+					Thread thread = new Thread(r, "shadow-pricing-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/** Prices with the catalog, as apply_offer always has, and mirrors a sample of calls to the candidate. */
+	public int priceCart(int cartValue, int restaurantId, String segment, PricingTimings timings) {
+		if (executor == null || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return offerCatalog.redeem(cartValue, restaurantId, segment, timings);
+		}
+		long revision = offerCatalog.revision();
+		long start = System.nanoTime();
+		int priced = offerCatalog.redeem(cartValue, restaurantId, segment, timings);
+		primaryLatency.recordNanos(System.nanoTime() - start);
+		try {
+			executor.execute(() -> compare(cartValue, restaurantId, segment, priced, revision));
+			mirrored.increment();
+		} catch (RejectedExecutionException full) {
+			dropped.increment();
+		}
+		return priced;
+	}
+
+	private void compare(int cartValue, int restaurantId, String segment, int primary, long revision) {
+		long start = System.nanoTime();
+		int shadow;
+		try {
+			shadow = candidate.priceCart(cartValue, restaurantId, segment);
+		} catch (RuntimeException e) {
+			candidateErrors.increment();
+			log.debug("candidate engine failed on restaurant {} segment {}", restaurantId, segment, e);
+			return;
+		} finally {
+			candidateLatency.recordNanos(System.nanoTime() - start);
+		}
+		if (offerCatalog.revision() != revision) {
+			catalogChanged.increment();
+			return;
+		}
+		compared.increment();
+		if (shadow != primary) {
+			mismatches.increment();
+			Map<String, Object> mismatch = new LinkedHashMap<>();
+			mismatch.put("cart_value", cartValue);
+			mismatch.put("restaurant_id", restaurantId);
+			mismatch.put("segment", segment);
+			mismatch.put("primary", primary);
+			mismatch.put("candidate", shadow);
+			mismatch.put("at", System.currentTimeMillis());
+			synchronized (recentMismatches) {
+				if (recentMismatches.size() >= shadowProperty.getMismatchSamples()) {
+					recentMismatches.removeFirst();
+				}
+				recentMismatches.addLast(mismatch);
+			}
+			log.debug("shadow mismatch {}", mismatch);
+		}
+	}
+
+	/** Starts the comparison over, e.g. after deploying a new candidate. */
+	public void reset() {
+		primaryLatency.reset();
+		candidateLatency.reset();
+		for (LongAdder counter : List.of(mirrored, dropped, compared, mismatches, catalogChanged, candidateErrors)) {
+			counter.reset();
+		}
+		synchronized (recentMismatches) {
+			recentMismatches.clear();
+		}
+	}
+
+	public Map<String, Object> stats() {
+		long comparedCount = compared.sum();
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", executor != null);
+		stats.put("candidate", shadowProperty.getCandidate());
+		stats.put("sample_rate", shadowProperty.getSampleRate());
+		stats.put("mirrored", mirrored.sum());
+		stats.put("dropped", dropped.sum());
+		stats.put("compared", comparedCount);
+		stats.put("mismatches", mismatches.sum());
+		stats.put("mismatch_rate", comparedCount == 0 ? 0.0 : (double) mismatches.sum() / comparedCount);
+		stats.put("skipped_catalog_changed", catalogChanged.sum());
+		stats.put("candidate_errors", candidateErrors.sum());
+		putPercentiles(stats, "primary", primaryLatency);
+		putPercentiles(stats, "candidate", candidateLatency);
+		synchronized (recentMismatches) {
+			stats.put("recent_mismatches", new ArrayList<>(recentMismatches));
+		}
+		return stats;
+	}
+
+	private static void putPercentiles(Map<String, Object> stats, String engine, LatencyHistogram histogram) {
+		stats.put(engine + "_p50_us", histogram.percentileNanos(0.5) / 1000);
+		stats.put(engine + "_p99_us", histogram.percentileNanos(0.99) / 1000);
+		stats.put(engine + "_p999_us", histogram.percentileNanos(0.999) / 1000);
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
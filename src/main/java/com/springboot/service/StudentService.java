@@ -1,8 +1,10 @@
 package com.springboot.service;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 @Service
+@Profile("!pricing-only")
 public class StudentService {
 
 }
@@ -0,0 +1,140 @@
+package com.springboot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows latency, in the style of Netflix's gradient limiter.
+ *
+ * Latency samples are averaged over short windows and compared with a slow-moving baseline. While the
+ * window average stays at the baseline the limit probes upward by about sqrt(limit); when latency
+ * rises above the baseline the limit is scaled down by baseline/current (never by more than half per
+ * window). Callers that find the limit reached are expected to fail fast rather than wait.
+ */
+public final class GradientConcurrencyLimit {
+
+	private static final double BASELINE_WEIGHT = 0.05;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double smoothing;
+	private final long windowNanos;
+	private final int windowMinSamples;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger windowPeakInFlight = new AtomicInteger();
+	private final LongAdder windowRttSum = new LongAdder();
+	private final LongAdder windowCount = new LongAdder();
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final ReentrantLock updateLock = new ReentrantLock();
+
+	private volatile int limit;
+	private volatile long windowStartNanos;
+	private volatile double shortRttNanos;
+	private volatile double longRttNanos;
+	// guarded by updateLock
+	private double estimatedLimit;
+
+	public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double smoothing,
+			long windowNanos, int windowMinSamples, long nowNanos) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.smoothing = smoothing;
+		this.windowNanos = windowNanos;
+		this.windowMinSamples = windowMinSamples;
+		this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.limit = (int) estimatedLimit;
+		this.windowStartNanos = nowNanos;
+	}
+
+	/** Claims an in-flight slot, or returns false if the limit is reached. */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				rejected.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				accepted.increment();
+				int peak = windowPeakInFlight.get();
+				if (current + 1 > peak) {
+					windowPeakInFlight.compareAndSet(peak, current + 1);
+				}
+				return true;
+			}
+		}
+	}
+
+	/** Releases a slot taken at {@code startNanos} and feeds its latency into the current window. */
+	public void release(long startNanos, long nowNanos) {
+		inFlight.decrementAndGet();
+		windowRttSum.add(nowNanos - startNanos);
+		windowCount.increment();
+		if (nowNanos - windowStartNanos >= windowNanos && updateLock.tryLock()) {
+			try {
+				endWindow(nowNanos);
+			} finally {
+				updateLock.unlock();
+			}
+		}
+	}
+
+	private void endWindow(long nowNanos) {
+		if (nowNanos - windowStartNanos < windowNanos) {
+			return;
+		}
+		long count = windowCount.sum();
+		if (count < windowMinSamples) {
+			return;
+		}
+		long sum = windowRttSum.sumThenReset();
+		windowCount.add(-count);
+		int peak = windowPeakInFlight.getAndSet(0);
+		windowStartNanos = nowNanos;
+
+		double shortRtt = sum / (double) count;
+		double longRtt = longRttNanos == 0 ? shortRtt : longRttNanos * (1 - BASELINE_WEIGHT) + shortRtt * BASELINE_WEIGHT;
+		if (longRtt > 2 * shortRtt) {
+			// latency recovered well below the baseline; let the baseline catch up faster
+			longRtt *= 0.95;
+		}
+		shortRttNanos = shortRtt;
+		longRttNanos = longRtt;
+
+		double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+		if (gradient >= 1.0 && peak < estimatedLimit / 2) {
+			return; // not using the limit we have, so there is nothing to learn about a larger one
+		}
+		double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+		double next = estimatedLimit * (1 - smoothing) + target * smoothing;
+		estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+		limit = (int) estimatedLimit;
+	}
+
+	public int limit() {
+		return limit;
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	public long accepted() {
+		return accepted.sum();
+	}
+
+	public long rejected() {
+		return rejected.sum();
+	}
+
+	public double shortRttMillis() {
+		return shortRttNanos / 1_000_000.0;
+	}
+
+	public double longRttMillis() {
+		return longRttNanos / 1_000_000.0;
+	}
+}
@@ -0,0 +1,230 @@
+package com.springboot.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel for expiring ids at a given wall-clock time.
+ *
+ * Four levels of 256 slots each cover 256, 256^2, 256^3 and 256^4 ticks. An entry sits in the coarsest
+ * level that can hold its remaining delay and is cascaded down a level each time the level below
+ * wraps, so a tick only ever touches the entries that are due (or due for cascading) rather than
+ * everything that is scheduled.
+ *
+ * An id has at most one live entry: scheduling it again replaces its deadline and {@link #cancel}
+ * drops it. Replaced and cancelled entries are left where they are and skipped wherever the wheel meets
+ * them again; once they make up half of the entries the whole wheel is swept of them, so the wheel
+ * holds at most about two entries per scheduled id.
+ *
+ * {@link #schedule} and {@link #cancel} may be called from any thread; {@link #advance} must be driven
+ * by a single thread.
+ */
+public final class HierarchicalTimerWheel {
+
+	private static final int LEVELS = 4;
+	private static final int SLOT_BITS = 8;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final long CANCEL = -1;
+	// below this many, stale entries are left to be skipped rather than swept
+	private static final int MIN_SWEEP = 64;
+
+	private final long tickMillis;
+	private final long startMillis;
+	private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+	private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+	private final Bucket firing = new Bucket();
+	// advance thread only: the deadline tick of each id's live entry; any other entry of the id is stale
+	private final Map<Long, Long> live = new HashMap<>();
+
+	private long currentTick;
+	private volatile int size;
+
+	public HierarchicalTimerWheel(long tickMillis, long nowMillis) {
+		this.tickMillis = tickMillis;
+		this.startMillis = nowMillis;
+		for (Bucket[] level : wheel) {
+			for (int i = 0; i < SLOTS; i++) {
+				level[i] = new Bucket();
+			}
+		}
+	}
+
+	/**
+	 * Schedules {@code id} to be handed to the expiry callback once {@code deadlineMillis} has passed,
+	 * replacing its earlier deadline if it had one.
+	 */
+	public void schedule(long id, long deadlineMillis) {
+		long deadlineTick = Math.max(0, ceilDiv(deadlineMillis - startMillis, tickMillis));
+		pending.add(new long[] {id, deadlineTick});
+	}
+
+	/** Drops {@code id}'s deadline, if it has one. */
+	public void cancel(long id) {
+		pending.add(new long[] {id, CANCEL});
+	}
+
+	/**
+	 * Moves the wheel forward to {@code nowMillis}, calling {@code onExpire} for every id whose deadline
+	 * has passed. Ids are never reported early; they may be reported up to one tick late.
+	 */
+	public void advance(long nowMillis, LongConsumer onExpire) {
+		long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+		drainPending(onExpire);
+		while (currentTick < targetTick) {
+			currentTick++;
+			for (int level = 1; level < LEVELS; level++) {
+				if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+					break;
+				}
+				cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK, onExpire);
+			}
+			Bucket due = wheel[0][(int) currentTick & SLOT_MASK];
+			if (due.size > 0) {
+				firing.takeAll(due);
+				for (int i = 0; i < firing.size; i++) {
+					place(firing.ids[i], firing.ticks[i], onExpire);
+				}
+				firing.clear();
+			}
+		}
+		int stale = countEntries() - live.size();
+		if (stale > MIN_SWEEP && stale > live.size()) {
+			sweep();
+		}
+		size = live.size();
+	}
+
+	/** Number of ids currently waiting in the wheel, as of the last {@link #advance}. */
+	public int size() {
+		return size;
+	}
+
+	/** Entries held, stale ones included; advance thread only. */
+	int entries() {
+		return countEntries();
+	}
+
+	private void drainPending(LongConsumer onExpire) {
+		long[] entry;
+		while ((entry = pending.poll()) != null) {
+			if (entry[1] == CANCEL) {
+				live.remove(entry[0]);
+			} else {
+				Long previous = live.put(entry[0], entry[1]);
+				// the same deadline again: the entry already in the wheel stands for it
+				if (previous == null || previous != entry[1]) {
+					place(entry[0], entry[1], onExpire);
+				}
+			}
+		}
+	}
+
+	private void cascade(int level, int slot, LongConsumer onExpire) {
+		Bucket bucket = wheel[level][slot];
+		if (bucket.size == 0) {
+			return;
+		}
+		firing.takeAll(bucket);
+		for (int i = 0; i < firing.size; i++) {
+			place(firing.ids[i], firing.ticks[i], onExpire);
+		}
+		firing.clear();
+	}
+
+	private void place(long id, long deadlineTick, LongConsumer onExpire) {
+		if (!isLive(id, deadlineTick)) {
+			return;
+		}
+		long delay = deadlineTick - currentTick;
+		if (delay <= 0) {
+			live.remove(id);
+			onExpire.accept(id);
+			return;
+		}
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= (1L << (SLOT_BITS * (level + 1)))) {
+			level++;
+		}
+		long slotTick = level == LEVELS - 1
+				? Math.min(deadlineTick, currentTick + (1L << (SLOT_BITS * LEVELS)) - 1)
+				: deadlineTick;
+		wheel[level][(int) (slotTick >>> (SLOT_BITS * level)) & SLOT_MASK].add(id, deadlineTick);
+	}
+
+	private boolean isLive(long id, long deadlineTick) {
+		Long tick = live.get(id);
+		return tick != null && tick == deadlineTick;
+	}
+
+	private void sweep() {
+		for (Bucket[] level : wheel) {
+			for (Bucket bucket : level) {
+				bucket.removeStale(this);
+			}
+		}
+	}
+
+	private int countEntries() {
+		int total = 0;
+		for (Bucket[] level : wheel) {
+			for (Bucket bucket : level) {
+				total += bucket.size;
+			}
+		}
+		return total;
+	}
+
+	private static long ceilDiv(long x, long y) {
+		return -Math.floorDiv(-x, y);
+	}
+
+	private static final class Bucket {
+		long[] ids = new long[0];
+		long[] ticks = new long[0];
+		int size;
+
+		void add(long id, long tick) {
+			if (size == ids.length) {
+				int capacity = Math.max(4, size * 2);
+				ids = Arrays.copyOf(ids, capacity);
+				ticks = Arrays.copyOf(ticks, capacity);
+			}
+			ids[size] = id;
+			ticks[size] = tick;
+			size++;
+		}
+
+		/** Moves the contents of {@code other} into this bucket, leaving {@code other} empty. */
+		void takeAll(Bucket other) {
+			long[] swapIds = ids;
+			long[] swapTicks = ticks;
+			ids = other.ids;
+			ticks = other.ticks;
+			size = other.size;
+			other.ids = swapIds;
+			other.ticks = swapTicks;
+			other.size = 0;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void removeStale(HierarchicalTimerWheel wheel) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (wheel.isLive(ids[i], ticks[i])) {
+					ids[kept] = ids[i];
+					ticks[kept] = ticks[i];
+					kept++;
+				}
+			}
+			size = kept;
+		}
+	}
+}
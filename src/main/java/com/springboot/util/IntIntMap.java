@@ -0,0 +1,146 @@
+package com.springboot.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int to int map (linear probing, backward-shift deletion) for lookups on hot paths
+ * where boxing every key into an {@link Integer} would be the dominant cost. Not thread-safe.
+ */
+public final class IntIntMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	public IntIntMap() {
+		this(MIN_CAPACITY);
+	}
+
+	public IntIntMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int get(int key, int defaultValue) {
+		int i = mix(key) & mask;
+		while (used[i]) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public boolean containsKey(int key) {
+		int i = mix(key) & mask;
+		while (used[i]) {
+			if (keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public void put(int key, int value) {
+		int i = mix(key) & mask;
+		while (used[i]) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		used[i] = true;
+		keys[i] = key;
+		values[i] = value;
+		if (++size > (keys.length >> 1) + (keys.length >> 2)) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	/** Removes {@code key} and returns its value, or {@code defaultValue} if it was absent. */
+	public int remove(int key, int defaultValue) {
+		int i = mix(key) & mask;
+		while (used[i]) {
+			if (keys[i] == key) {
+				int old = values[i];
+				shiftBack(i);
+				size--;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/** Bytes held by the backing arrays, for footprint reporting. */
+	public long capacityBytes() {
+		return (long) keys.length * (Integer.BYTES * 2 + 1);
+	}
+
+	private void shiftBack(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (!used[i]) {
+				break;
+			}
+			int home = mix(keys[i]) & mask;
+			// move the entry into the hole unless its home slot lies cyclically in (hole, i]
+			boolean between = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+			if (!between) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		used[hole] = false;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
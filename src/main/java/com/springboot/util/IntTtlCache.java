@@ -0,0 +1,107 @@
+package com.springboot.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, two-way set-associative cache from int keys to values with a per-entry expiry.
+ *
+ * A key can only live in one of two adjacent slots, so memory is bounded by the capacity given up
+ * front and a lookup is at most two reads with no locking and no allocation. A put evicts whichever
+ * of the two slots is empty, expired or closest to expiring.
+ *
+ * Entries may also carry a soft deadline before the hard one: past it, {@link #entry} still returns the
+ * entry and the caller can serve the value while it fetches a fresh one (stale-while-revalidate).
+ */
+public final class IntTtlCache<V> {
+
+	public record Entry<V>(int key, V value, long refreshAtMillis, long expiresAtMillis) {
+
+		public boolean isStale(long nowMillis) {
+			return nowMillis >= refreshAtMillis;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry<V>> slots;
+	private final int setMask;
+
+	public IntTtlCache(int capacity) {
+		int slotCount = Math.max(2, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+		this.slots = new AtomicReferenceArray<>(slotCount);
+		this.setMask = slotCount - 2;
+	}
+
+	/** The cached value, or null when absent or expired at {@code nowMillis}. */
+	public V get(int key, long nowMillis) {
+		Entry<V> entry = entry(key, nowMillis);
+		return entry == null ? null : entry.value();
+	}
+
+	/** The entry for {@code key}, stale or not, or null when absent or expired at {@code nowMillis}. */
+	public Entry<V> entry(int key, long nowMillis) {
+		int i = IntIntMap.mix(key) & setMask;
+		Entry<V> entry = slots.get(i);
+		if (entry == null || entry.key() != key) {
+			entry = slots.get(i + 1);
+			if (entry == null || entry.key() != key) {
+				return null;
+			}
+		}
+		return nowMillis < entry.expiresAtMillis() ? entry : null;
+	}
+
+	public void put(int key, V value, long expiresAtMillis) {
+		put(key, value, expiresAtMillis, expiresAtMillis);
+	}
+
+	/** Caches {@code value}, to be refreshed from {@code refreshAtMillis} and dropped at {@code expiresAtMillis}. */
+	public void put(int key, V value, long refreshAtMillis, long expiresAtMillis) {
+		int i = IntIntMap.mix(key) & setMask;
+		Entry<V> first = slots.get(i);
+		Entry<V> second = slots.get(i + 1);
+		int slot;
+		if (first != null && first.key() == key) {
+			slot = i;
+		} else if (second != null && second.key() == key) {
+			slot = i + 1;
+		} else if (first == null) {
+			slot = i;
+		} else if (second == null) {
+			slot = i + 1;
+		} else {
+			slot = first.expiresAtMillis() <= second.expiresAtMillis() ? i : i + 1;
+		}
+		slots.set(slot, new Entry<>(key, value, refreshAtMillis, expiresAtMillis));
+	}
+
+	public void invalidate(int key) {
+		int i = IntIntMap.mix(key) & setMask;
+		for (int slot = i; slot <= i + 1; slot++) {
+			Entry<V> entry = slots.get(slot);
+			if (entry != null && entry.key() == key) {
+				slots.compareAndSet(slot, entry, null);
+			}
+		}
+	}
+
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, null);
+		}
+	}
+
+	public int capacity() {
+		return slots.length();
+	}
+
+	/** Entries not yet expired at {@code nowMillis}; walks every slot, so for stats only. */
+	public int size(long nowMillis) {
+		int size = 0;
+		for (int i = 0; i < slots.length(); i++) {
+			Entry<V> entry = slots.get(i);
+			if (entry != null && nowMillis < entry.expiresAtMillis()) {
+				size++;
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,80 @@
+package com.springboot.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of latencies in microseconds, from 1us to about 12 days.
+ *
+ * Each power of two is split into 16 linear sub-buckets, so a reported percentile is at most about 6%
+ * above the true value. Recording is a single atomic increment; {@link #reset} is not atomic with
+ * respect to concurrent records, which is fine for windowed estimates.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+
+	public void recordNanos(long nanos) {
+		counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+		total.increment();
+	}
+
+	public long count() {
+		return total.sum();
+	}
+
+	/** Latency at quantile {@code q} (0..1) in nanoseconds, or 0 when nothing was recorded. */
+	public long percentileNanos(double q) {
+		long[] snapshot = new long[BUCKETS];
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			sum += snapshot[i];
+		}
+		if (sum == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(q * sum));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return highestMicros(i) * 1000;
+			}
+		}
+		return highestMicros(BUCKETS - 1) * 1000;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.reset();
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		micros = Math.min(micros, MAX_MICROS);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int shift = exponent - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestMicros(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
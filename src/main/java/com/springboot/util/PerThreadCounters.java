@@ -0,0 +1,321 @@
+package com.springboot.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * Counters keyed by long where every thread counts into a table of its own, so counting never
+ * contends and, once a thread has seen a key, never allocates.
+ *
+ * A table is written by its thread only: counts are bumped with a release store instead of a CAS.
+ * {@link #collect} reads every thread's table with acquire loads and sees each count as of some recent
+ * moment; adding up across threads is left to the caller. Each key carries metadata given when the
+ * thread first counted it. A table stops taking new keys at {@code maxKeysPerThread}, counting those
+ * redemptions as dropped instead.
+ *
+ * Counts end up in a base table kept under this object's lock. {@link #rotate} asks every thread to
+ * start over: on its next count the thread hands its table to the base and starts an empty one, so a
+ * table only holds the keys counted since the last rotation. Each table also remembers its thread
+ * weakly; when {@link #collect} finds the thread gone it folds the table into the base and lets it go.
+ * Keys the caller retires are dropped from the base and skipped everywhere else.
+ */
+public final class PerThreadCounters<M> {
+
+	/** Receives one thread's count for one key. */
+	public interface Collector<M> {
+
+		void accept(long key, M meta, long count);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int maxKeysPerThread;
+	private final Queue<Table<M>> tables = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Table<M>> local = ThreadLocal.withInitial(this::register);
+	// slots a thread stopped counting into on rotation, waiting to be folded into the base
+	private final Queue<Slots<M>> handedOff = new ConcurrentLinkedQueue<>();
+	private volatile int epoch;
+	// counts handed off or left by exited threads, touched under this object's lock only
+	private Slots<M> base = new Slots<>(INITIAL_CAPACITY);
+	private int baseSize;
+	private long baseDropped;
+
+	public PerThreadCounters(int maxKeysPerThread) {
+		this.maxKeysPerThread = maxKeysPerThread;
+	}
+
+	private Table<M> register() {
+		Table<M> table = new Table<>(INITIAL_CAPACITY, Thread.currentThread(), epoch);
+		tables.add(table);
+		return table;
+	}
+
+	/** This thread's table, handed off and replaced first if a rotation was asked for since it last counted. */
+	private Table<M> table() {
+		Table<M> table = local.get();
+		int current = epoch;
+		if (table.epoch != current) {
+			handedOff.add(table.slots);
+			table.slots = new Slots<>(INITIAL_CAPACITY);
+			table.size = 0;
+			table.epoch = current;
+		}
+		return table;
+	}
+
+	/** Adds one to {@code key}; false, counting nothing, if this thread has not counted the key before. */
+	public boolean increment(long key) {
+		Slots<M> slots = table().slots;
+		int slot = slots.find(key);
+		if (slot < 0) {
+			return false;
+		}
+		slots.counts.setRelease(slot, slots.counts.getPlain(slot) + 1);
+		return true;
+	}
+
+	/** Counts {@code key} once on this thread, for a key {@link #increment} did not know yet. */
+	public void add(long key, M meta) {
+		Table<M> table = table();
+		if (table.size >= maxKeysPerThread) {
+			table.dropped.setRelease(table.dropped.getPlain() + 1);
+			return;
+		}
+		Slots<M> slots = table.slots;
+		if ((table.size + 1) * 2 > slots.keys.length) {
+			slots = slots.grow();
+			// readers still on the old slots see its counts as they were; the new ones are published whole
+			table.slots = slots;
+		}
+		slots.insert(key, meta, 1);
+		table.size++;
+	}
+
+	/** Asks every thread to hand its table to the base and start an empty one on its next count. */
+	public void rotate() {
+		epoch++;
+	}
+
+	/** Same as {@link #collect(Collector, LongPredicate)} with nothing retired. */
+	public void collect(Collector<M> collector) {
+		collect(collector, key -> false);
+	}
+
+	/**
+	 * Hands every count to {@code collector}: a key shows up once per live thread that counted it since
+	 * its last rotation, and once more for the base. Keys {@code retired} accepts are dropped from the
+	 * base and not handed out.
+	 */
+	public synchronized void collect(Collector<M> collector, LongPredicate retired) {
+		List<Slots<M>> folded = drain();
+		Set<Slots<M>> emitted = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Iterator<Table<M>> it = tables.iterator(); it.hasNext(); ) {
+			Table<M> table = it.next();
+			if (table.exited()) {
+				folded.add(table.slots);
+				baseDropped += table.dropped.get();
+				it.remove();
+			} else {
+				Slots<M> slots = table.slots;
+				emit(slots, collector, retired);
+				emitted.add(slots);
+			}
+		}
+		// handed off while the tables were read: what was read already is folded after the base is handed out
+		List<Slots<M>> late = new ArrayList<>();
+		for (Slots<M> slots : drain()) {
+			(emitted.contains(slots) ? late : folded).add(slots);
+		}
+		for (Slots<M> slots : folded) {
+			fold(slots, retired);
+		}
+		prune(retired);
+		emit(base, collector, retired);
+		for (Slots<M> slots : late) {
+			fold(slots, retired);
+		}
+	}
+
+	private List<Slots<M>> drain() {
+		List<Slots<M>> drained = new ArrayList<>();
+		Slots<M> slots;
+		while ((slots = handedOff.poll()) != null) {
+			drained.add(slots);
+		}
+		return drained;
+	}
+
+	private static <M> void emit(Slots<M> slots, Collector<M> collector, LongPredicate retired) {
+		for (int slot = 0; slot < slots.keys.length; slot++) {
+			// the count is stored last, so a non-zero count means key and metadata are in place
+			long count = slots.counts.get(slot);
+			if (count != 0 && !retired.test(slots.keys[slot])) {
+				collector.accept(slots.keys[slot], slots.metas[slot], count);
+			}
+		}
+	}
+
+	/** Adds counts no thread writes to any more to the base. */
+	private void fold(Slots<M> slots, LongPredicate retired) {
+		for (int slot = 0; slot < slots.keys.length; slot++) {
+			long count = slots.counts.get(slot);
+			if (count == 0 || retired.test(slots.keys[slot])) {
+				continue;
+			}
+			int at = base.find(slots.keys[slot]);
+			if (at >= 0) {
+				base.counts.setRelease(at, base.counts.getPlain(at) + count);
+				continue;
+			}
+			if ((baseSize + 1) * 2 > base.keys.length) {
+				base = base.grow();
+			}
+			base.insert(slots.keys[slot], slots.metas[slot], count);
+			baseSize++;
+		}
+	}
+
+	/** Rebuilds the base without the retired keys, if it holds any. */
+	private void prune(LongPredicate retired) {
+		int kept = 0;
+		for (int slot = 0; slot < base.keys.length; slot++) {
+			if (base.counts.getPlain(slot) != 0 && !retired.test(base.keys[slot])) {
+				kept++;
+			}
+		}
+		if (kept == baseSize) {
+			return;
+		}
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < kept * 2) {
+			capacity <<= 1;
+		}
+		Slots<M> pruned = new Slots<>(capacity);
+		for (int slot = 0; slot < base.keys.length; slot++) {
+			long count = base.counts.getPlain(slot);
+			if (count != 0 && !retired.test(base.keys[slot])) {
+				pruned.insert(base.keys[slot], base.metas[slot], count);
+			}
+		}
+		base = pruned;
+		baseSize = kept;
+	}
+
+	/** Redemptions not counted because their thread's table was full. */
+	public synchronized long dropped() {
+		long dropped = baseDropped;
+		for (Table<M> table : tables) {
+			dropped += table.dropped.get();
+		}
+		return dropped;
+	}
+
+	/** Tables not yet folded: live threads, and exited ones until the next {@link #collect}. */
+	public int threads() {
+		return tables.size();
+	}
+
+	/** Keys held across all tables and the base; a key counted on two threads is held more than once. */
+	public synchronized long keys() {
+		long keys = baseSize;
+		for (Table<M> table : tables) {
+			keys += table.size;
+		}
+		return keys;
+	}
+
+	/** Bytes held by the tables' arrays, for footprint reporting; the metadata objects are the caller's. */
+	public synchronized long capacityBytes() {
+		long bytes = (long) base.keys.length * (Long.BYTES * 2 + 4);
+		for (Table<M> table : tables) {
+			bytes += (long) table.slots.keys.length * (Long.BYTES * 2 + 4);
+		}
+		return bytes;
+	}
+
+	private static final class Table<M> {
+
+		volatile Slots<M> slots;
+		// written by the owner thread only
+		volatile int size;
+		int epoch;
+		final AtomicLong dropped = new AtomicLong();
+		// weak, so the table does not keep an exited thread's object alive
+		final WeakReference<Thread> owner;
+
+		Table(int capacity, Thread owner, int epoch) {
+			slots = new Slots<>(capacity);
+			this.owner = new WeakReference<>(owner);
+			this.epoch = epoch;
+		}
+
+		/** True once the owner has terminated; its writes are then visible to the caller. */
+		boolean exited() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	/** Open addressing with linear probing; a zero count marks an empty slot. */
+	private static final class Slots<M> {
+
+		final long[] keys;
+		final M[] metas;
+		final AtomicLongArray counts;
+		final int mask;
+
+		@SuppressWarnings("unchecked")
+		Slots(int capacity) {
+			keys = new long[capacity];
+			metas = (M[]) new Object[capacity];
+			counts = new AtomicLongArray(capacity);
+			mask = capacity - 1;
+		}
+
+		int find(long key) {
+			for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+				if (counts.getPlain(slot) == 0) {
+					return -1;
+				}
+				if (keys[slot] == key) {
+					return slot;
+				}
+			}
+		}
+
+		void insert(long key, M meta, long count) {
+			int slot = mix(key) & mask;
+			while (counts.getPlain(slot) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			metas[slot] = meta;
+			counts.setRelease(slot, count);
+		}
+
+		Slots<M> grow() {
+			Slots<M> grown = new Slots<>(keys.length * 2);
+			for (int slot = 0; slot < keys.length; slot++) {
+				long count = counts.getPlain(slot);
+				if (count != 0) {
+					grown.insert(keys[slot], metas[slot], count);
+				}
+			}
+			return grown;
+		}
+
+		private static int mix(long key) {
+			return IntIntMap.mix((int) (key ^ (key >>> 32)));
+		}
+	}
+}
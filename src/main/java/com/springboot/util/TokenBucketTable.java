@@ -0,0 +1,189 @@
+package com.springboot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Token buckets for millions of int keys, kept in striped open-addressing tables.
+ *
+ * Each stripe is a single {@link AtomicLongArray} holding {@code [key, state]} pairs. A key slot is
+ * claimed with one CAS and the bucket state (last refill time in the high 32 bits, milli-tokens in the
+ * low 32 bits) is updated with another, so acquiring a token never blocks and never allocates.
+ *
+ * A stripe is rebuilt (grown, with idle buckets dropped) when it gets too full or when
+ * {@link #evictIdle} runs. The rebuild is copy-then-publish: an acquire racing with it may land in the
+ * old table and be forgotten, which at worst lets a key spend a token twice around that moment.
+ */
+public final class TokenBucketTable {
+
+	private static final long OCCUPIED = 1L << 32;
+	private static final long TOKEN_MASK = 0xFFFF_FFFFL;
+	private static final int MAX_PROBES = 32;
+
+	private final AtomicReferenceArray<Stripe> stripes;
+	private final int stripeMask;
+	private final int initialStripeCapacity;
+	private final long epochMillis;
+
+	public TokenBucketTable(int stripeCount, int initialStripeCapacity, long nowMillis) {
+		int count = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+		this.stripes = new AtomicReferenceArray<>(count);
+		this.stripeMask = count - 1;
+		this.initialStripeCapacity = Integer.highestOneBit(Math.max(8, initialStripeCapacity - 1) << 1);
+		// keep relative timestamps >= 1 so a zero state always means "fresh bucket"
+		this.epochMillis = nowMillis - 1;
+		for (int i = 0; i < count; i++) {
+			stripes.set(i, new Stripe(this.initialStripeCapacity));
+		}
+	}
+
+	/**
+	 * Takes one token from {@code key}'s bucket, refilling it at {@code perSecond} up to {@code burst}
+	 * first. Returns false when the bucket is empty. A bucket seen for the first time starts full.
+	 */
+	public boolean tryAcquire(int key, int perSecond, int burst, long nowMillis) {
+		int h = IntIntMap.mix(key);
+		int stripeIndex = h & stripeMask;
+		long now = (nowMillis - epochMillis) & TOKEN_MASK;
+		long capacity = Math.min((long) burst * 1000, TOKEN_MASK);
+
+		while (true) {
+			Stripe stripe = stripes.get(stripeIndex);
+			int slot = stripe.slotFor(key, h >>> 16);
+			if (slot < 0) {
+				grow(stripeIndex, stripe, nowMillis, Long.MAX_VALUE, stripe.capacity() * 2);
+				continue;
+			}
+			AtomicLongArray data = stripe.data;
+			long state = data.get(slot + 1);
+			long tokens;
+			if (state == 0) {
+				tokens = capacity;
+			} else {
+				long last = state >>> 32;
+				long elapsed = (now - last) & TOKEN_MASK;
+				tokens = Math.min(capacity, (state & TOKEN_MASK) + elapsed * perSecond);
+			}
+			if (tokens < 1000) {
+				return false;
+			}
+			if (data.compareAndSet(slot + 1, state, (now << 32) | (tokens - 1000))) {
+				if (stripe.size.get() > stripe.resizeThreshold) {
+					grow(stripeIndex, stripe, nowMillis, Long.MAX_VALUE, stripe.capacity() * 2);
+				}
+				return true;
+			}
+		}
+	}
+
+	/** Drops buckets untouched for longer than {@code idleMillis} and shrinks stripes that emptied out. */
+	public void evictIdle(long nowMillis, long idleMillis) {
+		for (int i = 0; i <= stripeMask; i++) {
+			Stripe stripe = stripes.get(i);
+			if (stripe.size.get() > 0) {
+				grow(i, stripe, nowMillis, idleMillis, initialStripeCapacity);
+			}
+		}
+	}
+
+	public long size() {
+		long total = 0;
+		for (int i = 0; i <= stripeMask; i++) {
+			total += stripes.get(i).size.get();
+		}
+		return total;
+	}
+
+	/** Bytes held by the stripe arrays, for footprint reporting. */
+	public long capacityBytes() {
+		long total = 0;
+		for (int i = 0; i <= stripeMask; i++) {
+			total += (long) stripes.get(i).data.length() * Long.BYTES;
+		}
+		return total;
+	}
+
+	private void grow(int stripeIndex, Stripe current, long nowMillis, long idleMillis, int minCapacity) {
+		synchronized (current) {
+			if (stripes.get(stripeIndex) != current) {
+				return; // someone else already rebuilt it
+			}
+			long now = (nowMillis - epochMillis) & TOKEN_MASK;
+			AtomicLongArray data = current.data;
+			int slots = data.length() / 2;
+			int live = 0;
+			for (int s = 0; s < slots; s++) {
+				if (data.get(2 * s) != 0 && !isIdle(data.get(2 * s + 1), now, idleMillis)) {
+					live++;
+				}
+			}
+			int capacity = minCapacity;
+			while (capacity / 2 < live + 1) {
+				capacity <<= 1;
+			}
+			if (live == current.size.get() && capacity == current.capacity()) {
+				return; // nothing idle and already the right size
+			}
+			Stripe rebuilt = new Stripe(capacity);
+			for (int s = 0; s < slots; s++) {
+				long keyWord = data.get(2 * s);
+				long state = data.get(2 * s + 1);
+				if (keyWord != 0 && !isIdle(state, now, idleMillis)) {
+					int key = (int) keyWord;
+					int slot = rebuilt.slotFor(key, IntIntMap.mix(key) >>> 16);
+					rebuilt.data.set(slot + 1, state);
+				}
+			}
+			stripes.set(stripeIndex, rebuilt);
+		}
+	}
+
+	private static boolean isIdle(long state, long now, long idleMillis) {
+		if (idleMillis == Long.MAX_VALUE || state == 0) {
+			return false;
+		}
+		return ((now - (state >>> 32)) & TOKEN_MASK) > idleMillis;
+	}
+
+	private static final class Stripe {
+		final AtomicLongArray data;
+		final int mask;
+		final int resizeThreshold;
+		final AtomicInteger size = new AtomicInteger();
+
+		Stripe(int capacity) {
+			this.data = new AtomicLongArray(capacity * 2);
+			this.mask = capacity - 1;
+			this.resizeThreshold = capacity / 2 + capacity / 4;
+		}
+
+		int capacity() {
+			return mask + 1;
+		}
+
+		/** Index of the key word for {@code key}, claiming a free slot if needed; -1 if none was found. */
+		int slotFor(int key, int hash) {
+			long keyWord = OCCUPIED | (key & TOKEN_MASK);
+			int i = hash & mask;
+			for (int probe = 0; probe < MAX_PROBES; probe++) {
+				int idx = 2 * i;
+				long existing = data.get(idx);
+				if (existing == keyWord) {
+					return idx;
+				}
+				if (existing == 0) {
+					if (data.compareAndSet(idx, 0, keyWord)) {
+						size.incrementAndGet();
+						return idx;
+					}
+					if (data.get(idx) == keyWord) {
+						return idx;
+					}
+				}
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+	}
+}
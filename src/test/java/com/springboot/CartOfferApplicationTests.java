@@ -7,13 +7,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.springboot.controller.OfferRequest;
 import com.springboot.testdata.CartOfferTestDataProvider;
+import com.springboot.testdata.SegmentServiceStandIn;
 import com.springboot.testdata.TestDataConfig;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 
 import java.net.URI;
@@ -36,6 +40,24 @@ public class CartOfferApplicationTests {
             .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
     private static final HttpClient client = HttpClient.newHttpClient();
 
+    // -Dsegment.base-url=http://localhost:1080 runs against the Docker mockserver instead
+    private static final String SEGMENT_BASE_URL = System.getProperty("segment.base-url");
+    private static final SegmentServiceStandIn segmentService =
+            SEGMENT_BASE_URL == null ? SegmentServiceStandIn.mockServerCompatible().start() : null;
+
+    @DynamicPropertySource
+    static void segmentService(DynamicPropertyRegistry registry) {
+        registry.add("pricing.segment.base-url",
+                () -> segmentService == null ? SEGMENT_BASE_URL : segmentService.baseUrl());
+    }
+
+    @AfterAll
+    static void stopSegmentService() {
+        if (segmentService != null) {
+            segmentService.close();
+        }
+    }
+
     @BeforeEach
     void setUp() throws Exception {
         Thread.sleep(1000); // Allow server to start
@@ -0,0 +1,71 @@
+package com.springboot;
+
+import com.springboot.service.OfferCatalog;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The lazy pricing-only mode still loads the catalog directory before serving, and nothing more. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("pricing-only")
+class PricingOnlyProfileTest {
+
+    private static final Path watchDir = catalogDir();
+
+    @Autowired
+    private OfferCatalog offerCatalog;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    private static Path catalogDir() {
+        try {
+            Path dir = Files.createTempDirectory("catalog");
+            Files.writeString(dir.resolve("offers.json"),
+                    "[{\"restaurant_id\":1,\"offer_type\":\"FLATX\",\"offer_value\":10,\"customer_segment\":[\"p1\"]}]");
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void catalog(DynamicPropertyRegistry registry) {
+        registry.add("pricing.catalog.watch-dir", watchDir::toString);
+    }
+
+    @AfterAll
+    static void removeCatalogDir() throws IOException {
+        try (Stream<Path> files = Files.walk(watchDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void loadsTheWatchedCatalogAtStartup() {
+        assertThat(offerCatalog.size()).isEqualTo(1);
+        assertThat(offerCatalog.priceCart(200, 1, "p1")).isEqualTo(190);
+    }
+
+    @Test
+    void leavesTheMemoryReportAndCartSessionsUncreated() {
+        assertThat(beanFactory.containsSingleton("memoryFootprint")).isFalse();
+        assertThat(beanFactory.containsSingleton("cartSessionService")).isFalse();
+    }
+}
@@ -0,0 +1,95 @@
+package com.springboot.batch;
+
+import com.springboot.repository.OfferStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepricingJobTest {
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    private RepricingJob job(int chunkLines) throws Exception {
+        Path offers = Files.writeString(dir.resolve("offers.ndjson"), """
+                {"restaurant_id":1,"offer_type":"FLATX","offer_value":10,"customer_segment":["p1"]}
+                {"restaurant_id":1,"offer_type":"FLAT%","offer_value":10,"customer_segment":["p2"]}
+                """);
+        Path segments = Files.writeString(dir.resolve("segments.csv"), "user_id,segment\n1,p1\n2,p2\n3,p3\n");
+        OfferStore store = RepricingRunner.loadOffers(offers);
+        return new RepricingJob(store, SegmentTable.load(segments), 0, pool, chunkLines);
+    }
+
+    @Test
+    void csvWithHeaderIsPricedInInputOrder() throws Exception {
+        Path input = Files.writeString(dir.resolve("carts.csv"), """
+                user_id, restaurant_id, cart_value
+                1,1,200
+                2,1,200
+                3,1,200
+                not,a,cart
+                9,1,200
+                1,2,200
+                """);
+        Path output = dir.resolve("priced.csv");
+
+        RepricingJob.Summary summary = job(2).run(input, output);
+
+        assertThat(Files.readAllLines(output)).containsExactly(
+                RepricingJob.CSV_HEADER,
+                "200,1,1,p1,190",
+                "200,1,2,p2,180",
+                "200,1,3,p3,200",
+                "200,1,9,,200",
+                "200,2,1,p1,200");
+        assertThat(summary.carts()).isEqualTo(5);
+        assertThat(summary.rejected()).isEqualTo(1);
+        assertThat(summary.discounted()).isEqualTo(2);
+    }
+
+    @Test
+    void ndjsonOutputKeepsOrderAcrossChunksAndLeaves() throws Exception {
+        int carts = 5_000;
+        List<String> lines = new ArrayList<>(carts);
+        for (int i = 0; i < carts; i++) {
+            lines.add("{\"cart_value\":" + (100 + i) + ",\"restaurant_id\":1,\"user_id\":" + (i % 2 + 1) + ",\"order\":" + i + "}");
+        }
+        Path input = Files.write(dir.resolve("carts.ndjson"), lines);
+        Path output = dir.resolve("priced.ndjson");
+
+        RepricingJob.Summary summary = job(1_500).run(input, output);
+
+        List<String> priced = Files.readAllLines(output);
+        assertThat(priced).hasSize(carts);
+        assertThat(priced.get(0)).isEqualTo(
+                "{\"cart_value\":100,\"restaurant_id\":1,\"user_id\":1,\"segment\":\"p1\",\"priced_value\":90}");
+        assertThat(priced.get(4_999)).isEqualTo(
+                "{\"cart_value\":5099,\"restaurant_id\":1,\"user_id\":2,\"segment\":\"p2\",\"priced_value\":4589}");
+        for (int i = 0; i < carts; i++) {
+            assertThat(priced.get(i)).startsWith("{\"cart_value\":" + (100 + i) + ",");
+        }
+        assertThat(summary.carts()).isEqualTo(carts);
+        assertThat(summary.rejected()).isZero();
+    }
+}
@@ -0,0 +1,132 @@
+package com.springboot.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ApplyOfferCodecTest {
+
+    @Test
+    void parsesPlainBodyInAnyFieldOrder() {
+        ApplyOfferRequest request = new ApplyOfferRequest();
+        byte[] body = bytes(" {\n \"user_id\" : 3, \"cart_value\":-200,\"restaurant_id\":1001 } ");
+
+        assertThat(ApplyOfferCodec.parse(body, body.length, request)).isTrue();
+        assertThat(request.getCart_value()).isEqualTo(-200);
+        assertThat(request.getRestaurant_id()).isEqualTo(1001);
+        assertThat(request.getUser_id()).isEqualTo(3);
+    }
+
+    @Test
+    void missingFieldsDefaultToZeroAndUnknownScalarsAreSkipped() {
+        ApplyOfferRequest request = new ApplyOfferRequest();
+        request.setUser_id(42);
+        byte[] body = bytes("{\"cart_value\":200,\"coupon\":null,\"vip\":true}");
+
+        assertThat(ApplyOfferCodec.parse(body, body.length, request)).isTrue();
+        assertThat(request.getCart_value()).isEqualTo(200);
+        assertThat(request.getUser_id()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "[]",
+            "{\"cart_value\":\"200\"}",
+            "{\"cart_value\":1.5}",
+            "{\"cart_value\":2147483648}",
+            "{\"cart_value\":007}",
+            "{\"c\\u0061rt_value\":1}",
+            "{\"meta\":{\"a\":1}}",
+            "{\"cart_value\":1",
+            "{\"cart_value\":1}x"
+    })
+    void leavesAnythingElseToJackson(String json) {
+        byte[] body = bytes(json);
+        assertThat(ApplyOfferCodec.parse(body, body.length, new ApplyOfferRequest())).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 7, 190, -30, 999989, Integer.MAX_VALUE, Integer.MIN_VALUE})
+    void writesSameJsonAsJackson(int cartValue) {
+        byte[] out = new byte[32];
+        int len = ApplyOfferCodec.writeResponse(cartValue, out);
+
+        assertThat(new String(out, 0, len, StandardCharsets.US_ASCII))
+                .isEqualTo("{\"cart_value\":" + cartValue + "}");
+    }
+
+    @Test
+    void readBodyGrowsBufferForLargeBodies() throws Exception {
+        ApplyOfferCodec.Buffers buffers = new ApplyOfferCodec.Buffers();
+        byte[] body = bytes("{\"cart_value\":1" + " ".repeat(2000) + "}");
+
+        ApplyOfferCodec.readBody(new ByteArrayInputStream(body), -1, buffers);
+
+        assertThat(buffers.length).isEqualTo(body.length);
+        assertThat(ApplyOfferCodec.parse(buffers.in, buffers.length, buffers.request)).isTrue();
+        assertThat(buffers.request.getCart_value()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesABodyOverTheLimitWithoutBufferingIt() throws Exception {
+        ApplyOfferCodec.Buffers buffers = new ApplyOfferCodec.Buffers();
+        byte[] small = bytes("{\"cart_value\":1}");
+
+        // the header alone is refused before anything is allocated
+        assertThat(ApplyOfferCodec.readBody(new ByteArrayInputStream(small), 2_000_000_000, buffers)).isFalse();
+        assertThat(buffers.in).hasSize(512);
+
+        // a header that lies low only gets the bytes that actually arrive
+        assertThat(ApplyOfferCodec.readBody(new ByteArrayInputStream(small), 1_000_000, buffers)).isTrue();
+        assertThat(buffers.in.length).isLessThanOrEqualTo(ApplyOfferCodec.MAX_POOLED_BODY);
+        assertThat(buffers.length).isEqualTo(small.length);
+
+        // without a length, growth stops at the limit
+        byte[] huge = new byte[ApplyOfferCodec.MAX_BODY + 1];
+        assertThat(ApplyOfferCodec.readBody(new ByteArrayInputStream(huge), -1, buffers)).isFalse();
+        assertThat(buffers.in).hasSize(ApplyOfferCodec.MAX_BODY);
+
+        byte[] exact = new byte[ApplyOfferCodec.MAX_BODY];
+        assertThat(ApplyOfferCodec.readBody(new ByteArrayInputStream(exact), -1, buffers)).isTrue();
+        assertThat(buffers.length).isEqualTo(ApplyOfferCodec.MAX_BODY);
+    }
+
+    @Test
+    void reportsOnlyTheBufferSetsOfLiveThreads() throws Exception {
+        int before = ApplyOfferCodec.bufferSets();
+        long bytesBefore = ApplyOfferCodec.pooledBytes();
+        CountDownLatch created = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            ApplyOfferCodec.buffers();
+            created.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+        created.await();
+
+        assertThat(ApplyOfferCodec.bufferSets()).isEqualTo(before + 1);
+        assertThat(ApplyOfferCodec.pooledBytes()).isGreaterThan(bytesBefore);
+
+        done.countDown();
+        worker.join();
+
+        assertThat(ApplyOfferCodec.bufferSets()).isEqualTo(before);
+        assertThat(ApplyOfferCodec.pooledBytes()).isEqualTo(bytesBefore);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
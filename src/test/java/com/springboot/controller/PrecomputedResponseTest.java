@@ -0,0 +1,69 @@
+package com.springboot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrecomputedResponseTest {
+
+    private final AtomicLong revision = new AtomicLong();
+    private final AtomicInteger renders = new AtomicInteger();
+    private List<String> data = List.of("a");
+    private final PrecomputedResponse response = new PrecomputedResponse(new ObjectMapper(), revision::get, () -> {
+        renders.incrementAndGet();
+        return data;
+    });
+
+    private static ServletWebRequest get(String ifNoneMatch, MockHttpServletResponse servletResponse) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, servletResponse);
+    }
+
+    @Test
+    void rendersOncePerRevisionAndAnswersMatchingEtagsWith304() {
+        ResponseEntity<byte[]> first = response.respond(get(null, new MockHttpServletResponse()));
+        ResponseEntity<byte[]> second = response.respond(get(null, new MockHttpServletResponse()));
+        String etag = first.getHeaders().getETag();
+
+        assertThat(new String(first.getBody(), StandardCharsets.UTF_8)).isEqualTo("[\"a\"]");
+        assertThat(etag).startsWith("\"").endsWith("\"");
+        assertThat(second.getBody()).isSameAs(first.getBody());
+        assertThat(renders).hasValue(1);
+
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        assertThat(response.respond(get("\"other\", " + etag, notModified))).isNull();
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(notModified.getHeader("ETag")).isEqualTo(etag);
+
+        data = List.of("a", "b");
+        revision.incrementAndGet();
+        ResponseEntity<byte[]> changed = response.respond(get(etag, new MockHttpServletResponse()));
+        assertThat(changed.getStatusCode().value()).isEqualTo(200);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void sameContentKeepsItsEtagAcrossRevisions() {
+        String etag = response.respond(get(null, new MockHttpServletResponse())).getHeaders().getETag();
+        revision.incrementAndGet();
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+
+        assertThat(response.respond(get(etag, notModified))).isNull();
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        assertThat(renders).hasValue(2);
+    }
+}
@@ -0,0 +1,221 @@
+package com.springboot.repository;
+
+import com.springboot.controller.OfferRequest;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OfferStoreTest {
+
+    private static OfferRequest offer(String id, int restaurantId, String type, int value, String... segments) {
+        OfferRequest offer = new OfferRequest(restaurantId, type, value, List.of(segments));
+        offer.setOffer_id(id);
+        return offer;
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void firstMatchingOfferInInsertionOrderWins(boolean offHeap) {
+        OfferStore store = new OfferStore(4, offHeap);
+        store.upsert(offer("a", 1, "FLATX", 10, "p2"));
+        store.upsert(offer("b", 1, "FLAT%", 20, "p1", "p3"));
+        store.upsert(offer("c", 1, "FLATX", 30, "p1"));
+        OfferMatch match = new OfferMatch();
+
+        assertThat(store.match(1, "p1", 0, match)).isTrue();
+        assertThat(match.flat()).isFalse();
+        assertThat(match.value()).isEqualTo(20);
+        assertThat(store.match(1, "p2", 0, match)).isTrue();
+        assertThat(match.flat()).isTrue();
+        assertThat(match.value()).isEqualTo(10);
+        assertThat(store.match(1, "p4", 0, match)).isFalse();
+        assertThat(store.match(2, "p1", 0, match)).isFalse();
+        assertThat(store.match(1, null, 0, match)).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void upsertOverwritesInPlaceAndRemoveFreesTheRow(boolean offHeap) {
+        OfferStore store = new OfferStore(4, offHeap);
+        assertThat(store.upsert(offer("a", 1, "FLATX", 10, "p1")).created()).isTrue();
+        store.upsert(offer("b", 1, "FLATX", 20, "p1"));
+        assertThat(store.upsert(offer("a", 1, "FLATX", 15, "p1")).created()).isFalse();
+        OfferMatch match = new OfferMatch();
+
+        assertThat(store.match(1, "p1", 0, match)).isTrue();
+        assertThat(match.value()).isEqualTo(15);
+        assertThat(store.size()).isEqualTo(2);
+
+        assertThat(store.remove("a")).isTrue();
+        assertThat(store.remove("a")).isFalse();
+        assertThat(store.match(1, "p1", 0, match)).isTrue();
+        assertThat(match.value()).isEqualTo(20);
+
+        // moving an offer to another restaurant takes it out of the old chain
+        store.upsert(offer("b", 2, "FLATX", 20, "p1"));
+        assertThat(store.match(1, "p1", 0, match)).isFalse();
+        assertThat(store.match(2, "p1", 0, match)).isTrue();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void growsPastInitialCapacityAndSurvivesChurn(boolean offHeap) {
+        OfferStore store = new OfferStore(16, offHeap);
+        for (int i = 0; i < 5000; i++) {
+            store.upsert(offer("offer-" + i, i % 50, "FLATX", i, "p" + (i % 100)));
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            assertThat(store.remove("offer-" + i)).isTrue();
+        }
+        assertThat(store.size()).isEqualTo(2500);
+
+        OfferMatch match = new OfferMatch();
+        for (int i = 1; i < 100; i += 2) {
+            assertThat(store.match(i % 50, "p" + i, 0, match)).as("segment p%d", i).isTrue();
+            assertThat(match.value()).isEqualTo(i);
+        }
+        assertThat(store.match(0, "p0", 0, match)).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void matchesSegmentsBeyondTheBitmask(boolean offHeap) {
+        OfferStore store = new OfferStore(16, offHeap);
+        List<String> segments = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            segments.add("s" + i);
+        }
+        OfferRequest wide = new OfferRequest(1, "FLATX", 5, segments);
+        wide.setOffer_id("wide");
+        store.upsert(wide);
+        store.upsert(offer("late", 1, "FLATX", 7, "s99"));
+        OfferMatch match = new OfferMatch();
+
+        assertThat(store.match(1, "s0", 0, match)).isTrue();
+        assertThat(store.match(1, "s99", 0, match)).isTrue();
+        assertThat(match.value()).isEqualTo(5);
+        assertThat(store.match(1, "s100", 0, match)).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void honoursValidityWindowAndStaleExpiryHandles(boolean offHeap) {
+        OfferStore store = new OfferStore(4, offHeap);
+        OfferRequest windowed = offer("w", 1, "FLATX", 10, "p1");
+        windowed.setValid_from(100L);
+        windowed.setValid_until(200L);
+        long handle = store.upsert(windowed).handle();
+        OfferMatch match = new OfferMatch();
+
+        assertThat(store.match(1, "p1", 99, match)).isFalse();
+        assertThat(store.match(1, "p1", 100, match)).isTrue();
+        assertThat(store.match(1, "p1", 200, match)).isFalse();
+        assertThat(store.removeIfExpired(handle, 150)).isFalse();
+
+        // the row is reused by a new offer; the old handle must not evict it
+        store.remove("w");
+        OfferRequest reused = offer("x", 1, "FLATX", 10, "p1");
+        reused.setValid_until(200L);
+        long reusedHandle = store.upsert(reused).handle();
+        assertThat(reusedHandle).isNotEqualTo(handle);
+        assertThat(store.removeIfExpired(handle, 500)).isFalse();
+        assertThat(store.removeIfExpired(reusedHandle, 500)).isTrue();
+        assertThat(store.size()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void readsOffersBackInInsertionOrder(boolean offHeap) {
+        OfferStore store = new OfferStore(4, offHeap);
+        store.upsert(offer("a", 1, "FLATX", 10, "p1"));
+        OfferRequest windowed = offer("7c9e6679-7425-40de-944b-e07fc1f90ae7", 2, "FLAT%", 20, "p2", "p3");
+        windowed.setValid_until(500L);
+        store.upsert(windowed);
+        store.upsert(offer("c", 3, "FLATX", 30));
+        store.remove("a");
+        // reuses the freed row but comes last
+        store.upsert(offer("d", 4, "FLATX", 40, "p1"));
+
+        List<OfferRequest> offers = store.offers();
+        assertThat(offers).extracting(OfferRequest::getOffer_id)
+                .containsExactly("7c9e6679-7425-40de-944b-e07fc1f90ae7", "c", "d");
+        assertThat(offers.get(0)).isEqualTo(windowed);
+        assertThat(offers.get(1).getCustomer_segment()).isEmpty();
+        assertThat(offers.get(2).getValid_from()).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void copiesOneRestaurantInInsertionOrder(boolean offHeap) {
+        OfferStore store = new OfferStore(16, offHeap);
+        store.upsert(offer("a", 1, "FLATX", 10, "p1"));
+        store.upsert(offer("b", 2, "FLATX", 20, "p1"));
+        store.upsert(offer("c", 1, "FLATX", 30, "p1"));
+        // moved to restaurant 1, where it joins the end of the chain but was inserted before c
+        store.upsert(offer("b", 1, "FLATX", 20, "p1"));
+
+        assertThat(store.offersOf(1)).extracting(OfferRequest::getOffer_id).containsExactly("a", "b", "c");
+        assertThat(store.offersOf(2)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void copiesACatalogLargerThanOneSliceInInsertionOrder(boolean offHeap) {
+        OfferStore store = new OfferStore(16, offHeap);
+        for (int i = 0; i < 10_000; i++) {
+            store.upsert(offer("o" + i, i % 10, "FLATX", i, "p1"));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            store.remove("o" + i);
+        }
+        for (int i = 10_000; i < 12_000; i++) {
+            store.upsert(offer("o" + i, i % 10, "FLATX", i, "p1"));
+        }
+
+        List<OfferRequest> offers = store.offers();
+        assertThat(offers).hasSize(7_000);
+        assertThat(offers).extracting(OfferRequest::getOffer_value).isSorted();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void scansPageByPageWithFiltersAndStableOrder(boolean offHeap) {
+        OfferStore store = new OfferStore(16, offHeap);
+        for (int i = 0; i < 10_000; i++) {
+            store.upsert(offer("o" + i, i % 10, i % 2 == 0 ? "FLATX" : "FLAT%", i, i % 3 == 0 ? "p1" : "p2"));
+        }
+
+        List<OfferRequest> page = new ArrayList<>();
+        List<String> seen = new ArrayList<>();
+        int row = 0;
+        boolean deleted = false;
+        while (row >= 0) {
+            page.clear();
+            row = store.scan(new OfferStore.Query(null, "p1", "FLATX"), row, 300, page);
+            page.forEach(offer -> seen.add(offer.getOffer_id()));
+            if (!deleted) {
+                // offers removed mid-listing must not shift the ones still to come
+                store.remove("o0");
+                store.remove("o9000");
+                store.upsert(offer("late", 0, "FLATX", 1, "p1"));
+                deleted = true;
+            }
+        }
+        // 1667 offers with i % 6 == 0, less o9000 deleted before it was reached, plus "late" in its freed row
+        assertThat(seen).hasSize(1667);
+        assertThat(seen).doesNotHaveDuplicates().contains("o0", "o6", "o9996", "late").doesNotContain("o9000", "o3");
+
+        page.clear();
+        assertThat(store.scan(new OfferStore.Query(7, null, null), 0, 2, page)).isPositive();
+        assertThat(page).extracting(OfferRequest::getOffer_id).containsExactly("o7", "o17");
+        page.clear();
+        assertThat(store.scan(new OfferStore.Query(7, "p9", null), 0, 10, page)).isEqualTo(-1);
+        assertThat(store.scan(new OfferStore.Query(null, null, "BOGO"), 0, 10, page)).isEqualTo(-1);
+        assertThat(page).isEmpty();
+    }
+}
@@ -0,0 +1,232 @@
+package com.springboot.service;
+
+import com.springboot.controller.CartPriceUpdate;
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.CartSessionProperty;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.property.SegmentProperty;
+import com.springboot.testdata.SegmentServiceStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartSessionServiceTest {
+
+    private SegmentServiceStandIn segmentService;
+    private SegmentClient segmentClient;
+    private OfferCatalog catalog;
+    private CartSessionService sessions;
+
+    @BeforeEach
+    void start() throws Exception {
+        segmentService = SegmentServiceStandIn.builder().users(10).start();
+        SegmentProperty segmentProperty = new SegmentProperty();
+        segmentProperty.setBaseUrl(segmentService.baseUrl());
+        segmentClient = new SegmentClient();
+        ReflectionTestUtils.setField(segmentClient, "segmentProperty", segmentProperty);
+        segmentClient.init();
+
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        catalog.init();
+        catalog.replaceAll(List.of(new OfferRequest(1, "FLATX", 10, List.of(segmentService.segmentOf(1)))));
+
+        CartSessionProperty property = new CartSessionProperty();
+        property.setIdleTimeoutSeconds(0);
+        property.setPushThreads(1);
+        // the tests sweep by hand
+        property.setSweepMillis(60_000);
+        sessions = new CartSessionService();
+        ReflectionTestUtils.setField(sessions, "cartSessionProperty", property);
+        ReflectionTestUtils.setField(sessions, "segmentClient", segmentClient);
+        ReflectionTestUtils.setField(sessions, "offerCatalog", catalog);
+        sessions.init();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        sessions.destroy();
+        catalog.destroy();
+        segmentClient.destroy();
+        segmentService.close();
+    }
+
+    /** Records updates; the first push blocks until released, like a client that stopped reading. */
+    private static class SlowSink implements CartSessionService.Sink {
+
+        final List<CartPriceUpdate> updates = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstPushStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void push(CartPriceUpdate update) {
+            firstPushStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updates.add(update);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        CartPriceUpdate awaitUpdate(int cartValue) throws InterruptedException {
+            for (int i = 0; i < 200; i++) {
+                if (!updates.isEmpty() && updates.get(updates.size() - 1).getCart_value() == cartValue) {
+                    break;
+                }
+                Thread.sleep(10);
+            }
+            return updates.get(updates.size() - 1);
+        }
+    }
+
+    @Test
+    void conflatesDeltasWhileTheClientIsNotReading() throws Exception {
+        CartSessionService.Session session = sessions.open(1, 1, 200);
+        assertThat(sessions.price(session)).isEqualTo(190);
+
+        SlowSink sink = new SlowSink();
+        sessions.attach(session, sink);
+        assertThat(sink.firstPushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 100; i++) {
+            sessions.applyDelta(session, 10);
+        }
+        sink.release.countDown();
+
+        assertThat(sink.awaitUpdate(1200).getOffer_cart_value()).isEqualTo(1190);
+        // the opening price, then one push for all hundred deltas
+        assertThat(sink.updates).extracting(CartPriceUpdate::getSeq).containsExactly(1L, 2L);
+        assertThat(sessions.stats()).containsEntry("deltas", 100L).containsEntry("pushes", 2L);
+        assertThat((Long) sessions.stats().get("updates_conflated")).isGreaterThanOrEqualTo(99L);
+    }
+
+    @Test
+    void aClientThatStopsReadingDoesNotHoldUpOtherSessions() throws Exception {
+        CartSessionProperty property = (CartSessionProperty) ReflectionTestUtils.getField(sessions, "cartSessionProperty");
+        property.setPushTimeoutMillis(200);
+        CartSessionService.Session stuck = sessions.open(1, 1, 200);
+        CartSessionService.Session other = sessions.open(1, 1, 300);
+        CountDownLatch closed = new CountDownLatch(1);
+        SlowSink blocking = new SlowSink() {
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        SlowSink reading = new SlowSink();
+        reading.release.countDown();
+        try {
+            // one push thread, held by the stuck stream's write until it times out
+            sessions.attach(stuck, blocking);
+            assertThat(blocking.firstPushStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            sessions.attach(other, reading);
+            sessions.applyDelta(other, 100);
+
+            assertThat(reading.awaitUpdate(400).getOffer_cart_value()).isEqualTo(390);
+            assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(sessions.stats()).containsEntry("push_timeouts", 1L);
+
+            // detached: further deltas are not written to the stuck stream
+            sessions.applyDelta(stuck, 10);
+            Thread.sleep(100);
+            assertThat(sessions.stats()).containsEntry("push_timeouts", 1L);
+        } finally {
+            blocking.release.countDown();
+        }
+    }
+
+    @Test
+    void aPushThatFindsNoWriterFreeClosesItsStream() throws Exception {
+        CartSessionProperty property = (CartSessionProperty) ReflectionTestUtils.getField(sessions, "cartSessionProperty");
+        property.setPushTimeoutMillis(100);
+        property.setWriteThreads(1);
+        sessions.destroy();
+        sessions.init();
+        CartSessionService.Session stuck = sessions.open(1, 1, 200);
+        CartSessionService.Session other = sessions.open(1, 1, 300);
+        CountDownLatch stuckWriteStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a socket write does not give up when interrupted
+        CartSessionService.Sink blocking = new CartSessionService.Sink() {
+            @Override
+            public void push(CartPriceUpdate update) {
+                stuckWriteStarted.countDown();
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // keep blocking
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CountDownLatch otherClosed = new CountDownLatch(1);
+        SlowSink reading = new SlowSink() {
+            @Override
+            public void close() {
+                otherClosed.countDown();
+            }
+        };
+        reading.release.countDown();
+        try {
+            sessions.attach(stuck, blocking);
+            assertThat(stuckWriteStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            sessions.attach(other, reading);
+
+            assertThat(otherClosed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(reading.updates).isEmpty();
+            assertThat(sessions.stats()).containsEntry("push_timeouts", 1L).containsEntry("push_rejections", 1L);
+            ThreadPoolExecutor writers = (ThreadPoolExecutor) ReflectionTestUtils.getField(sessions, "writers");
+            assertThat(writers.getLargestPoolSize()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void pushesCatalogChangesAndExpiresSessionsWithoutAStream() throws Exception {
+        CartSessionService.Session streaming = sessions.open(1, 1, 200);
+        CartSessionService.Session idle = sessions.open(2, 1, 200);
+        SlowSink sink = new SlowSink();
+        sink.release.countDown();
+        sessions.attach(streaming, sink);
+        assertThat(sink.awaitUpdate(200).getOffer_cart_value()).isEqualTo(190);
+
+        catalog.replaceAll(List.of(new OfferRequest(1, "FLAT%", 10, List.of(segmentService.segmentOf(1)))));
+        sessions.sweep();
+        for (int i = 0; i < 200 && sink.updates.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(sink.updates).extracting(CartPriceUpdate::getOffer_cart_value).containsExactly(190, 180);
+
+        assertThat(sessions.session(idle.id())).isNull();
+        assertThat(sessions.session(streaming.id())).isSameAs(streaming);
+        assertThat(sessions.stats()).containsEntry("sessions_expired", 1L).containsEntry("sessions_open", 1);
+    }
+
+    @Test
+    void rejectsDeltasThatWouldEmptyTheCartBelowZero() {
+        CartSessionService.Session session = sessions.open(1, 1, 50);
+        assertThatThrownBy(() -> sessions.applyDelta(session, -60)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sessions.applyDelta(session, -50)).isZero();
+        assertThat(session.cartValue()).isZero();
+    }
+}
@@ -0,0 +1,56 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.JfrProperty;
+import com.springboot.property.OfferCatalogProperty;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecordingServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsPricingEventsIntoADownloadableFile() throws Exception {
+        JfrProperty property = new JfrProperty();
+        property.setDirectory(dir.toString());
+        property.setSettings("default");
+        FlightRecordingService recordings = new FlightRecordingService();
+        ReflectionTestUtils.setField(recordings, "jfrProperty", property);
+        OfferCatalog catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        catalog.init();
+
+        assertThat(recordings.stop()).isNull();
+        assertThat(recordings.start(30L)).isTrue();
+        assertThat(recordings.start(30L)).isFalse();
+        catalog.upsert(new OfferRequest(1, "FLATX", 10, List.of("p1")), null);
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(190);
+        Path file = recordings.stop();
+        catalog.destroy();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent priced = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.springboot.PriceCart"))
+                .findFirst().orElseThrow();
+        assertThat(priced.getInt("restaurantId")).isEqualTo(1);
+        assertThat(priced.getBoolean("matched")).isTrue();
+        assertThat(priced.getInt("pricedValue")).isEqualTo(190);
+        assertThat(events).anyMatch(e -> e.getEventType().getName().equals("com.springboot.OfferIngest")
+                && "CREATED".equals(e.getString("outcome")));
+        assertThat(recordings.stats()).containsEntry("state", "NONE");
+
+        Files.delete(file);
+        recordings.destroy();
+    }
+}
@@ -0,0 +1,229 @@
+package com.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.InvalidationProperty;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.property.SegmentProperty;
+import com.springboot.testdata.SegmentServiceStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidationBusTest {
+
+    /** One instance: its own catalog and segment cache, and the bus between them and the peers. */
+    private record Node(OfferCatalog catalog, SegmentClient segments, InvalidationBus bus) {
+
+        void upsert(int restaurantId) {
+            OfferRequest offer = new OfferRequest(restaurantId, "FLATX", 10, List.of("p1"));
+            catalog.upsert(offer, null);
+            bus.publishOfferUpsert(offer);
+        }
+
+        long stat(String name) {
+            return (Long) bus.stats().get(name);
+        }
+
+        int cachedUsers() {
+            return (Integer) segments.stats().get("cached_users");
+        }
+    }
+
+    private final Set<Long> dropOnce = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dropAlways = ConcurrentHashMap.newKeySet();
+    private SegmentServiceStandIn segmentService;
+    private DatagramSocket relay;
+    private Thread relayThread;
+    private Node a;
+    private Node b;
+
+    @BeforeEach
+    void start() throws Exception {
+        segmentService = SegmentServiceStandIn.builder().users(10).start();
+        relay = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        int portA = freePort();
+        int portB = freePort();
+        // each node's only peer is the relay, which passes a's messages on to b, losing the ones the test
+        // asks it to, and b's back to a
+        a = node(portA, relay.getLocalPort());
+        b = node(portB, relay.getLocalPort());
+        InetSocketAddress toA = new InetSocketAddress(InetAddress.getLoopbackAddress(), portA);
+        InetSocketAddress toB = new InetSocketAddress(InetAddress.getLoopbackAddress(), portB);
+        relayThread = new Thread(() -> {
+            byte[] buffer = new byte[65507];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!relay.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    relay.receive(packet);
+                    if (packet.getPort() != portA) {
+                        relay.send(new DatagramPacket(buffer, packet.getLength(), toA));
+                        continue;
+                    }
+                    InvalidationBus.Message message = InvalidationBus.decode(buffer, packet.getLength());
+                    boolean data = message.type() != InvalidationBus.Type.HEARTBEAT;
+                    if (data && (dropAlways.contains(message.seq()) || dropOnce.remove(message.seq()))) {
+                        continue;
+                    }
+                    relay.send(new DatagramPacket(buffer, packet.getLength(), toB));
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        });
+        relayThread.start();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        for (Node node : List.of(a, b)) {
+            node.bus().destroy();
+            node.segments().destroy();
+            node.catalog().destroy();
+        }
+        relay.close();
+        relayThread.join();
+        segmentService.close();
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private Node node(int port, int peerPort) throws Exception {
+        OfferCatalog catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        catalog.init();
+        SegmentProperty segmentProperty = new SegmentProperty();
+        segmentProperty.setBaseUrl(segmentService.baseUrl());
+        segmentProperty.getCache().setEnabled(true);
+        SegmentClient segments = new SegmentClient();
+        ReflectionTestUtils.setField(segments, "segmentProperty", segmentProperty);
+        segments.init();
+
+        InvalidationProperty property = new InvalidationProperty();
+        property.setEnabled(true);
+        property.setBindAddress("127.0.0.1");
+        property.setPort(port);
+        property.setPeers(List.of("127.0.0.1:" + peerPort));
+        property.setHeartbeatMillis(50);
+        property.setGapTimeoutMillis(500);
+        InvalidationBus bus = new InvalidationBus();
+        ReflectionTestUtils.setField(bus, "invalidationProperty", property);
+        ReflectionTestUtils.setField(bus, "offerCatalog", catalog);
+        ReflectionTestUtils.setField(bus, "segmentClient", segments);
+        ReflectionTestUtils.setField(bus, "objectMapper", new ObjectMapper());
+        bus.init();
+        return new Node(catalog, segments, bus);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(25);
+        }
+    }
+
+    @Test
+    void replaysWritesInOrderAndRecoversLostMessages() throws Exception {
+        // b has heard a's heartbeat, so it knows where a's sequence starts
+        await(() -> (Integer) b.bus().stats().get("senders") == 1);
+        dropOnce.add(3L);
+        for (int restaurant = 1; restaurant <= 5; restaurant++) {
+            a.upsert(restaurant);
+        }
+        await(() -> b.catalog().size() == 5);
+        assertThat(b.catalog().priceCart(200, 3, "p1")).isEqualTo(190);
+
+        // lost, then overtaken by a delete of the same offer: it must not come back when resent
+        dropOnce.add(6L);
+        a.upsert(6);
+        String offerId = OfferCatalog.deriveOfferId(new OfferRequest(6, "FLATX", 10, List.of("p1")));
+        a.catalog().delete(offerId);
+        a.bus().publishOfferDelete(offerId);
+        await(() -> b.stat("delivered") == 7);
+        assertThat(b.catalog().size()).isEqualTo(5);
+
+        b.segments().segmentOf(7, null);
+        b.segments().segmentOf(8, null);
+        a.bus().publishSegmentInvalidation(7);
+        await(() -> b.cachedUsers() == 1);
+        assertThat(b.cachedUsers()).isEqualTo(1);
+
+        assertThat(b.stat("gaps")).isEqualTo(2);
+        assertThat(b.stat("lost")).isZero();
+        assertThat(a.stat("retransmits")).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void givesUpOnMessagesThatCannotBeResentAndDropsCachedSegments() throws Exception {
+        await(() -> (Integer) b.bus().stats().get("senders") == 1);
+        b.segments().segmentOf(7, null);
+        dropAlways.add(2L);
+        // the last one is only noticed through the next heartbeat
+        dropOnce.add(4L);
+        for (int restaurant = 1; restaurant <= 4; restaurant++) {
+            a.upsert(restaurant);
+        }
+        await(() -> b.catalog().size() == 3);
+
+        assertThat(b.catalog().priceCart(200, 2, "p1")).isEqualTo(200);
+        assertThat(b.catalog().priceCart(200, 4, "p1")).isEqualTo(190);
+        assertThat(b.stat("lost")).isEqualTo(1);
+        assertThat(b.stat("gaps_given_up")).isEqualTo(1);
+        assertThat(b.cachedUsers()).isZero();
+    }
+
+    @Test
+    void ignoresPacketsFromAddressesThatAreNotPeers() throws Exception {
+        await(() -> (Integer) b.bus().stats().get("senders") == 1);
+        byte[] offer = new ObjectMapper().writeValueAsBytes(new OfferRequest(9, "FLAT%", 100, List.of("p1")));
+        byte[] forged = InvalidationBus.encode(new InvalidationBus.Message(InvalidationBus.Type.OFFER_UPSERT, 42L, 1, offer));
+        byte[] nack = InvalidationBus.encode(new InvalidationBus.Message(InvalidationBus.Type.NACK, 42L, 0,
+                ByteBuffer.allocate(16).putLong(1).putLong(Long.MAX_VALUE).array()));
+        try (DatagramSocket stranger = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            stranger.send(new DatagramPacket(forged, forged.length, b.bus().localAddress()));
+            stranger.send(new DatagramPacket(nack, nack.length, a.bus().localAddress()));
+        }
+        await(() -> b.stat("unknown_sources") == 1 && a.stat("unknown_sources") == 1);
+
+        assertThat(b.stat("unknown_sources")).isEqualTo(1);
+        assertThat(a.stat("unknown_sources")).isEqualTo(1);
+        assertThat(b.catalog().size()).isZero();
+        assertThat(a.stat("retransmits")).isZero();
+    }
+
+    @Test
+    void resendsABoundedNumberOfMessagesPerNack() throws Exception {
+        await(() -> (Integer) b.bus().stats().get("senders") == 1);
+        for (int restaurant = 1; restaurant <= 100; restaurant++) {
+            a.upsert(restaurant);
+        }
+        await(() -> b.catalog().size() == 100);
+
+        // from the relay, which a trusts
+        byte[] nack = InvalidationBus.encode(new InvalidationBus.Message(InvalidationBus.Type.NACK, 42L, 0,
+                ByteBuffer.allocate(16).putLong(1).putLong(100).array()));
+        relay.send(new DatagramPacket(nack, nack.length, a.bus().localAddress()));
+        await(() -> b.stat("duplicates") == 64);
+        Thread.sleep(100);
+
+        assertThat(a.stat("retransmits")).isEqualTo(64);
+        assertThat(b.stat("duplicates")).isEqualTo(64);
+    }
+}
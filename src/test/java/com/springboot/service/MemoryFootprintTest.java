@@ -0,0 +1,105 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.FootprintProperty;
+import com.springboot.property.OfferCatalogProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryFootprintTest {
+
+    private OfferCatalog catalog;
+    private MemoryFootprint footprint;
+    private final AtomicLong bufferBytes = new AtomicLong(1_000);
+
+    @BeforeEach
+    void start() {
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        catalog.init();
+        FootprintProperty property = new FootprintProperty();
+        property.setWindowSamples(2);
+        // sampled by the test, the built-in sources are left out
+        footprint = new MemoryFootprint();
+        ReflectionTestUtils.setField(footprint, "footprintProperty", property);
+        ReflectionTestUtils.setField(footprint, "offerCatalog", catalog);
+        footprint.register("buffers", () -> new MemoryFootprint.Usage(2, bufferBytes.get()));
+    }
+
+    @AfterEach
+    void stop() {
+        catalog.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> structures(Map<String, Object> report) {
+        return (Map<String, Map<String, Object>>) report.get("structures");
+    }
+
+    private static Map<String, Object> structure(Map<String, Object> report, String name) {
+        return structures(report).get(name);
+    }
+
+    private void upsert(int fromRestaurant, int toRestaurant) {
+        for (int restaurant = fromRestaurant; restaurant < toRestaurant; restaurant++) {
+            catalog.upsert(new OfferRequest(restaurant, "FLATX", 10, List.of("p1")), null);
+        }
+    }
+
+    @Test
+    void reportsEveryStructureWithItsEntries() {
+        upsert(0, 100);
+
+        Map<String, Object> report = footprint.report(0);
+
+        assertThat(structures(report).keySet())
+                .containsExactly("offer_store", "offer_indexes", "idempotency_keys", "buffers");
+        assertThat(structure(report, "offer_store")).containsEntry("entries", 100L);
+        assertThat((Long) structure(report, "offer_store").get("bytes")).isPositive();
+        assertThat(structure(report, "offer_indexes")).containsEntry("entries", 100L);
+        assertThat(structure(report, "buffers")).containsEntry("bytes", 1_000L);
+        long total = (Long) report.get("estimated_total_bytes");
+        assertThat(total).isEqualTo(structures(report).values().stream().mapToLong(row -> (Long) row.get("bytes")).sum());
+        // no samples yet
+        assertThat(structure(report, "buffers")).containsEntry("bytes_per_minute", 0L);
+        assertThat(report).containsEntry("growth_window_seconds", 0L);
+    }
+
+    @Test
+    void measuresGrowthPerMinuteOverTheWindow() {
+        upsert(0, 10);
+        footprint.sample(0);
+        bufferBytes.set(2_000);
+        footprint.sample(60_000);
+        bufferBytes.set(4_000);
+        upsert(10, 5_000);
+
+        Map<String, Object> report = footprint.report(120_000);
+        assertThat(report).containsEntry("growth_window_seconds", 120L);
+        assertThat(structure(report, "buffers")).containsEntry("bytes_per_minute", 1_500L);
+        assertThat((Long) structure(report, "offer_store").get("bytes_per_minute")).isPositive();
+
+        // the oldest sample leaves the window
+        footprint.sample(120_000);
+        report = footprint.report(180_000);
+        assertThat(report).containsEntry("growth_window_seconds", 120L);
+        assertThat(structure(report, "buffers")).containsEntry("bytes_per_minute", 1_000L);
+    }
+
+    @Test
+    void aStructureAddedLaterHasNoGrowthUntilItIsSampled() {
+        footprint.sample(0);
+        footprint.register("late", () -> new MemoryFootprint.Usage(1, 50_000));
+
+        Map<String, Object> report = footprint.report(60_000);
+        assertThat(structure(report, "late")).containsEntry("bytes", 50_000L).containsEntry("bytes_per_minute", 0L);
+    }
+}
@@ -0,0 +1,125 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.OfferCatalogProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OfferCatalogTest {
+
+    private OfferCatalog catalog;
+
+    @BeforeEach
+    void start() {
+        OfferCatalogProperty property = new OfferCatalogProperty();
+        property.setExpiryTickMillis(10);
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", property);
+        catalog.init();
+    }
+
+    @AfterEach
+    void stop() {
+        catalog.destroy();
+    }
+
+    private static OfferRequest offer(long validUntil) {
+        OfferRequest offer = new OfferRequest(1, "FLATX", 10, List.of("p1"));
+        offer.setValid_until(validUntil);
+        return offer;
+    }
+
+    /** As counted by the expiry ticker once it has seen every write so far. */
+    private int scheduledExpiries() throws InterruptedException {
+        Thread.sleep(100);
+        return (Integer) catalog.stats().get("scheduled_expiries");
+    }
+
+    @Test
+    void reSendingAnOfferDoesNotScheduleItsExpiryAgain() throws Exception {
+        long inAYear = System.currentTimeMillis() + 365L * 24 * 3600 * 1000;
+        for (int i = 0; i < 1_000; i++) {
+            catalog.upsert(offer(inAYear), null);
+        }
+        assertThat(scheduledExpiries()).isEqualTo(1);
+
+        // a new window replaces the old one, and dropping the window drops it from the wheel
+        for (int i = 0; i < 1_000; i++) {
+            catalog.upsert(offer(inAYear + i * 1000L), null);
+        }
+        assertThat(scheduledExpiries()).isEqualTo(1);
+        OfferRequest unbounded = new OfferRequest(1, "FLATX", 10, List.of("p1"));
+        catalog.upsert(unbounded, null);
+        assertThat(scheduledExpiries()).isZero();
+        assertThat(catalog.size()).isEqualTo(1);
+    }
+
+    @Test
+    void aNewValueWithoutAnIdAddsAnOfferBehindTheFirst() {
+        OfferRequest first = new OfferRequest(1, "FLATX", 10, List.of("p1", "p2"));
+        assertThat(catalog.upsert(first, null)).isEqualTo(OfferCatalog.Outcome.CREATED);
+        assertThat(catalog.upsert(new OfferRequest(1, "FLATX", 10, List.of("p2", "p1")), null))
+                .isEqualTo(OfferCatalog.Outcome.UPDATED);
+        assertThat(catalog.upsert(new OfferRequest(1, "FLATX", 20, List.of("p2", "p1")), null))
+                .isEqualTo(OfferCatalog.Outcome.CREATED);
+
+        assertThat(catalog.size()).isEqualTo(2);
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(190);
+
+        // the new value applies once the first offer is gone
+        assertThat(catalog.delete(first.getOffer_id())).isTrue();
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(180);
+    }
+
+    @Test
+    void reloadingTheCatalogReplacesItsExpiries() throws Exception {
+        long inAYear = System.currentTimeMillis() + 365L * 24 * 3600 * 1000;
+        for (int reload = 0; reload < 50; reload++) {
+            List<OfferRequest> offers = new ArrayList<>();
+            // offers without a window ahead of them, so the handles do not line up with the last store's
+            for (int restaurant = 0; restaurant < reload; restaurant++) {
+                offers.add(new OfferRequest(10_000 + restaurant, "FLATX", 10, List.of("p1")));
+            }
+            for (int restaurant = 0; restaurant < 20; restaurant++) {
+                OfferRequest offer = offer(inAYear + reload);
+                offer.setRestaurant_id(restaurant * 100 + reload);
+                offers.add(offer);
+            }
+            catalog.replaceAll(offers);
+        }
+
+        assertThat(scheduledExpiries()).isEqualTo(20);
+    }
+
+    @Test
+    void aReloadForgetsIdempotencyKeys() {
+        assertThat(catalog.upsert(new OfferRequest(1, "FLATX", 10, List.of("p1")), "key-1"))
+                .isEqualTo(OfferCatalog.Outcome.CREATED);
+        catalog.replaceAll(List.of(new OfferRequest(2, "FLATX", 10, List.of("p1"))));
+
+        // the keyed offer is gone with the old catalog, so the retry writes it again
+        assertThat(catalog.upsert(new OfferRequest(1, "FLATX", 10, List.of("p1")), "key-1"))
+                .isEqualTo(OfferCatalog.Outcome.CREATED);
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(190);
+    }
+
+    @Test
+    void deletedOffersLeaveNoExpiryBehind() throws Exception {
+        long inAYear = System.currentTimeMillis() + 365L * 24 * 3600 * 1000;
+        for (int restaurant = 0; restaurant < 200; restaurant++) {
+            OfferRequest offer = offer(inAYear);
+            offer.setRestaurant_id(restaurant);
+            catalog.upsert(offer, null);
+            assertThat(catalog.delete(offer.getOffer_id())).isTrue();
+        }
+
+        assertThat(scheduledExpiries()).isZero();
+    }
+}
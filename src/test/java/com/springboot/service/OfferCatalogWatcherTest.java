@@ -0,0 +1,142 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.repository.OfferStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OfferCatalogWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private OfferCatalog catalog;
+    private OfferCatalogWatcher watcher;
+
+    private void start() throws Exception {
+        OfferCatalogProperty property = new OfferCatalogProperty();
+        property.setWatchDir(dir.toString());
+        property.setReloadSettleMillis(50);
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", property);
+        catalog.init();
+        watcher = new OfferCatalogWatcher();
+        ReflectionTestUtils.setField(watcher, "offerCatalogProperty", property);
+        ReflectionTestUtils.setField(watcher, "offerCatalog", catalog);
+        watcher.init();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        watcher.destroy();
+        catalog.destroy();
+    }
+
+    /** Writes next to the directory and moves the file in, the way catalogs are meant to be deployed. */
+    private void deploy(String name, String content) throws Exception {
+        Path staged = Files.writeString(dir.resolveSibling(dir.getFileName() + "-" + name), content);
+        Files.move(staged, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitVersion(long version) throws InterruptedException {
+        for (int i = 0; i < 200 && catalog.version() < version; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(catalog.version()).isEqualTo(version);
+    }
+
+    @Test
+    void loadsTheExistingCatalogAndEachDroppedFile() throws Exception {
+        Files.writeString(dir.resolve("v1.ndjson"),
+                "{\"restaurant_id\":1,\"offer_type\":\"FLATX\",\"offer_value\":10,\"customer_segment\":[\"p1\"]}\n");
+        start();
+        assertThat(catalog.version()).isEqualTo(1);
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(190);
+
+        deploy("v2.json", "[{\"restaurant_id\":1,\"offer_type\":\"FLAT%\",\"offer_value\":10,\"customer_segment\":[\"p2\"]}]");
+        awaitVersion(2);
+        assertThat(catalog.priceCart(200, 1, "p1")).isEqualTo(200);
+        assertThat(catalog.priceCart(200, 1, "p2")).isEqualTo(180);
+        assertThat(watcher.stats()).containsEntry("reloads", 2L).containsEntry("last_reload_file", "v2.json");
+
+        // a broken file is reported and the catalog stays as it was
+        deploy("v3.json", "[{\"restaurant_id\":");
+        for (int i = 0; i < 200 && (long) watcher.stats().get("reload_failures") == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(watcher.stats()).containsEntry("reload_failures", 1L);
+        assertThat(catalog.version()).isEqualTo(2);
+        assertThat(catalog.priceCart(200, 1, "p2")).isEqualTo(180);
+    }
+
+    @Test
+    void pricingNeverSeesAPartlyLoadedCatalog() throws Exception {
+        start();
+        List<OfferRequest> flat = new ArrayList<>();
+        List<OfferRequest> percent = new ArrayList<>();
+        for (int restaurant = 1; restaurant <= 500; restaurant++) {
+            flat.add(new OfferRequest(restaurant, "FLATX", 10, List.of("p1")));
+            percent.add(new OfferRequest(restaurant, "FLAT%", 10, List.of("p1")));
+        }
+        catalog.replaceAll(flat);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger partial = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                // a half-built catalog would have no offer yet for the restaurants inserted last
+                for (int restaurant = 1; restaurant <= 500; restaurant += 499) {
+                    int priced = catalog.priceCart(200, restaurant, "p1");
+                    if (priced != 190 && priced != 180) {
+                        partial.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 50; i++) {
+            catalog.replaceAll(i % 2 == 0 ? percent : flat);
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(partial).hasValue(0);
+        assertThat(catalog.version()).isEqualTo(51);
+        assertThat(catalog.size()).isEqualTo(500);
+    }
+
+    @Test
+    void cursorsExpireWhenTheCatalogIsReplaced() throws Exception {
+        start();
+        List<OfferRequest> offers = new ArrayList<>();
+        for (int restaurant = 1; restaurant <= 5; restaurant++) {
+            offers.add(new OfferRequest(restaurant, "FLATX", 10, List.of("p1")));
+        }
+        catalog.replaceAll(offers);
+        OfferStore.Query all = new OfferStore.Query(null, null, null);
+
+        OfferCatalog.Page first = catalog.query(all, null, 3);
+        assertThat(first.offers()).hasSize(3);
+        OfferCatalog.Page second = catalog.query(all, first.nextCursor(), 3);
+        assertThat(second.offers()).hasSize(2);
+        assertThat(second.nextCursor()).isNull();
+
+        catalog.replaceAll(offers);
+        assertThat(catalog.query(all, first.nextCursor(), 3).cursorExpired()).isTrue();
+        assertThatThrownBy(() -> catalog.query(all, "not-a-cursor", 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package com.springboot.service;
+
+import com.springboot.property.DeadlineProperty;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PricingDeadlinesTest {
+
+    private static PricingDeadlines deadlines() {
+        PricingDeadlines deadlines = new PricingDeadlines();
+        ReflectionTestUtils.setField(deadlines, "deadlineProperty", new DeadlineProperty());
+        return deadlines;
+    }
+
+    private static MockHttpServletRequest request(String header, Object value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (header != null) {
+            request.addHeader(header, value);
+        }
+        return request;
+    }
+
+    @Test
+    void readsEitherHeaderLessTheReserve() {
+        PricingDeadlines deadlines = deadlines();
+        MockHttpServletRequest timeout = request("X-Request-Timeout-Ms", "50");
+        long before = System.nanoTime();
+        long relative = deadlines.deadlineNanos(timeout);
+        long after = System.nanoTime();
+        // 50ms budget, 2ms of it kept for the answer
+        assertThat(relative).isBetween(before + 48_000_000L, after + 48_000_000L);
+        assertThat(deadlines.expired(relative)).isFalse();
+
+        MockHttpServletRequest deadline = request("X-Request-Deadline", System.currentTimeMillis() + 50);
+        long absolute = deadlines.deadlineNanos(deadline);
+        assertThat(absolute - System.nanoTime()).isBetween(30_000_000L, 48_000_000L);
+
+        assertThat(deadlines.deadlineNanos(request(null, null))).isEqualTo(PricingDeadlines.NO_DEADLINE);
+        assertThat(deadlines.expired(PricingDeadlines.NO_DEADLINE)).isFalse();
+        assertThat(deadlines.stats()).containsEntry("requests_with_deadline", 2L).containsEntry("arrived_expired", 0L);
+    }
+
+    @Test
+    void countsRequestsThatArriveExpiredAndIgnoresBadHeaders() {
+        PricingDeadlines deadlines = deadlines();
+        assertThat(deadlines.expired(deadlines.deadlineNanos(request("X-Request-Timeout-Ms", "0")))).isTrue();
+        assertThat(deadlines.expired(deadlines.deadlineNanos(
+                request("X-Request-Deadline", System.currentTimeMillis() - 1000)))).isTrue();
+        // less budget than the reserve: no time to do anything, but it did not arrive expired
+        assertThat(deadlines.expired(deadlines.deadlineNanos(request("X-Request-Timeout-Ms", "1")))).isTrue();
+        assertThat(deadlines.deadlineNanos(request("X-Request-Timeout-Ms", "soon"))).isEqualTo(PricingDeadlines.NO_DEADLINE);
+
+        assertThat(deadlines.stats()).containsEntry("requests_with_deadline", 3L).containsEntry("arrived_expired", 2L)
+                .containsEntry("invalid_headers", 1L);
+    }
+
+    @Test
+    void treatsDeadlinesFarInThePastAsExpiredWithoutOverflowing() {
+        PricingDeadlines deadlines = deadlines();
+        for (MockHttpServletRequest request : new MockHttpServletRequest[] {
+                request("X-Request-Timeout-Ms", Long.MIN_VALUE),
+                request("X-Request-Deadline", Long.MIN_VALUE),
+                request("X-Request-Deadline", -1)}) {
+            long deadline = deadlines.deadlineNanos(request);
+            assertThat(deadline).isNotEqualTo(PricingDeadlines.NO_DEADLINE);
+            assertThat(deadlines.expired(deadline)).isTrue();
+            // just behind now, not wrapped around to the far future
+            assertThat(System.nanoTime() - deadline).isBetween(0L, 1_000_000_000L);
+        }
+        assertThat(deadlines.stats()).containsEntry("arrived_expired", 3L);
+    }
+}
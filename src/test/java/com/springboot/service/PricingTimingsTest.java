@@ -0,0 +1,25 @@
+package com.springboot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PricingTimingsTest {
+
+    @Test
+    void rendersServerTimingInMilliseconds() {
+        PricingTimings timings = new PricingTimings();
+        timings.reset(0);
+        timings.segment(1_204_000, PricingTimings.SegmentSource.SERVICE);
+        timings.hedged();
+        timings.match(4_500, true);
+        timings.discount(900);
+
+        assertThat(timings.serverTiming(12_345_678_000L)).isEqualTo(
+                "segment;dur=1.204;desc=\"miss hedged\", match;dur=0.004;desc=\"hit\", discount;dur=0.000, total;dur=12345.678");
+
+        timings.reset(0);
+        timings.segment(20_000, PricingTimings.SegmentSource.CACHE);
+        assertThat(timings.serverTiming(50_000)).startsWith("segment;dur=0.020;desc=\"hit\", match;dur=0.000;desc=\"none\"");
+    }
+}
@@ -0,0 +1,153 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.controller.RedemptionCount;
+import com.springboot.controller.RedemptionReport;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.property.RedemptionProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedemptionAnalyticsTest {
+
+    private OfferCatalog catalog;
+    private RedemptionAnalytics redemptions;
+
+    @BeforeEach
+    void start() {
+        RedemptionProperty property = new RedemptionProperty();
+        property.setEnabled(true);
+        // aggregated by the test
+        property.setAggregateMillis(3_600_000);
+        redemptions = new RedemptionAnalytics();
+        ReflectionTestUtils.setField(redemptions, "redemptionProperty", property);
+        redemptions.init();
+
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        ReflectionTestUtils.setField(catalog, "redemptions", redemptions);
+        catalog.init();
+        catalog.upsert(new OfferRequest(1, "FLATX", 10, List.of("p1", "p2")), null);
+        catalog.upsert(new OfferRequest(2, "FLAT%", 10, List.of("p1")), null);
+    }
+
+    @AfterEach
+    void stop() {
+        redemptions.destroy();
+        catalog.destroy();
+    }
+
+    private static RedemptionCount row(RedemptionReport report, int restaurantId, String segment) {
+        return report.getOffers().stream()
+                .filter(r -> r.getRestaurant_id() == restaurantId && r.getSegment().equals(segment))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void countsAppliedOffersPerRestaurantAndSegment() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(catalog.redeem(200, 1, "p1", null)).isEqualTo(190);
+        }
+        Thread other = new Thread(() -> {
+            catalog.redeem(200, 1, "p1", null);
+            catalog.redeem(200, 1, "p2", null);
+        });
+        other.start();
+        other.join();
+        assertThat(catalog.redeem(200, 2, "p1", null)).isEqualTo(180);
+        // no offer applied, nothing counted
+        assertThat(catalog.redeem(200, 2, "p3", null)).isEqualTo(200);
+        // plain pricing is not a redemption
+        catalog.priceCart(200, 1, "p1");
+
+        redemptions.aggregate();
+        RedemptionReport report = redemptions.report(null, null, 100);
+
+        assertThat(report.getTotal_redemptions()).isEqualTo(8);
+        assertThat(report.getOffers()).hasSize(3);
+        RedemptionCount top = report.getOffers().get(0);
+        assertThat(top.getRestaurant_id()).isEqualTo(1);
+        assertThat(top.getSegment()).isEqualTo("p1");
+        assertThat(top.getRedemptions()).isEqualTo(6);
+        assertThat(top.getOffer_id())
+                .isEqualTo(OfferCatalog.deriveOfferId(new OfferRequest(1, "FLATX", 10, List.of("p1", "p2"))));
+        assertThat(row(report, 1, "p2").getRedemptions()).isEqualTo(1);
+
+        RedemptionReport restaurant2 = redemptions.report(2, null, 100);
+        assertThat(restaurant2.getTotal_redemptions()).isEqualTo(1);
+        assertThat(restaurant2.getOffers()).singleElement().satisfies(r -> assertThat(r.getSegment()).isEqualTo("p1"));
+        assertThat(redemptions.report(null, "p1", 1).getOffers()).hasSize(1);
+    }
+
+    @Test
+    void reportsWhatChangedSinceTheLastAggregation() {
+        catalog.redeem(200, 1, "p1", null);
+        catalog.redeem(200, 1, "p1", null);
+        redemptions.aggregate();
+        catalog.redeem(200, 1, "p1", null);
+        catalog.redeem(200, 2, "p1", null);
+        redemptions.aggregate();
+
+        RedemptionReport report = redemptions.report(null, null, 100);
+        assertThat(row(report, 1, "p1").getRedemptions()).isEqualTo(3);
+        assertThat(row(report, 1, "p1").getLast_interval()).isEqualTo(1);
+        assertThat(row(report, 2, "p1").getLast_interval()).isEqualTo(1);
+        assertThat(report.getInterval_millis()).isGreaterThanOrEqualTo(0);
+        assertThat(redemptions.all()).hasSize(2);
+    }
+
+    @Test
+    void dropsTheCountsOfOffersThatLeftTheCatalog() {
+        catalog.redeem(200, 1, "p1", null);
+        catalog.redeem(200, 2, "p1", null);
+        redemptions.aggregate();
+        assertThat(redemptions.all()).hasSize(2);
+
+        assertThat(catalog.delete(OfferCatalog.deriveOfferId(new OfferRequest(1, "FLATX", 10, List.of("p1", "p2")))))
+                .isTrue();
+        redemptions.aggregate();
+        assertThat(redemptions.all()).singleElement().satisfies(r -> assertThat(r.getRestaurant_id()).isEqualTo(2));
+
+        // the same offer loaded again by a swap is a new offer, counted from zero
+        catalog.replaceAll(List.of(new OfferRequest(2, "FLAT%", 10, List.of("p1"))));
+        catalog.redeem(200, 2, "p1", null);
+        redemptions.aggregate();
+        assertThat(redemptions.all()).singleElement().satisfies(r -> assertThat(r.getRedemptions()).isEqualTo(1));
+    }
+
+    @Test
+    void aThreadPastItsKeyLimitCountsAgainAfterAnAggregation() {
+        RedemptionProperty property = (RedemptionProperty) ReflectionTestUtils.getField(redemptions, "redemptionProperty");
+        redemptions.destroy();
+        property.setMaxKeysPerThread(1);
+        redemptions.init();
+
+        catalog.redeem(200, 1, "p1", null);
+        catalog.redeem(200, 2, "p1", null);
+        redemptions.aggregate();
+        assertThat(redemptions.stats()).containsEntry("dropped", 1L);
+        catalog.redeem(200, 2, "p1", null);
+        redemptions.aggregate();
+
+        assertThat(row(redemptions.report(null, null, 10), 2, "p1").getRedemptions()).isEqualTo(1);
+        assertThat(row(redemptions.report(null, null, 10), 1, "p1").getRedemptions()).isEqualTo(1);
+    }
+
+    @Test
+    void countsNothingWhenDisabled() {
+        RedemptionAnalytics disabled = new RedemptionAnalytics();
+        ReflectionTestUtils.setField(disabled, "redemptionProperty", new RedemptionProperty());
+        disabled.init();
+        ReflectionTestUtils.setField(catalog, "redemptions", disabled);
+
+        assertThat(catalog.redeem(200, 1, "p1", null)).isEqualTo(190);
+        assertThat(disabled.stats()).containsEntry("enabled", false);
+        assertThat(disabled.report(null, null, 10).getOffers()).isEmpty();
+    }
+}
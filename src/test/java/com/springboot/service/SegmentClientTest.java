@@ -0,0 +1,134 @@
+package com.springboot.service;
+
+import com.springboot.property.SegmentProperty;
+import com.springboot.testdata.SegmentServiceStandIn;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentClientTest {
+
+    private static SegmentClient client(String baseUrl, boolean hedging) {
+        SegmentProperty property = new SegmentProperty();
+        property.setBaseUrl(baseUrl);
+        property.setRequestTimeoutMillis(2000);
+        property.getHedge().setEnabled(hedging);
+        property.getHedge().setMinSamples(50);
+        property.getHedge().setBudgetPercent(20);
+        // the test drives re-estimation itself
+        property.getHedge().setRefreshMillis(60_000);
+        SegmentClient client = new SegmentClient();
+        ReflectionTestUtils.setField(client, "segmentProperty", property);
+        client.init();
+        return client;
+    }
+
+    @Test
+    void fetchesSegmentsAndDegradesToEmptyOnErrors() {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.mockServerCompatible().start()) {
+            SegmentClient client = client(service.baseUrl(), false);
+            assertThat(client.fetch(2).getSegment()).isEqualTo("p2");
+            assertThat(client.fetch(500).getSegment()).isNull();
+            assertThat(client.fetch(404).getSegment()).isNull();
+            assertThat(client.stats()).containsEntry("calls", 2L + 1).containsEntry("failures", 2L);
+            client.destroy();
+        }
+    }
+
+    @Test
+    void hedgesCallsStuckInTheTail() {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.builder().users(1000).latency(2, 0.1).start()) {
+            SegmentClient client = client(service.baseUrl(), true);
+            for (int user = 1; user <= 100; user++) {
+                assertThat(client.fetch(user).getSegment()).isEqualTo(service.segmentOf(user));
+            }
+            client.refreshHedgeDelay();
+
+            service.slowdown(0.1, 500);
+            int slowCalls = 0;
+            for (int user = 1; user <= 100; user++) {
+                long start = System.nanoTime();
+                assertThat(client.fetch(user).getSegment()).isEqualTo(service.segmentOf(user));
+                if (System.nanoTime() - start > 400_000_000L) {
+                    slowCalls++;
+                }
+            }
+
+            Map<String, Object> stats = client.stats();
+            assertThat((Long) stats.get("hedged")).isPositive();
+            assertThat((Long) stats.get("hedge_wins")).isPositive();
+            // about ten calls hit the slowdown; only those whose hedge was slow as well should show it
+            assertThat(slowCalls).isLessThanOrEqualTo(4);
+            client.destroy();
+        }
+    }
+
+    @Test
+    void servesStaleSegmentsWhileRefreshingInTheBackground() throws Exception {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.builder().users(100).start()) {
+            SegmentProperty property = new SegmentProperty();
+            property.setBaseUrl(service.baseUrl());
+            property.getCache().setEnabled(true);
+            property.getCache().setRefreshAfterSeconds(1);
+            property.getCache().setTtlSeconds(60);
+            property.getCache().setRefreshRetryMillis(60_000);
+            SegmentClient client = new SegmentClient();
+            ReflectionTestUtils.setField(client, "segmentProperty", property);
+            client.init();
+            String segment = service.segmentOf(5);
+
+            assertThat(client.fetch(5).getSegment()).isEqualTo(segment);
+            Thread.sleep(1100);
+            // the service is slow now; the stale entry answers at once and the refresh pays the wait
+            service.latency(300, 0);
+            long start = System.nanoTime();
+            assertThat(client.fetch(5).getSegment()).isEqualTo(segment);
+            assertThat(System.nanoTime() - start).isLessThan(200_000_000L);
+            awaitStat(client, "refreshes", 1L);
+            assertThat(client.fetch(5).getSegment()).isEqualTo(segment);
+            assertThat(client.stats()).containsEntry("cache_stale_hits", 1L).containsEntry("cache_hits", 1L)
+                    .containsEntry("cache_misses", 1L);
+
+            // refreshes failing: the old segment is served until the ttl, with one refresh per retry period
+            service.latency(0, 0);
+            service.errorRate(1.0);
+            Thread.sleep(1100);
+            assertThat(client.fetch(5).getSegment()).isEqualTo(segment);
+            awaitStat(client, "refresh_failures", 1L);
+            assertThat(client.fetch(5).getSegment()).isEqualTo(segment);
+            assertThat(client.stats()).containsEntry("refresh_failures", 1L);
+            client.destroy();
+        }
+    }
+
+    @Test
+    void givesUpOnTheServiceAtTheCallersDeadline() {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.builder().users(10).latency(300, 0).start()) {
+            SegmentClient client = client(service.baseUrl(), false);
+            assertThat(client.segmentOf(3, null, PricingDeadlines.NO_DEADLINE)).isEqualTo(service.segmentOf(3));
+            long start = System.nanoTime();
+            assertThat(client.segmentOf(1, null, start + 50_000_000L)).isNull();
+            // well before the service would have answered
+            assertThat(System.nanoTime() - start).isBetween(40_000_000L, 250_000_000L);
+
+            // already out of time: the service is not called at all
+            long requests = service.requests();
+            assertThat(client.segmentOf(2, null, System.nanoTime() - 1)).isNull();
+            assertThat(service.requests()).isEqualTo(requests);
+
+            assertThat(client.stats()).containsEntry("deadline_shortened", 1L).containsEntry("deadline_skipped", 1L)
+                    .containsEntry("calls", 2L);
+            client.destroy();
+        }
+    }
+
+    private static void awaitStat(SegmentClient client, String name, long value) throws InterruptedException {
+        for (int i = 0; i < 100 && !client.stats().get(name).equals(value); i++) {
+            Thread.sleep(20);
+        }
+        assertThat(client.stats()).containsEntry(name, value);
+    }
+}
@@ -0,0 +1,137 @@
+package com.springboot.service;
+
+import com.springboot.controller.OfferRequest;
+import com.springboot.property.OfferCatalogProperty;
+import com.springboot.property.ShadowProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShadowPricingTest {
+
+    private OfferCatalog catalog;
+    private ShadowPricing shadow;
+
+    @BeforeEach
+    void start() {
+        catalog = new OfferCatalog();
+        ReflectionTestUtils.setField(catalog, "offerCatalogProperty", new OfferCatalogProperty());
+        catalog.init();
+        for (int restaurant = 1; restaurant <= 3; restaurant++) {
+            catalog.upsert(new OfferRequest(restaurant, restaurant == 2 ? "FLAT%" : "FLATX", 10, List.of("p1")), null);
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        if (shadow != null) {
+            shadow.destroy();
+        }
+        catalog.destroy();
+    }
+
+    private void shadow(String candidate, Map<String, PricingEngine> engines, int queue) {
+        ShadowProperty property = new ShadowProperty();
+        property.setEnabled(true);
+        property.setCandidate(candidate);
+        property.setSampleRate(1.0);
+        property.setQueue(queue);
+        shadow = new ShadowPricing();
+        ReflectionTestUtils.setField(shadow, "shadowProperty", property);
+        ReflectionTestUtils.setField(shadow, "offerCatalog", catalog);
+        ReflectionTestUtils.setField(shadow, "engines", engines);
+        shadow.init();
+    }
+
+    private long stat(String name) {
+        return (Long) shadow.stats().get(name);
+    }
+
+    private void awaitCompared(long count) throws InterruptedException {
+        for (int i = 0; i < 200 && stat("compared") + stat("candidate_errors") < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void theScanEngineAgreesWithTheCatalog() throws Exception {
+        ScanPricingEngine scan = new ScanPricingEngine();
+        ReflectionTestUtils.setField(scan, "offerCatalog", catalog);
+        shadow("scan", Map.of("scan", scan, "offerCatalog", catalog), 1024);
+
+        for (int i = 0; i < 300; i++) {
+            int restaurant = 1 + i % 4;
+            assertThat(shadow.priceCart(100 + i, restaurant, i % 5 == 0 ? "p2" : "p1", null))
+                    .isEqualTo(catalog.priceCart(100 + i, restaurant, i % 5 == 0 ? "p2" : "p1"));
+        }
+        awaitCompared(300);
+
+        assertThat(stat("compared")).isEqualTo(300);
+        assertThat(stat("mismatches")).isZero();
+        assertThat(stat("mirrored")).isEqualTo(300);
+    }
+
+    @Test
+    void recordsMismatchesWithoutChangingTheAnswer() throws Exception {
+        // gets percentages wrong by rounding up
+        PricingEngine candidate = (cartValue, restaurantId, segment) -> restaurantId == 2 && "p1".equals(segment)
+                ? (int) Math.ceil(cartValue * 0.9) : catalog.priceCart(cartValue, restaurantId, segment);
+        shadow("rounding", Map.of("rounding", candidate), 1024);
+
+        assertThat(shadow.priceCart(105, 2, "p1", null)).isEqualTo(94);
+        assertThat(shadow.priceCart(105, 1, "p1", null)).isEqualTo(95);
+        assertThat(shadow.priceCart(100, 2, "p1", null)).isEqualTo(90);
+        awaitCompared(3);
+
+        Map<String, Object> stats = shadow.stats();
+        assertThat(stats).containsEntry("compared", 3L).containsEntry("mismatches", 1L);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> recent = (List<Map<String, Object>>) stats.get("recent_mismatches");
+        assertThat(recent).singleElement()
+                .satisfies(m -> assertThat(m).containsEntry("primary", 94).containsEntry("candidate", 95));
+
+        shadow.reset();
+        assertThat(stat("mismatches")).isZero();
+    }
+
+    @Test
+    void dropsMirroredCallsInsteadOfWaitingForASlowCandidate() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PricingEngine stuck = (cartValue, restaurantId, segment) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return cartValue;
+        };
+        shadow("stuck", Map.of("stuck", stuck), 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertThat(shadow.priceCart(200, 1, "p1", null)).isEqualTo(190);
+        }
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+        // one running, one queued
+        assertThat(stat("mirrored")).isEqualTo(2);
+        assertThat(stat("dropped")).isEqualTo(8);
+        release.countDown();
+        awaitCompared(2);
+        assertThat(stat("mismatches")).isEqualTo(2);
+    }
+
+    @Test
+    void refusesAnUnknownCandidate() {
+        assertThatThrownBy(() -> shadow("missing", Map.of("offerCatalog", catalog), 1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("missing");
+    }
+}
@@ -0,0 +1,195 @@
+package com.springboot.stress;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.controller.OfferRequest;
+import com.springboot.testdata.SegmentServiceStandIn;
+import com.springboot.testdata.TestDataConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers offer ingestion and apply_offer from many threads at once and checks every price against a
+ * sequential model of the catalog.
+ *
+ * Each restaurant has one offer, rewritten by a single writer with versions 1, 2, 3, ...: version v
+ * takes {@code v} off the cart, for p1 users always and for p2 users only when v is even. A price
+ * returned while writes are in flight must then be the model's price at some version between
+ * <ul>
+ *   <li>the newest version acknowledged to its writer, or already seen by another completed call,
+ *       when the call started, and</li>
+ *   <li>the newest version sent by the time the call returned,</li>
+ * </ul>
+ * which is what a linearizable catalog guarantees. Sizes scale with {@code -Dstress.seconds},
+ * {@code -Dstress.readers}, {@code -Dstress.writers} and {@code -Dstress.restaurants}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OfferConcurrencyStressTest {
+
+    private static final int CART = 1_000_000;
+    private static final int USERS = 1000;
+    private static final long SECONDS = Long.getLong("stress.seconds", 3);
+    private static final int READERS = Integer.getInteger("stress.readers", 16);
+    private static final int WRITERS = Integer.getInteger("stress.writers", 4);
+    private static final int RESTAURANTS = Integer.getInteger("stress.restaurants", 32);
+
+    private static final SegmentServiceStandIn segmentService =
+            SegmentServiceStandIn.builder().users(USERS).seed(41).start();
+
+    @DynamicPropertySource
+    static void segmentService(DynamicPropertyRegistry registry) {
+        registry.add("pricing.segment.base-url", segmentService::baseUrl);
+    }
+
+    @AfterAll
+    static void stopSegmentService() {
+        segmentService.close();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final int[] restaurants = new int[RESTAURANTS];
+    // per restaurant: newest version sent, acknowledged, and seen by a completed apply_offer
+    private final AtomicIntegerArray issued = new AtomicIntegerArray(RESTAURANTS);
+    private final AtomicIntegerArray acked = new AtomicIntegerArray(RESTAURANTS);
+    private final AtomicIntegerArray observed = new AtomicIntegerArray(RESTAURANTS);
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+    static int modelPrice(int version, String segment, int cart) {
+        boolean covered = "p1".equals(segment) || ("p2".equals(segment) && version % 2 == 0);
+        return version == 0 || !covered ? cart : cart - version;
+    }
+
+    @Test
+    void concurrentIngestionAndPricingMatchTheSequentialModel() throws Exception {
+        for (int i = 0; i < RESTAURANTS; i++) {
+            restaurants[i] = TestDataConfig.generateUniqueRestaurantId();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            workers.add(pool.submit(() -> write(writer, deadline)));
+        }
+        for (int r = 0; r < READERS; r++) {
+            workers.add(pool.submit(() -> read(deadline)));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+
+        System.out.printf("stress: %d writes (%.0f/s), %d apply_offer calls (%.0f/s), %d writers, %d readers%n",
+                writes.sum(), writes.sum() / (double) SECONDS, reads.sum(), reads.sum() / (double) SECONDS,
+                WRITERS, READERS);
+        assertThat(violations).as("prices outside the sequential model").isEmpty();
+        assertThat(writes.sum()).isPositive();
+        assertThat(reads.sum()).isPositive();
+
+        // quiescent: every restaurant prices at exactly its last version
+        for (int i = 0; i < RESTAURANTS; i++) {
+            int user = userIn("p1");
+            assertThat(applyOffer(restaurants[i], user)).isEqualTo(modelPrice(acked.get(i), "p1", CART));
+        }
+    }
+
+    private Object write(int writer, long deadline) throws Exception {
+        while (System.nanoTime() < deadline) {
+            for (int i = writer; i < RESTAURANTS; i += WRITERS) {
+                int version = issued.get(i) + 1;
+                issued.set(i, version);
+                OfferRequest offer = new OfferRequest(restaurants[i], "FLATX", version,
+                        version % 2 == 0 ? List.of("p1", "p2") : List.of("p1"));
+                offer.setOffer_id("stress-" + restaurants[i]);
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(url("/api/v1/offer"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(offer)))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    violations.add("offer write " + version + " for " + restaurants[i] + " got " + response.statusCode());
+                }
+                acked.set(i, version);
+                writes.increment();
+            }
+        }
+        return null;
+    }
+
+    private Object read(long deadline) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int i = random.nextInt(RESTAURANTS);
+            int user = 1 + random.nextInt(USERS);
+            String segment = segmentService.segmentOf(user);
+            int low = Math.max(acked.get(i), observed.get(i));
+            int price = applyOffer(restaurants[i], user);
+            int high = issued.get(i);
+            reads.increment();
+
+            int version = -1;
+            for (int v = low; v <= high && version < 0; v++) {
+                if (modelPrice(v, segment, CART) == price) {
+                    version = v;
+                }
+            }
+            if (version < 0) {
+                violations.add("restaurant " + restaurants[i] + " user " + user + " (" + segment + "): price " + price
+                        + " matches no version in [" + low + ", " + high + "]");
+            } else if (price != CART) {
+                // the price identifies the version exactly; later calls must not see an older one
+                observed.accumulateAndGet(i, CART - price, Math::max);
+            }
+        }
+        return null;
+    }
+
+    private int applyOffer(int restaurantId, int userId) throws Exception {
+        String body = "{\"cart_value\":" + CART + ",\"restaurant_id\":" + restaurantId + ",\"user_id\":" + userId + "}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(url("/api/v1/cart/apply_offer"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readTree(response.body()).get("cart_value").asInt();
+    }
+
+    private static int userIn(String segment) {
+        for (int user = 1; user <= USERS; user++) {
+            if (segment.equals(segmentService.segmentOf(user))) {
+                return user;
+            }
+        }
+        throw new IllegalStateException("no user in " + segment);
+    }
+
+    private URI url(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,287 @@
+package com.springboot.testdata;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process replacement for the mockserver segment service, serving {@code GET /api/v1/user_segment}.
+ *
+ * Users 1..{@code users} get a segment drawn from a weighted distribution (deterministic for a given
+ * seed); explicit overrides win over the distribution and can also be canned error responses. Latency
+ * is log-normal around a median, and an error rate and slowdowns can be injected, also while running.
+ * Requests are served on virtual threads, so injected latency does not limit throughput.
+ */
+public final class SegmentServiceStandIn implements AutoCloseable {
+
+    static {
+        // without it small responses sit out the client's delayed ACK, about 40ms each
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    public record Canned(int status, String body, long delayMillis) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[][] segmentBodies;
+    private final String[] segmentNames;
+    private final byte[] userSegments;
+    private final Map<Integer, Canned> overrides;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    private volatile double medianMillis;
+    private volatile double sigma;
+    private volatile double errorRate;
+    private volatile double slowdownRate;
+    private volatile long slowdownMillis;
+
+    private SegmentServiceStandIn(Builder builder) throws IOException {
+        segmentNames = builder.weights.keySet().toArray(new String[0]);
+        segmentBodies = new byte[segmentNames.length][];
+        for (int i = 0; i < segmentNames.length; i++) {
+            segmentBodies[i] = ("{\"segment\": \"" + segmentNames[i] + "\"}").getBytes(StandardCharsets.UTF_8);
+        }
+        userSegments = generate(builder);
+        overrides = new HashMap<>(builder.overrides);
+        medianMillis = builder.medianMillis;
+        sigma = builder.sigma;
+        errorRate = builder.errorRate;
+        slowdownRate = builder.slowdownRate;
+        slowdownMillis = builder.slowdownMillis;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/v1/user_segment", this::handle);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Same answers as {@code mockserver/initializerJson.json}: users 1-3 in p1-p3, the rest canned errors. */
+    public static Builder mockServerCompatible() {
+        return builder()
+                .users(3)
+                .override(1, new Canned(200, "{\"segment\": \"p1\"}", 0))
+                .override(2, new Canned(200, "{\"segment\": \"p2\"}", 0))
+                .override(3, new Canned(200, "{\"segment\": \"p3\"}", 0))
+                .override(404, new Canned(404, "{\"error\": \"User not found\", \"message\": \"User segment not available for user_id: 404\"}", 0))
+                .override(500, new Canned(500, "{\"error\": \"Internal Server Error\", \"message\": \"User segment service temporarily unavailable\"}", 0))
+                .override(999, new Canned(503, "{\"error\": \"Service Timeout\", \"message\": \"User segment service response timeout\"}", 5000))
+                .override(0, new Canned(400, "{\"error\": \"Invalid User ID\", \"message\": \"User ID must be a positive integer\"}", 0))
+                .override(-1, new Canned(400, "{\"error\": \"Invalid User ID\", \"message\": \"User ID cannot be negative\"}", 0))
+                .override(4, new Canned(422, "{\"error\": \"Segment Not Assigned\", \"message\": \"User exists but no segment assigned\"}", 0));
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /** Segment the distribution gave {@code userId}, or null outside 1..users. Ignores overrides. */
+    public String segmentOf(int userId) {
+        if (userId < 1 || userId > userSegments.length) {
+            return null;
+        }
+        return segmentNames[userSegments[userId - 1]];
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    public void latency(double medianMillis, double sigma) {
+        this.medianMillis = medianMillis;
+        this.sigma = sigma;
+    }
+
+    public void errorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /** Adds {@code extraMillis} to a {@code rate} fraction of requests; rate 0 turns it off. */
+    public void slowdown(double rate, long extraMillis) {
+        this.slowdownRate = rate;
+        this.slowdownMillis = extraMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Integer userId = userId(exchange.getRequestURI().getRawQuery());
+            Canned canned = userId == null ? null : overrides.get(userId);
+
+            long delayMillis = canned == null ? 0 : canned.delayMillis();
+            if (medianMillis > 0) {
+                delayMillis += (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+            if (slowdownRate > 0 && random.nextDouble() < slowdownRate) {
+                delayMillis += slowdownMillis;
+            }
+            if (delayMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            }
+
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                injectedErrors.increment();
+                respond(exchange, 500, "{\"error\": \"Injected failure\"}".getBytes(StandardCharsets.UTF_8));
+            } else if (canned != null) {
+                respond(exchange, canned.status(), canned.body().getBytes(StandardCharsets.UTF_8));
+            } else if (userId != null && userId >= 1 && userId <= userSegments.length) {
+                respond(exchange, 200, segmentBodies[userSegments[userId - 1]]);
+            } else {
+                respond(exchange, 404, "{\"error\": \"User not found\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Integer userId(String query) {
+        if (query == null) {
+            return null;
+        }
+        for (String param : query.split("&")) {
+            if (param.startsWith("user_id=")) {
+                try {
+                    return Integer.parseInt(param.substring("user_id=".length()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static byte[] generate(Builder builder) {
+        double[] cumulative = new double[builder.weights.size()];
+        double total = 0;
+        int i = 0;
+        for (double weight : builder.weights.values()) {
+            total += weight;
+            cumulative[i++] = total;
+        }
+        SplittableRandom random = new SplittableRandom(builder.seed);
+        byte[] segments = new byte[builder.users];
+        for (int user = 0; user < builder.users; user++) {
+            double draw = random.nextDouble() * total;
+            int segment = 0;
+            while (segment < cumulative.length - 1 && draw >= cumulative[segment]) {
+                segment++;
+            }
+            segments[user] = (byte) segment;
+        }
+        return segments;
+    }
+
+    public static final class Builder {
+        private int port;
+        private int users = 100_000;
+        private long seed = 42;
+        private final Map<String, Double> weights = new LinkedHashMap<>();
+        private final Map<Integer, Canned> overrides = new HashMap<>();
+        private double medianMillis;
+        private double sigma;
+        private double errorRate;
+        private double slowdownRate;
+        private long slowdownMillis;
+
+        private Builder() {
+            weights.put("p1", 0.5);
+            weights.put("p2", 0.3);
+            weights.put("p3", 0.2);
+        }
+
+        /** Port to listen on; 0 (the default) picks a free one. */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder users(int users) {
+            this.users = users;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Replaces the default p1/p2/p3 = 50/30/20 split; at most 127 segments. */
+        public Builder weights(Map<String, Double> weights) {
+            this.weights.clear();
+            this.weights.putAll(weights);
+            return this;
+        }
+
+        public Builder override(int userId, Canned response) {
+            overrides.put(userId, response);
+            return this;
+        }
+
+        /** Log-normal latency; sigma 1 puts p99.9 at about 20x the median. */
+        public Builder latency(double medianMillis, double sigma) {
+            this.medianMillis = medianMillis;
+            this.sigma = sigma;
+            return this;
+        }
+
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Builder slowdown(double rate, long extraMillis) {
+            this.slowdownRate = rate;
+            this.slowdownMillis = extraMillis;
+            return this;
+        }
+
+        public SegmentServiceStandIn start() {
+            try {
+                return new SegmentServiceStandIn(this);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start segment service stand-in", e);
+            }
+        }
+    }
+}
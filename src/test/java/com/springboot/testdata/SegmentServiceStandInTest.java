@@ -0,0 +1,63 @@
+package com.springboot.testdata;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SegmentServiceStandInTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private HttpResponse<String> get(SegmentServiceStandIn service, int userId) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(service.baseUrl() + "/api/v1/user_segment?user_id=" + userId))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void answersLikeTheMockServer() throws Exception {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.mockServerCompatible().start()) {
+            assertThat(get(service, 1).body()).isEqualTo("{\"segment\": \"p1\"}");
+            assertThat(get(service, 2).body()).isEqualTo("{\"segment\": \"p2\"}");
+            assertThat(get(service, 3).body()).isEqualTo("{\"segment\": \"p3\"}");
+            assertThat(get(service, 404).statusCode()).isEqualTo(404);
+            assertThat(get(service, 500).statusCode()).isEqualTo(500);
+            assertThat(get(service, 4).statusCode()).isEqualTo(422);
+            assertThat(get(service, 12345).statusCode()).isEqualTo(404);
+        }
+    }
+
+    @Test
+    void generatedDistributionFollowsWeightsAndIsStable() throws Exception {
+        SegmentServiceStandIn.Builder builder = SegmentServiceStandIn.builder().users(100_000).seed(7);
+        try (SegmentServiceStandIn service = builder.start(); SegmentServiceStandIn again = builder.start()) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (int user = 1; user <= 100_000; user++) {
+                counts.merge(service.segmentOf(user), 1, Integer::sum);
+                assertThat(again.segmentOf(user)).isEqualTo(service.segmentOf(user));
+            }
+            assertThat(counts.get("p1") / 100_000.0).isCloseTo(0.5, within(0.01));
+            assertThat(counts.get("p2") / 100_000.0).isCloseTo(0.3, within(0.01));
+            assertThat(counts.get("p3") / 100_000.0).isCloseTo(0.2, within(0.01));
+            assertThat(get(service, 42).body()).contains(service.segmentOf(42));
+        }
+    }
+
+    @Test
+    void injectsErrorsAtTheConfiguredRate() throws Exception {
+        try (SegmentServiceStandIn service = SegmentServiceStandIn.builder().users(10).errorRate(1.0).start()) {
+            assertThat(get(service, 1).statusCode()).isEqualTo(500);
+            service.errorRate(0);
+            assertThat(get(service, 1).statusCode()).isEqualTo(200);
+            assertThat(service.injectedErrors()).isEqualTo(1);
+            assertThat(service.requests()).isEqualTo(2);
+        }
+    }
+}
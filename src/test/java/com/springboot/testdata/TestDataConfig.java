@@ -1,19 +1,22 @@
 package com.springboot.testdata;
 
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestDataConfig {
     private static final Properties config = new Properties();
+    private static final AtomicInteger nextRestaurantOffset = new AtomicInteger();
 
     static {
         // Default configuration
-        config.setProperty("test.data.base.restaurant.id", "1000");
+        // well clear of the fixed restaurant ids used by the data providers
+        config.setProperty("test.data.base.restaurant.id", "10000");
         config.setProperty("test.data.default.cart.value", "200");
         config.setProperty("test.data.timeout.seconds", "10");
     }
 
     public static int getBaseRestaurantId() {
-        return Integer.parseInt(config.getProperty("test.data.base.restaurant.id", "1000"));
+        return Integer.parseInt(config.getProperty("test.data.base.restaurant.id", "10000"));
     }
 
     public static int getTimeoutSeconds() {
@@ -22,6 +25,6 @@ public class TestDataConfig {
 
     // Method to generate unique restaurant IDs for tests
     public static int generateUniqueRestaurantId() {
-        return getBaseRestaurantId() + (int) (Math.random() * 1000);
+        return getBaseRestaurantId() + nextRestaurantOffset.getAndIncrement();
     }
 }
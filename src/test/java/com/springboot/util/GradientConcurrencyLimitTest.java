@@ -0,0 +1,51 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GradientConcurrencyLimitTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void shedsOnceLimitIsReached() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(2, 1, 10, 0.2, 100 * MS, 1, 0);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.rejected()).isEqualTo(1);
+
+        limit.release(0, 5 * MS);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void growsWhileLatencyIsFlatAndShrinksWhenItRises() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 4, 200, 0.5, 100 * MS, 10, 0);
+        long now = 0;
+
+        now = runWindows(limit, now, 10, 5 * MS);
+        int grown = limit.limit();
+        assertThat(grown).isGreaterThan(20);
+
+        runWindows(limit, now, 10, 50 * MS);
+        assertThat(limit.limit()).isLessThan(grown);
+    }
+
+    /** Keeps the limiter saturated for {@code windows} windows with every call taking {@code rtt}. */
+    private static long runWindows(GradientConcurrencyLimit limit, long now, int windows, long rtt) {
+        for (int w = 0; w < windows; w++) {
+            int taken = 0;
+            while (limit.tryAcquire()) {
+                taken++;
+            }
+            now += 100 * MS;
+            for (int i = 0; i < taken; i++) {
+                limit.release(now - rtt, now);
+            }
+        }
+        return now;
+    }
+}
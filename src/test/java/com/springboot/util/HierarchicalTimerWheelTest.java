@@ -0,0 +1,107 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HierarchicalTimerWheelTest {
+
+    @Test
+    void expiresEveryIdAndNeverEarly() {
+        long start = 1_700_000_000_000L;
+        long tick = 10;
+        HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(tick, start);
+        Random random = new Random(7);
+        long[] deadlines = new long[5_000];
+        for (int id = 0; id < deadlines.length; id++) {
+            // spread across all four levels, including already-past deadlines
+            long delay = (long) Math.pow(2, random.nextInt(28)) + random.nextInt(1000) - 500;
+            deadlines[id] = start + delay;
+            wheel.schedule(id, deadlines[id]);
+        }
+
+        long[] firedAt = new long[deadlines.length];
+        long now = start;
+        long end = start + (1L << 28) + 1000;
+        while (now < end) {
+            long at = now;
+            wheel.advance(at, id -> firedAt[(int) id] = at);
+            // jump over quiet stretches but never skip a tick that matters for the assertion below
+            now += now - start < 10_000 ? tick : tick * 97;
+        }
+        wheel.advance(end + tick, id -> firedAt[(int) id] = end + tick);
+
+        for (int id = 0; id < deadlines.length; id++) {
+            assertThat(firedAt[id]).as("id %d fired", id).isNotZero();
+            assertThat(firedAt[id]).as("id %d not early", id).isGreaterThanOrEqualTo(deadlines[id]);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void firesInTheTickItIsDue() {
+        long start = 0;
+        HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1000, start);
+        wheel.schedule(1, 70_000_500L);
+        wheel.schedule(2, 2_500L);
+        List<Long> fired = new ArrayList<>();
+
+        wheel.advance(2_999L, fired::add);
+        assertThat(fired).isEmpty();
+        wheel.advance(3_000L, fired::add);
+        assertThat(fired).containsExactly(2L);
+
+        wheel.advance(70_000_999L, fired::add);
+        assertThat(fired).containsExactly(2L);
+        wheel.advance(70_001_000L, fired::add);
+        assertThat(fired).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void cancelledIdsNeverFireAndAreSweptAway() {
+        HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1000, 0);
+        for (long id = 0; id < 1_000; id++) {
+            wheel.schedule(id, 86_400_000L);
+        }
+        wheel.advance(0, id -> { });
+        for (long id = 0; id < 600; id++) {
+            wheel.cancel(id);
+        }
+        wheel.advance(1_000, id -> { });
+        assertThat(wheel.size()).isEqualTo(400);
+
+        // scheduled again after the cancel, so it stays
+        wheel.cancel(100);
+        wheel.schedule(100, 5_000);
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(86_400_000L, fired::add);
+        assertThat(fired).hasSize(401).doesNotContain(0L, 599L).contains(100L, 600L, 999L);
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.entries()).isZero();
+    }
+
+    @Test
+    void reschedulingReplacesTheDeadlineAndKeepsEntriesBounded() {
+        HierarchicalTimerWheel wheel = new HierarchicalTimerWheel(1000, 0);
+        for (int round = 0; round < 1_000; round++) {
+            for (long id = 0; id < 10; id++) {
+                wheel.schedule(id, 86_400_000L + round * 1000L);
+            }
+            wheel.advance(0, id -> { });
+            assertThat(wheel.size()).isEqualTo(10);
+            // the replaced entries are swept once they outnumber the live ones
+            assertThat(wheel.entries()).isLessThanOrEqualTo(2 * 10 + 64);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(86_400_000L + 998_000L, fired::add);
+        assertThat(fired).isEmpty();
+        wheel.advance(86_400_000L + 999_000L, fired::add);
+        assertThat(fired).hasSize(10).doesNotHaveDuplicates();
+        assertThat(wheel.size()).isZero();
+    }
+}
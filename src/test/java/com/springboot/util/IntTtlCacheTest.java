@@ -0,0 +1,57 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntTtlCacheTest {
+
+    @Test
+    void returnsValuesUntilTheyExpire() {
+        IntTtlCache<String> cache = new IntTtlCache<>(16);
+        cache.put(7, "p1", 1000);
+
+        assertThat(cache.get(7, 999)).isEqualTo("p1");
+        assertThat(cache.get(7, 1000)).isNull();
+        assertThat(cache.get(8, 0)).isNull();
+
+        cache.put(7, "p2", 2000);
+        assertThat(cache.get(7, 1500)).isEqualTo("p2");
+        cache.invalidate(7);
+        assertThat(cache.get(7, 1500)).isNull();
+    }
+
+    @Test
+    void staleEntriesAreReturnedUntilTheHardExpiry() {
+        IntTtlCache<String> cache = new IntTtlCache<>(16);
+        cache.put(7, "p1", 500, 1000);
+
+        assertThat(cache.entry(7, 499).isStale(499)).isFalse();
+        assertThat(cache.entry(7, 500).isStale(500)).isTrue();
+        assertThat(cache.entry(7, 999).value()).isEqualTo("p1");
+        assertThat(cache.get(7, 999)).isEqualTo("p1");
+        assertThat(cache.entry(7, 1000)).isNull();
+    }
+
+    @Test
+    void staysWithinCapacityAndKeepsRecentEntries() {
+        IntTtlCache<Integer> cache = new IntTtlCache<>(1024);
+        for (int key = 0; key < 100_000; key++) {
+            cache.put(key, key, 10_000L + key);
+        }
+
+        assertThat(cache.capacity()).isEqualTo(1024);
+        assertThat(cache.size(0)).isLessThanOrEqualTo(1024);
+        int recentHits = 0;
+        for (int key = 99_000; key < 100_000; key++) {
+            if (cache.get(key, 0) != null) {
+                assertThat(cache.get(key, 0)).isEqualTo(key);
+                recentHits++;
+            }
+        }
+        // each of the last keys evicts the older entry of its two-slot set
+        assertThat(recentHits).isGreaterThan(500);
+        cache.clear();
+        assertThat(cache.size(0)).isZero();
+    }
+}
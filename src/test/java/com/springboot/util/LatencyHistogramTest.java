@@ -0,0 +1,41 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat(histogram.percentileNanos(0.5) / 1e6).isCloseTo(500, within(500 * 0.07));
+        assertThat(histogram.percentileNanos(0.99) / 1e6).isCloseTo(990, within(990 * 0.07));
+        assertThat(histogram.percentileNanos(1.0)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        histogram.reset();
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.percentileNanos(0.5)).isZero();
+    }
+
+    @Test
+    void bucketsCoverEveryValueInOrder() {
+        long previousHighest = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long highest = LatencyHistogram.highestMicros(bucket);
+            assertThat(highest).isGreaterThanOrEqualTo(micros);
+            assertThat(highest).isGreaterThanOrEqualTo(previousHighest);
+            previousHighest = highest;
+        }
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.bucketOf(1L << 45));
+    }
+}
@@ -0,0 +1,138 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerThreadCountersTest {
+
+    private static void count(PerThreadCounters<String> counters, long key) {
+        if (!counters.increment(key)) {
+            counters.add(key, "k" + key);
+        }
+    }
+
+    private static Map<Long, Long> totals(PerThreadCounters<String> counters) {
+        Map<Long, Long> totals = new HashMap<>();
+        counters.collect((key, meta, count) -> {
+            assertThat(meta).isEqualTo("k" + key);
+            totals.merge(key, count, Long::sum);
+        });
+        return totals;
+    }
+
+    @Test
+    void addsUpEveryThreadsCounts() throws Exception {
+        PerThreadCounters<String> counters = new PerThreadCounters<>(1024);
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100_000; i++) {
+                    count(counters, i % 10);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(counters.threads()).isEqualTo(threads);
+        Map<Long, Long> totals = totals(counters);
+        assertThat(totals).hasSize(10);
+        assertThat(totals.values()).allMatch(count -> count == 40_000L);
+        assertThat(counters.dropped()).isZero();
+    }
+
+    @Test
+    void foldsTheTablesOfExitedThreadsWithoutLosingCounts() throws Exception {
+        PerThreadCounters<String> counters = new PerThreadCounters<>(1024);
+        for (int round = 0; round < 50; round++) {
+            long own = 100 + round;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    count(counters, 1);
+                }
+                count(counters, own);
+            });
+            worker.start();
+            worker.join();
+            totals(counters);
+        }
+        count(counters, 1);
+
+        Map<Long, Long> totals = totals(counters);
+        // this thread's table and the retired one; the 50 workers' tables are gone
+        assertThat(counters.threads()).isEqualTo(1);
+        assertThat(totals).hasSize(51).containsEntry(1L, 501L).containsEntry(149L, 1L);
+        assertThat(counters.keys()).isEqualTo(52);
+        // collecting again neither loses nor double-counts the folded counts
+        assertThat(totals(counters)).isEqualTo(totals);
+    }
+
+    @Test
+    void keepsCountsAcrossGrowthAndDropsKeysPastTheLimit() {
+        PerThreadCounters<String> counters = new PerThreadCounters<>(500);
+        for (int round = 0; round < 3; round++) {
+            for (long key = 0; key < 600; key++) {
+                count(counters, key << 32);
+            }
+        }
+
+        Map<Long, Long> totals = totals(counters);
+        assertThat(totals).hasSize(500);
+        assertThat(totals.values()).allMatch(count -> count == 3L);
+        assertThat(totals).doesNotContainKey(500L << 32);
+        assertThat(counters.dropped()).isEqualTo(300);
+    }
+
+    @Test
+    void rotatingStartsEachThreadOnAFreshTableWithoutLosingCounts() {
+        PerThreadCounters<String> counters = new PerThreadCounters<>(10);
+        for (long key = 0; key < 11; key++) {
+            count(counters, key);
+        }
+        assertThat(counters.dropped()).isEqualTo(1);
+
+        counters.rotate();
+        totals(counters);
+        // the full table was handed to the base on this count, so key 10 fits now
+        count(counters, 10);
+        count(counters, 0);
+
+        Map<Long, Long> totals = totals(counters);
+        assertThat(totals).hasSize(11).containsEntry(0L, 2L).containsEntry(10L, 1L);
+        assertThat(totals(counters)).isEqualTo(totals);
+        assertThat(counters.keys()).isEqualTo(12);
+    }
+
+    @Test
+    void dropsRetiredKeysEverywhere() {
+        PerThreadCounters<String> counters = new PerThreadCounters<>(1024);
+        for (long key = 0; key < 10; key++) {
+            count(counters, key);
+        }
+        counters.rotate();
+        count(counters, 1);
+        count(counters, 2);
+
+        Map<Long, Long> totals = new HashMap<>();
+        counters.collect((key, meta, count) -> totals.merge(key, count, Long::sum), key -> key < 5);
+        assertThat(totals).hasSize(5).containsOnlyKeys(5L, 6L, 7L, 8L, 9L);
+        // gone from the base for good
+        assertThat(totals(counters)).containsOnlyKeys(1L, 2L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(totals(counters)).containsEntry(1L, 1L);
+    }
+}
@@ -0,0 +1,46 @@
+package com.springboot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTableTest {
+
+    @Test
+    void burstIsSpentThenRefilledAtRate() {
+        long now = 1_000_000L;
+        TokenBucketTable table = new TokenBucketTable(4, 16, now);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(table.tryAcquire(42, 10, 5, now)).isTrue();
+        }
+        assertThat(table.tryAcquire(42, 10, 5, now)).isFalse();
+
+        // 10 tokens/s -> one token every 100 ms
+        assertThat(table.tryAcquire(42, 10, 5, now + 99)).isFalse();
+        assertThat(table.tryAcquire(42, 10, 5, now + 100)).isTrue();
+
+        // other keys have their own bucket
+        assertThat(table.tryAcquire(43, 10, 5, now + 100)).isTrue();
+    }
+
+    @Test
+    void growsPastInitialCapacityAndEvictsIdleKeys() {
+        long now = 5_000L;
+        TokenBucketTable table = new TokenBucketTable(2, 8, now);
+
+        for (int key = -5_000; key < 5_000; key++) {
+            assertThat(table.tryAcquire(key, 1, 1, now)).isTrue();
+        }
+        assertThat(table.size()).isEqualTo(10_000);
+        // state survived the resizes: every bucket is still empty
+        assertThat(table.tryAcquire(-5_000, 1, 1, now)).isFalse();
+        assertThat(table.tryAcquire(4_999, 1, 1, now)).isFalse();
+
+        table.tryAcquire(7, 1, 1, now + 60_000);
+        table.evictIdle(now + 60_000, 30_000);
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.tryAcquire(7, 1, 1, now + 60_000)).isFalse();
+    }
+}